@@ -0,0 +1,85 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import core.DTNHost;
+import core.NetworkInterface;
+import core.SimScenario;
+import interfaces.ConnectivityGrid;
+
+/**
+ * Measures the connectivity grid: moving all hosts and updating their
+ * grid cells, and looking up the near interfaces of every host. The hosts
+ * use random waypoint movement in the default world area.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConnectivityGridBenchmark {
+	@Param({"126", "1000", "5000"})
+	public int nrofHosts;
+
+	private List<DTNHost> hosts;
+	private NetworkInterface[] interfaces;
+	private ConnectivityGrid grid;
+
+	@Setup
+	public void setUp() {
+		Map<String, String> o = new HashMap<String, String>();
+		o.put("Scenario.nrofHostGroups", "1");
+		o.put("Group1.nrofHosts", String.valueOf(nrofHosts));
+		o.put("Group1.movementModel", "RandomWaypoint");
+		o.put("Group1.router", "PassiveRouter");
+		o.put("Events.nrof", "0");
+		SimScenario scen = ScenarioSupport.createScenario(o);
+
+		this.hosts = scen.getHosts();
+		this.interfaces = new NetworkInterface[hosts.size()];
+		for (int i = 0; i < interfaces.length; i++) {
+			interfaces[i] = hosts.get(i).getInterfaces().get(0);
+		}
+		NetworkInterface ni = interfaces[0];
+		// same key and cell size the interfaces used for registering
+		this.grid = ConnectivityGrid.ConnectivityGridFactory(
+				ni.getInterfaceType().hashCode(), ni.getTransmitRange());
+	}
+
+	/**
+	 * Moves every host one update interval and updates its grid cell
+	 */
+	@Benchmark
+	public void moveAndUpdateLocation() {
+		for (int i = 0; i < interfaces.length; i++) {
+			hosts.get(i).move(0.1);
+			grid.updateLocation(interfaces[i]);
+		}
+	}
+
+	/**
+	 * Looks up the interfaces near every host
+	 */
+	@Benchmark
+	public void nearInterfaces(Blackhole bh) {
+		for (NetworkInterface ni : interfaces) {
+			Collection<NetworkInterface> near = grid.getNearInterfaces(ni);
+			bh.consume(near);
+		}
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import movement.map.DijkstraPathFinder;
+import movement.map.MapNode;
+import movement.map.SimMap;
+
+/**
+ * Measures shortest path searches between random nodes of the map of the
+ * default scenario.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DijkstraPathFinderBenchmark {
+	/** Number of precomputed node pairs to cycle through */
+	private static final int NROF_PAIRS = 1024;
+
+	private DijkstraPathFinder finder;
+	private MapNode[] from;
+	private MapNode[] to;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		SimMap map = ScenarioSupport.createScenario(
+				new HashMap<String, String>()).getMap();
+		List<MapNode> nodes = map.getNodes();
+		Random rng = new Random(1);
+
+		this.finder = new DijkstraPathFinder(null);
+		this.from = new MapNode[NROF_PAIRS];
+		this.to = new MapNode[NROF_PAIRS];
+		for (int i = 0; i < NROF_PAIRS; i++) {
+			from[i] = nodes.get(rng.nextInt(nodes.size()));
+			to[i] = nodes.get(rng.nextInt(nodes.size()));
+		}
+		this.next = 0;
+	}
+
+	@Benchmark
+	public List<MapNode> shortestPath() {
+		int i = next;
+		next = (i + 1) % NROF_PAIRS;
+		return finder.getShortestPath(from[i], to[i]);
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import input.BinaryEventsReader;
+import input.ExternalEvent;
+import input.ExternalEventsReader;
+import input.StandardEventsReader;
+
+/**
+ * Measures reading a whole external events file of message creation and
+ * connection events, in the standard text format and in the binary format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EventsReaderBenchmark {
+	/** Number of hosts in the generated events */
+	private static final int NROF_HOSTS = 100;
+
+	@Param({"100000"})
+	public int nrofEvents;
+
+	@Param({"standard", "binary"})
+	public String format;
+
+	private File textFile;
+	private File binaryFile;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		this.textFile = File.createTempFile("one-events", ".txt");
+		Random rng = new Random(1);
+		try (PrintWriter out = new PrintWriter(textFile)) {
+			for (int i = 0; i < nrofEvents; i++) {
+				int from = rng.nextInt(NROF_HOSTS);
+				int to = (from + 1 + rng.nextInt(NROF_HOSTS - 1)) % NROF_HOSTS;
+				if (i % 2 == 0) {
+					out.println(i + " C M" + i + " " + from + " " + to + " " +
+							(1000 + rng.nextInt(1000)));
+				} else {
+					out.println(i + " CONN " + from + " " + to + " " +
+							(rng.nextBoolean() ? "up" : "down"));
+				}
+			}
+		}
+
+		String binaryName = textFile.getPath().replaceAll("\\.txt$", "") +
+			BinaryEventsReader.BINARY_EXT;
+		this.binaryFile = new File(binaryName);
+		List<ExternalEvent> events = readAll(new StandardEventsReader(
+				textFile));
+		BinaryEventsReader.storeToBinaryFile(binaryName, events);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		textFile.delete();
+		binaryFile.delete();
+	}
+
+	@Benchmark
+	public List<ExternalEvent> readEvents() {
+		ExternalEventsReader reader = "binary".equals(format) ?
+				new BinaryEventsReader(binaryFile) :
+				new StandardEventsReader(textFile);
+		return readAll(reader);
+	}
+
+	private List<ExternalEvent> readAll(ExternalEventsReader reader) {
+		List<ExternalEvent> events = reader.readEvents(nrofEvents);
+		reader.close();
+		return events;
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import core.DTNHost;
+import core.Message;
+import core.SimScenario;
+
+/**
+ * Measures removing the oldest message from a router's buffer that holds
+ * <code>bufferedMessages</code> messages. A new message is created before
+ * every invocation (outside of the measurement), so the buffer size stays
+ * the same and nothing is evicted. The per invocation setup adds some
+ * overhead, so the results are only comparable with each other.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessageRemovalBenchmark {
+	/** Size of the benchmark messages (bytes) */
+	private static final int MSG_SIZE = 1000;
+
+	@Param({"100", "10000"})
+	public int bufferedMessages;
+
+	@Param({"EpidemicRouter", "ProphetRouter"})
+	public String router;
+
+	private DTNHost host;
+	private DTNHost other;
+	/** message ids, reused cyclically; one more than the buffer holds so
+	 * that the id of a new message is never in the buffer */
+	private String[] ids;
+	private int msgCounter;
+	private int removeCounter;
+
+	@Setup
+	public void setUp() {
+		Map<String, String> o = new HashMap<String, String>();
+		o.put("Scenario.nrofHostGroups", "1");
+		o.put("Group1.nrofHosts", "2");
+		o.put("Group1.movementModel", "StationaryMovement");
+		o.put("Group1.nodeLocation", "0, 0");
+		o.put("Group1.router", router);
+		/* room for the message created before each invocation */
+		o.put("Group1.bufferSize",
+				String.valueOf((bufferedMessages + 1) * MSG_SIZE));
+		o.put("Events.nrof", "0");
+		SimScenario scen = ScenarioSupport.createScenario(o);
+
+		List<DTNHost> hosts = scen.getHosts();
+		this.host = hosts.get(0);
+		this.other = hosts.get(1);
+		this.ids = new String[bufferedMessages + 1];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = "M" + i;
+		}
+		this.msgCounter = 0;
+		this.removeCounter = 0;
+		for (int i = 0; i < bufferedMessages; i++) {
+			createMessage();
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void createMessage() {
+		host.createNewMessage(new Message(host, other, ids[msgCounter],
+				MSG_SIZE));
+		msgCounter = (msgCounter + 1) % ids.length;
+	}
+
+	@Benchmark
+	public void removeMessage() {
+		host.deleteMessage(ids[removeCounter], false);
+		removeCounter = (removeCounter + 1) % ids.length;
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import core.DTNHost;
+import core.Message;
+import core.SimScenario;
+
+/**
+ * Measures replicating a message, which is done for every started
+ * transfer. The message has <code>properties</code> string keyed
+ * properties and <code>pathHops</code> hops on its path (in addition to
+ * the source host).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessageReplicateBenchmark {
+	/** Prefix of the benchmark properties' names */
+	private static final String PROPERTY_PREFIX = "MessageReplicateBenchmark.p";
+
+	@Param({"0", "4"})
+	public int properties;
+
+	@Param({"0", "10"})
+	public int pathHops;
+
+	private Message msg;
+
+	@Setup
+	public void setUp() {
+		Map<String, String> o = new HashMap<String, String>();
+		o.put("Scenario.nrofHostGroups", "1");
+		o.put("Group1.nrofHosts", "2");
+		o.put("Group1.movementModel", "StationaryMovement");
+		o.put("Group1.nodeLocation", "0, 0");
+		o.put("Events.nrof", "0");
+		SimScenario scen = ScenarioSupport.createScenario(o);
+
+		List<DTNHost> hosts = scen.getHosts();
+		this.msg = new Message(hosts.get(0), hosts.get(1), "M1", 1000);
+		for (int i = 0; i < properties; i++) {
+			msg.addProperty(PROPERTY_PREFIX + i, Integer.valueOf(i));
+		}
+		for (int i = 0; i < pathHops; i++) {
+			msg.addNodeOnPath(hosts.get(i % 2));
+		}
+	}
+
+	@Benchmark
+	public Message replicate() {
+		return msg.replicate();
+	}
+}
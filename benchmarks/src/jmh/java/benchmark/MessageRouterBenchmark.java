@@ -0,0 +1,72 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import core.DTNHost;
+import core.Message;
+import core.SimScenario;
+
+/**
+ * Measures creating messages in a router whose buffer is full, so every
+ * new message makes the router drop the oldest message(s) it can. The
+ * buffer holds about <code>bufferedMessages</code> messages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessageRouterBenchmark {
+	/** Size of the benchmark messages (bytes) */
+	private static final int MSG_SIZE = 1000;
+
+	@Param({"100", "10000"})
+	public int bufferedMessages;
+
+	@Param({"EpidemicRouter", "ProphetRouter"})
+	public String router;
+
+	private DTNHost host;
+	private DTNHost other;
+	private int msgCounter;
+
+	@Setup
+	public void setUp() {
+		Map<String, String> o = new HashMap<String, String>();
+		o.put("Scenario.nrofHostGroups", "1");
+		o.put("Group1.nrofHosts", "2");
+		o.put("Group1.movementModel", "StationaryMovement");
+		o.put("Group1.nodeLocation", "0, 0");
+		o.put("Group1.router", router);
+		o.put("Group1.bufferSize", String.valueOf(bufferedMessages * MSG_SIZE));
+		o.put("Events.nrof", "0");
+		SimScenario scen = ScenarioSupport.createScenario(o);
+
+		List<DTNHost> hosts = scen.getHosts();
+		this.host = hosts.get(0);
+		this.other = hosts.get(1);
+		this.msgCounter = 0;
+		for (int i = 0; i < bufferedMessages; i++) {
+			createMessage();
+		}
+	}
+
+	@Benchmark
+	public void createMessage() {
+		host.createNewMessage(new Message(host, other, "M" + msgCounter++,
+				MSG_SIZE));
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.io.File;
+import java.util.Map;
+
+import core.Settings;
+import core.SimClock;
+import core.SimScenario;
+import core.World;
+import movement.MovementModel;
+
+/**
+ * Sets up simulation scenarios for the benchmarks. The scenario is the
+ * bundled default scenario ({@value #DEFAULT_SETTINGS}) with optional
+ * overrides. Relative file paths in the settings are resolved against the
+ * project root given in the <code>one.home</code> system property (the
+ * Gradle build sets it), so the benchmarks don't depend on the working
+ * directory of the forked JVMs.
+ */
+public final class ScenarioSupport {
+	/** Settings file of the default scenario, relative to the project root */
+	public static final String DEFAULT_SETTINGS =
+		"settings/default_settings.txt";
+
+	private ScenarioSupport() {}
+
+	/**
+	 * Returns the project root directory
+	 * @return the project root directory
+	 */
+	public static File home() {
+		return new File(System.getProperty("one.home", "."));
+	}
+
+	/**
+	 * Resolves a path relative to the project root
+	 * @param path The relative path
+	 * @return The absolute path
+	 */
+	public static String resolve(String path) {
+		File f = new File(path);
+		if (f.isAbsolute()) {
+			return path;
+		}
+		return new File(home(), path).getAbsolutePath();
+	}
+
+	/**
+	 * Loads the default scenario settings, applies the overrides and
+	 * creates the scenario. Must be called only once per JVM because the
+	 * simulator keeps its state in static fields; JMH runs each benchmark
+	 * and parameter combination in its own fork.
+	 * @param overrides Settings to add or replace (may be empty)
+	 * @return The created scenario
+	 */
+	public static SimScenario createScenario(Map<String, String> overrides) {
+		Settings.init(resolve(DEFAULT_SETTINGS));
+		Settings.addSetting("Report.reportDir",
+				System.getProperty("java.io.tmpdir"));
+		for (Map.Entry<String, String> e : overrides.entrySet()) {
+			Settings.addSetting(e.getKey(), e.getValue());
+		}
+		resolvePaths();
+		return SimScenario.getInstance();
+	}
+
+	/**
+	 * Creates the scenario like {@link #createScenario(Map)} and runs the
+	 * movement model warmup the same way the user interfaces do before the
+	 * first world update.
+	 * @param overrides Settings to add or replace (may be empty)
+	 * @return The world of the scenario, ready for updates
+	 */
+	public static World createWorld(Map<String, String> overrides) {
+		SimScenario scen = createScenario(overrides);
+		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		double warmupTime = 0;
+		if (s.contains("warmup")) {
+			warmupTime = s.getDouble("warmup");
+			if (warmupTime > 0) {
+				SimClock.getInstance().setTime(-warmupTime);
+			}
+		}
+		World world = scen.getWorld();
+		world.warmupMovementModel(warmupTime);
+		return world;
+	}
+
+	/**
+	 * Makes the map and route file paths of the settings absolute
+	 */
+	private static void resolvePaths() {
+		Settings s = new Settings();
+		if (s.contains("MapBasedMovement.nrofMapFiles")) {
+			int n = s.getInt("MapBasedMovement.nrofMapFiles");
+			for (int i = 1; i <= n; i++) {
+				resolveSetting(s, "MapBasedMovement.mapFile" + i);
+			}
+		}
+
+		int groups = s.getInt(SimScenario.SCENARIO_NS + "." +
+				SimScenario.NROF_GROUPS_S);
+		resolveSetting(s, SimScenario.GROUP_NS + ".routeFile");
+		for (int i = 1; i <= groups; i++) {
+			resolveSetting(s, SimScenario.GROUP_NS + i + ".routeFile");
+		}
+	}
+
+	private static void resolveSetting(Settings s, String name) {
+		if (s.contains(name)) {
+			Settings.addSetting(name, resolve(s.getSetting(name)));
+		}
+	}
+}
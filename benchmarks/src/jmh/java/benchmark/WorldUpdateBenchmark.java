@@ -0,0 +1,41 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import core.World;
+
+/**
+ * Measures single world updates of the default scenario, i.e., the whole
+ * simulation loop: events, movement, connectivity, transfers and routing.
+ * The movement model warmup is run before measuring; the simulation then
+ * keeps advancing from one benchmark invocation to the next.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WorldUpdateBenchmark {
+	private World world;
+
+	@Setup
+	public void setUp() {
+		this.world = ScenarioSupport.createWorld(
+				new HashMap<String, String>());
+	}
+
+	@Benchmark
+	public void update() {
+		world.update();
+	}
+}
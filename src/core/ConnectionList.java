@@ -0,0 +1,235 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * The connections of a network interface. The connections are kept in the
+ * order they were added, like in an ordinary list, and they are also
+ * indexed by the interface and the host at the other end of the connection,
+ * so finding the connection to a peer doesn't require scanning the list.
+ * The peer interface is the one given by
+ * {@link Connection#getOtherInterface(NetworkInterface)}, which is not
+ * necessarily the interface of the peer host for proxied connections.
+ * If there are several connections to the same peer, the index has the one
+ * that comes first in the list.
+ */
+class ConnectionList extends AbstractList<Connection> implements RandomAccess {
+	/** the interface whose connections these are */
+	private NetworkInterface owner;
+	private ArrayList<Connection> list;
+	private HashMap<NetworkInterface, Connection> byInterface;
+	private HashMap<DTNHost, Connection> byHost;
+
+	/**
+	 * Creates an empty connection list
+	 * @param owner The interface whose connections are listed
+	 */
+	public ConnectionList(NetworkInterface owner) {
+		this.owner = owner;
+		this.list = new ArrayList<Connection>();
+		this.byInterface = new HashMap<NetworkInterface, Connection>();
+		this.byHost = new HashMap<DTNHost, Connection>();
+	}
+
+	@Override
+	public Connection get(int index) {
+		return list.get(index);
+	}
+
+	@Override
+	public int size() {
+		return list.size();
+	}
+
+	@Override
+	public void add(int index, Connection con) {
+		list.add(index, con);
+		if (index == list.size() - 1) {
+			NetworkInterface peer = con.getOtherInterface(owner);
+			if (!byInterface.containsKey(peer)) {
+				byInterface.put(peer, con);
+			}
+			DTNHost peerHost = con.getOtherNode(owner.getHost());
+			if (!byHost.containsKey(peerHost)) {
+				byHost.put(peerHost, con);
+			}
+		} else {
+			reindex(); // inserted in the middle; the first ones may change
+		}
+		modCount++;
+	}
+
+	@Override
+	public Connection set(int index, Connection con) {
+		Connection old = list.set(index, con);
+		reindex();
+		return old;
+	}
+
+	@Override
+	public Connection remove(int index) {
+		Connection con = list.remove(index);
+		unindex(con);
+		modCount++;
+		return con;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if (!contains(o)) {
+			return false;
+		}
+		Connection con = (Connection)o;
+		if (list.get(list.size() - 1) == con) { // common case: the last one
+			list.remove(list.size() - 1);
+		} else {
+			list.remove(con);
+		}
+		unindex(con);
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof Connection)) {
+			return false;
+		}
+		Connection con = (Connection)o;
+		NetworkInterface peer = con.getOtherInterface(owner);
+		Connection first = byInterface.get(peer);
+		if (first == null) {
+			return false;
+		}
+		if (first == con) {
+			return true;
+		}
+		/* another connection to the same peer; only duplicates need a scan */
+		return list.size() > byInterface.size() && list.contains(con);
+	}
+
+	@Override
+	public void clear() {
+		list.clear();
+		byInterface.clear();
+		byHost.clear();
+		modCount++;
+	}
+
+	/**
+	 * Returns the first connection to the given interface
+	 * @param peer The interface at the other end
+	 * @return The connection or null if there's no connection to the
+	 * interface
+	 */
+	public Connection getConnectionTo(NetworkInterface peer) {
+		return byInterface.get(peer);
+	}
+
+	/**
+	 * Returns the first connection to the given host
+	 * @param peer The host at the other end
+	 * @return The connection or null if there's no connection to the host
+	 */
+	public Connection getConnectionTo(DTNHost peer) {
+		return byHost.get(peer);
+	}
+
+	/**
+	 * Returns the connections that are ready for transfer (in list order).
+	 * The connections are checked while iterating, so the list must not be
+	 * modified during the iteration.
+	 * @return The connections that are ready for transfer
+	 */
+	public Iterable<Connection> readyConnections() {
+		return new Iterable<Connection>() {
+			public Iterator<Connection> iterator() {
+				return new ReadyIterator();
+			}
+		};
+	}
+
+	/**
+	 * Removes a connection from the indexes after it was removed from the
+	 * list
+	 * @param con The removed connection
+	 */
+	private void unindex(Connection con) {
+		NetworkInterface peer = con.getOtherInterface(owner);
+		boolean dupes = false;
+		if (byInterface.get(peer) == con) {
+			byInterface.remove(peer);
+			dupes = list.size() > byInterface.size();
+		}
+		DTNHost peerHost = con.getOtherNode(owner.getHost());
+		if (byHost.get(peerHost) == con) {
+			byHost.remove(peerHost);
+			dupes = dupes || list.size() > byHost.size();
+		}
+		if (dupes) {
+			reindex(); // some other connection may have the same peer
+		}
+	}
+
+	/**
+	 * Rebuilds the indexes from the list
+	 */
+	private void reindex() {
+		byInterface.clear();
+		byHost.clear();
+		for (int i = 0, n = list.size(); i < n; i++) {
+			Connection con = list.get(i);
+			NetworkInterface peer = con.getOtherInterface(owner);
+			if (!byInterface.containsKey(peer)) {
+				byInterface.put(peer, con);
+			}
+			DTNHost peerHost = con.getOtherNode(owner.getHost());
+			if (!byHost.containsKey(peerHost)) {
+				byHost.put(peerHost, con);
+			}
+		}
+	}
+
+	/**
+	 * Iterator that skips the connections that are not ready for transfer
+	 */
+	private class ReadyIterator implements Iterator<Connection> {
+		private int next;
+
+		private ReadyIterator() {
+			this.next = 0;
+			skipBusy();
+		}
+
+		private void skipBusy() {
+			while (next < list.size() && !list.get(next).isReadyForTransfer()) {
+				next++;
+			}
+		}
+
+		public boolean hasNext() {
+			return next < list.size();
+		}
+
+		public Connection next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Connection con = list.get(next++);
+			skipBusy();
+			return con;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
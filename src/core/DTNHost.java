@@ -1,7 +1,10 @@
 package core;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -30,6 +33,11 @@ public class DTNHost implements Comparable<DTNHost>, Iterable<Connection> {
 	private List<MovementListener> movListeners;
 	private List<NetworkInterface> net;
 	private ModuleCommunicationBus comBus;
+	/** unmodifiable snapshot of the connections of all the interfaces
+	 * (null if it has to be rebuilt) */
+	private List<Connection> connectionView;
+	/** store where the location and speed are copied to (or null) */
+	private HostStore hostStore;
 
 	static {
 		DTNSim.registerForReset(DTNHost.class.getCanonicalName());
@@ -52,9 +60,37 @@ public class DTNHost implements Comparable<DTNHost>, Iterable<Connection> {
 			String groupId, List<NetworkInterface> interf,
 			ModuleCommunicationBus comBus,
 			MovementModel mmProto, MessageRouter mRouterProto) {
+		this(msgLs, movLs, groupId, interf, comBus, mRouterProto,
+				getNextAddress());
+		initMovement(mmProto);
+		notifyInitialLocation();
+	}
+
+	/**
+	 * Creates a new DTNHost with the given address. The movement model is
+	 * not replicated here: {@link #initMovement(MovementModel)} and
+	 * {@link #notifyInitialLocation()} must be called before the host is
+	 * used (the public constructor does this). This way the movement models
+	 * of many hosts can be initialized in parallel (see
+	 * {@link SimScenario}).
+	 * 
+	 * @param msgLs        Message listeners
+	 * @param movLs        Movement listeners
+	 * @param groupId      GroupID of this host
+	 * @param interf       List of NetworkInterfaces for the class
+	 * @param comBus       Module communication bus object
+	 * @param mRouterProto Prototype of the message router of this host
+	 * @param address      Address of the host (from
+	 *                     {@link #reserveAddresses(int)})
+	 */
+	DTNHost(List<MessageListener> msgLs,
+			List<MovementListener> movLs,
+			String groupId, List<NetworkInterface> interf,
+			ModuleCommunicationBus comBus, MessageRouter mRouterProto,
+			int address) {
 		this.comBus = comBus;
 		this.location = new Coord(0, 0);
-		this.address = getNextAddress();
+		this.address = address;
 		this.name = groupId + address;
 		this.net = new ArrayList<NetworkInterface>();
 
@@ -69,19 +105,40 @@ public class DTNHost implements Comparable<DTNHost>, Iterable<Connection> {
 
 		this.msgListeners = msgLs;
 		this.movListeners = movLs;
+		setRouter(mRouterProto.replicate());
+	}
 
-		// create instances by replicating the prototypes
-		this.movement = mmProto.replicate();
+	/**
+	 * Replicates the movement model of a host created with the address
+	 * taking constructor and draws the host's initial location. With
+	 * {@link RandomStreams}, this can be called for different hosts in
+	 * different threads if the prototype is
+	 * {@link MovementModel#isConcurrentlyReplicable()}.
+	 * 
+	 * @param mmProto Prototype of the movement model of this host
+	 */
+	void initMovement(MovementModel mmProto) {
+		if (RandomStreams.isEnabled()) {
+			this.movement = mmProto.replicate(RandomStreams.newStream(
+					RandomStreams.MOVEMENT, this.address));
+		} else {
+			this.movement = mmProto.replicate();
+		}
 		this.movement.setComBus(comBus);
-		setRouter(mRouterProto.replicate());
 
 		this.location = movement.getInitialLocation();
 
 		this.nextTimeToMove = movement.nextPathAvailable();
 		this.path = null;
+	}
 
-		if (movLs != null) { // inform movement listeners about the location
-			for (MovementListener l : movLs) {
+	/**
+	 * Informs the movement listeners about the initial location of a host
+	 * created with the address taking constructor
+	 */
+	void notifyInitialLocation() {
+		if (movListeners != null) {
+			for (MovementListener l : movListeners) {
 				l.initialLocation(this, this.location);
 			}
 		}
@@ -97,6 +154,19 @@ public class DTNHost implements Comparable<DTNHost>, Iterable<Connection> {
 		return nextAddress++;
 	}
 
+	/**
+	 * Reserves consecutive addresses for hosts that are created with the
+	 * address taking constructor
+	 * 
+	 * @param count How many addresses to reserve
+	 * @return The first reserved address
+	 */
+	synchronized static int reserveAddresses(int count) {
+		int first = nextAddress;
+		nextAddress += count;
+		return first;
+	}
+
 	/**
 	 * Reset the host and its interfaces
 	 */
@@ -155,26 +225,58 @@ public class DTNHost implements Comparable<DTNHost>, Iterable<Connection> {
 	 * @param con The connection object whose state changed
 	 */
 	public void connectionUp(Connection con) {
+		connectionsChanged();
 		this.router.changedConnection(con);
 	}
 
 	public void connectionDown(Connection con) {
+		connectionsChanged();
 		this.router.changedConnection(con);
 	}
 
 	/**
-	 * Returns a copy of the list of connections this host has with other hosts
+	 * Informs the host that the connection list of some of its interfaces
+	 * has changed. Network interfaces must call this (or
+	 * {@link #connectionUp(Connection)} or {@link #connectionDown(Connection)})
+	 * after adding or removing connections.
+	 */
+	public void connectionsChanged() {
+		this.connectionView = null;
+	}
+
+	/**
+	 * Returns the connections this host has with other hosts. The returned
+	 * list is an unmodifiable snapshot that is shared by all the callers
+	 * until the connections change; it doesn't change when the connections
+	 * change.
 	 * 
-	 * @return a copy of the list of connections this host has with other hosts
+	 * @return the connections this host has with other hosts
 	 */
 	public List<Connection> getConnections() {
-		List<Connection> lc = new ArrayList<Connection>();
-
-		for (NetworkInterface i : net) {
-			lc.addAll(i.getConnections());
+		if (this.connectionView == null) {
+			List<Connection> lc = new ArrayList<Connection>();
+			for (NetworkInterface i : net) {
+				lc.addAll(i.getConnections());
+			}
+			this.connectionView = Collections.unmodifiableList(lc);
 		}
 
-		return lc;
+		return this.connectionView;
+	}
+
+	/**
+	 * Returns true if this host has a connection with the given host
+	 * 
+	 * @param other The other host
+	 * @return true if the hosts are connected
+	 */
+	public boolean isConnectedTo(DTNHost other) {
+		for (int i = 0, n = net.size(); i < n; i++) {
+			if (net.get(i).getConnectionTo(other) != null) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -203,6 +305,36 @@ public class DTNHost implements Comparable<DTNHost>, Iterable<Connection> {
 	 */
 	public void setLocation(Coord location) {
 		this.location = location.clone();
+		storeState();
+	}
+
+	/**
+	 * Sets the store where this host copies its location and speed to, and
+	 * copies the current ones there
+	 * @param store The store or null to stop copying
+	 */
+	void setHostStore(HostStore store) {
+		this.hostStore = store;
+		storeState();
+	}
+
+	/**
+	 * Returns the store where this host copies its location and speed to
+	 * @return The store or null if the hosts don't use a store
+	 * @see World#HOST_STORE_S
+	 */
+	public HostStore getHostStore() {
+		return this.hostStore;
+	}
+
+	/**
+	 * Copies the location and speed of this host to the host store (if
+	 * there is one)
+	 */
+	private void storeState() {
+		if (this.hostStore != null) {
+			this.hostStore.set(this.address, this.location, this.speed);
+		}
 	}
 
 	/**
@@ -332,16 +464,38 @@ public class DTNHost implements Comparable<DTNHost>, Iterable<Connection> {
 	 * @param simulateConnections Should network layer be updated too
 	 */
 	public void update(boolean simulateConnections) {
+		update(simulateConnections, false);
+	}
+
+	/**
+	 * Updates node's network layer and router.
+	 * 
+	 * @param simulateConnections Should network layer be updated too
+	 * @param skipIdleRouter Should the router update be skipped if the
+	 * router is idle (see {@link MessageRouter#isIdle()})
+	 */
+	public void update(boolean simulateConnections, boolean skipIdleRouter) {
 		if (!isActive()) {
 			return;
 		}
 
+		long start;
 		if (simulateConnections) {
+			start = SimProfiler.start();
 			for (NetworkInterface i : net) {
 				i.update();
 			}
+			SimProfiler.stop(SimProfiler.INTERFACES, start);
+		}
+		start = SimProfiler.start();
+		if (skipIdleRouter && this.router.isIdle()) {
+			this.router.updateSkipped();
+			SimProfiler.stop(SimProfiler.ROUTERS, start);
+			SimProfiler.count(SimProfiler.ROUTER_UPDATES_SKIPPED);
+			return;
 		}
 		this.router.update();
+		SimProfiler.stop(SimProfiler.ROUTERS, start);
 	}
 
 	/**
@@ -372,6 +526,7 @@ public class DTNHost implements Comparable<DTNHost>, Iterable<Connection> {
 			this.location.setLocation(this.destination); // snap to destination
 			possibleMovement -= distance;
 			if (!setNextWaypoint()) { // get a new waypoint
+				storeState();
 				return; // no more waypoints left
 			}
 			distance = this.location.distance(this.destination);
@@ -383,6 +538,48 @@ public class DTNHost implements Comparable<DTNHost>, Iterable<Connection> {
 		dy = (possibleMovement / distance) * (this.destination.getY() -
 				this.location.getY());
 		this.location.translate(dx, dy);
+		storeState();
+	}
+
+	/**
+	 * Returns the movement model of this host
+	 * @return the movement model of this host
+	 */
+	MovementModel getMovement() {
+		return this.movement;
+	}
+
+	/**
+	 * Writes the movement state of this host (movement model, location,
+	 * destination, path, speed and next time to move) to a checkpoint.
+	 * @param out The checkpoint stream
+	 * @throws IOException if writing failed
+	 * @see WarmupCheckpoint
+	 */
+	void writeMovementState(ObjectOutputStream out) throws IOException {
+		out.writeObject(this.movement);
+		out.writeObject(this.location);
+		out.writeObject(this.destination);
+		out.writeObject(this.path);
+		out.writeDouble(this.speed);
+		out.writeDouble(this.nextTimeToMove);
+	}
+
+	/**
+	 * Replaces the movement state of this host with one read from a
+	 * checkpoint (in the order written by
+	 * {@link #writeMovementState(ObjectOutputStream)})
+	 */
+	void setMovementState(MovementModel movement, Coord location,
+			Coord destination, Path path, double speed,
+			double nextTimeToMove) {
+		this.movement = movement;
+		this.location = location;
+		this.destination = destination;
+		this.path = path;
+		this.speed = speed;
+		this.nextTimeToMove = nextTimeToMove;
+		storeState();
 	}
 
 	/**
@@ -224,7 +224,7 @@ public class DTNSim {
 	 * @param arg The argument to parse
 	 * @return The first and (last_run_index - 1) in an array
 	 */
-	private static int[] parseNrofRuns(String arg) {
+	public static int[] parseNrofRuns(String arg) {
 		int val[] = {0,1};	
 		try {
 			if (arg.contains(RANGE_DELIMETER)) {
@@ -0,0 +1,121 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.List;
+
+/**
+ * Compact copy of the movement state of all the hosts, stored in arrays
+ * that are indexed by the hosts' network addresses. The hosts write their
+ * location and speed here whenever they change them, so the distances
+ * between hosts can be computed from a few contiguous arrays instead of
+ * going through the hosts' {@link Coord} objects. The hosts' own Coord
+ * objects are still the primary location data; code that changes a
+ * host's location must do it through the host (not by modifying the
+ * Coord returned by {@link DTNHost#getLocation()}).
+ * @see World#HOST_STORE_S
+ */
+public class HostStore {
+	private double[] x;
+	private double[] y;
+	private double[] speed;
+
+	/**
+	 * Creates a store that has room for the given hosts. The hosts write
+	 * their state to the store when it's set for them with
+	 * {@link DTNHost#setHostStore(HostStore)}.
+	 * @param hosts The hosts
+	 */
+	public HostStore(List<DTNHost> hosts) {
+		int size = 0;
+		for (DTNHost h : hosts) {
+			size = Math.max(size, h.getAddress() + 1);
+		}
+		this.x = new double[size];
+		this.y = new double[size];
+		this.speed = new double[size];
+	}
+
+	/**
+	 * Sets the state of a host
+	 * @param address Address of the host
+	 * @param location The host's location
+	 * @param hostSpeed The host's current speed
+	 */
+	void set(int address, Coord location, double hostSpeed) {
+		x[address] = location.getX();
+		y[address] = location.getY();
+		speed[address] = hostSpeed;
+	}
+
+	/**
+	 * Returns the x coordinate of a host
+	 * @param address Address of the host
+	 * @return The x coordinate
+	 */
+	public double getX(int address) {
+		return x[address];
+	}
+
+	/**
+	 * Returns the y coordinate of a host
+	 * @param address Address of the host
+	 * @return The y coordinate
+	 */
+	public double getY(int address) {
+		return y[address];
+	}
+
+	/**
+	 * Returns the current speed of a host
+	 * @param address Address of the host
+	 * @return The speed
+	 */
+	public double getSpeed(int address) {
+		return speed[address];
+	}
+
+	/**
+	 * Returns the distance between two hosts. The result is exactly the
+	 * same as with {@link Coord#distance(Coord)}.
+	 * @param a Address of the first host
+	 * @param b Address of the other host
+	 * @return The distance
+	 */
+	public double distance(int a, int b) {
+		double dx = x[a] - x[b];
+		double dy = y[a] - y[b];
+		return Math.sqrt(dx*dx + dy*dy);
+	}
+
+	/**
+	 * Selects the hosts that are within range of a host. Another host is
+	 * within range if its distance to the host is at most the smaller one
+	 * of the two ranges (like in
+	 * {@link NetworkInterface#isWithinRange(NetworkInterface)}).
+	 * @param address Address of the host
+	 * @param range Range of the host
+	 * @param others Addresses of the other hosts
+	 * @param ranges Ranges of the other hosts
+	 * @param n Number of the other hosts
+	 * @param selected Array where the indexes (in others) of the hosts that
+	 * are within range are stored; must have room for n values
+	 * @return Number of hosts within range
+	 */
+	public int selectWithinRange(int address, double range, int[] others,
+			double[] ranges, int n, int[] selected) {
+		double x0 = x[address];
+		double y0 = y[address];
+		int count = 0;
+		for (int i = 0; i < n; i++) {
+			double dx = x0 - x[others[i]];
+			double dy = y0 - y[others[i]];
+			double r = Math.min(range, ranges[i]);
+			if (Math.sqrt(dx*dx + dy*dy) <= r) {
+				selected[count++] = i;
+			}
+		}
+		return count;
+	}
+}
@@ -5,10 +5,7 @@
 package core;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 /**
  * A message that is created at a node or passed between nodes.
@@ -41,11 +38,21 @@ public class Message implements Comparable<Message> {
 	/** if this message is a response message, this is set to the request msg*/
 	private Message requestMsg;
 	
-	/** Container for generic message properties. Note that all values
-	 * stored in the properties should be immutable because only a shallow
-	 * copy of the properties is made when replicating messages */
-	private Map<String, Object> properties;
+	/** Values of the object valued attributes by their slots (or null if
+	 * none are set). Note that all values stored in the attributes should be
+	 * immutable because only a shallow copy of them is made when replicating
+	 * messages.
+	 * @see MessageAttribute */
+	private Object[] attributes;
+	/** Values of the int and double valued attributes by their slots (or
+	 * null if none are set) */
+	private double[] numbers;
+	/** Bits of the number slots that have a value */
+	private long numbersSet;
 	
+	/** Stored in the object slots for attributes whose value is null */
+	private static final Object NULL_VALUE = new Object();
+
 	/** Application ID of the application that created the message */
 	private String	appID;
 	
@@ -75,7 +82,9 @@ public class Message implements Comparable<Message> {
 		this.initTtl = INFINITE_TTL;
 		this.responseSize = 0;
 		this.requestMsg = null;
-		this.properties = null;
+		this.attributes = null;
+		this.numbers = null;
+		this.numbersSet = 0;
 		this.appID = null;
 		
 		Message.nextUniqueId++;
@@ -162,6 +171,18 @@ public class Message implements Comparable<Message> {
 					(SimClock.getTime()-this.timeCreated)) /60.0 );
 		}
 	}
+
+	/**
+	 * Returns the simulation time when the TTL of the message runs out or
+	 * Double.MAX_VALUE if the TTL is infinite.
+	 * @return The expiry time (seconds)
+	 */
+	public double getExpiryTime() {
+		if (this.initTtl == INFINITE_TTL) {
+			return Double.MAX_VALUE;
+		}
+		return this.timeCreated + this.initTtl * 60.0;
+	}
 	
 	
 	/**
@@ -263,12 +284,9 @@ public class Message implements Comparable<Message> {
 		this.initTtl = m.initTtl;
 		this.appID = m.appID;
 		
-		if (m.properties != null) {
-			Set<String> keys = m.properties.keySet();
-			for (String key : keys) {
-				updateProperty(key, m.getProperty(key));
-			}
-		}
+		this.attributes = (m.attributes != null ? m.attributes.clone() : null);
+		this.numbers = (m.numbers != null ? m.numbers.clone() : null);
+		this.numbersSet = m.numbersSet;
 	}
 	
 	/**
@@ -276,13 +294,16 @@ public class Message implements Comparable<Message> {
 	 * it should be such that no other class accidently uses the same value.
 	 * The value can be any object but it's good idea to store only immutable
 	 * objects because when message is replicated, only a shallow copy of the
-	 * properties is made.  
+	 * properties is made. The properties are stored like the attributes of
+	 * {@link MessageAttribute} keys with the same name; new classes should
+	 * use the keys directly.
 	 * @param key The key which is used to lookup the value
 	 * @param value The value to store
 	 * @throws SimError if the message already has a value for the given key
 	 */
 	public void addProperty(String key, Object value) throws SimError {
-		if (this.properties != null && this.properties.containsKey(key)) {
+		MessageAttribute<?> a = MessageAttribute.get(key);
+		if (a != null && hasAttribute(a)) {
 			/* check to prevent accidental name space collisions */
 			throw new SimError("Message " + this + " already contains value " + 
 					"for a key " + key);
@@ -298,10 +319,11 @@ public class Message implements Comparable<Message> {
 	 * @return The stored object or null if it isn't found
 	 */
 	public Object getProperty(String key) {
-		if (this.properties == null) {
+		if (this.attributes == null && this.numbers == null) {
 			return null;
 		}
-		return this.properties.get(key);
+		MessageAttribute<?> a = MessageAttribute.get(key);
+		return a != null ? getAttribute(a) : null;
 	}
 	
 	/**
@@ -310,15 +332,199 @@ public class Message implements Comparable<Message> {
 	 * checks for name space clashes.
 	 * @param key The key which is used to lookup the value
 	 * @param value The new value to store
+	 * @throws SimError if the key is registered as a typed attribute and the
+	 * value is not of its type
 	 */
 	public void updateProperty(String key, Object value) throws SimError {
-		if (this.properties == null) {
-			/* lazy creation to prevent performance overhead for classes
-			   that don't use the property feature  */
-			this.properties = new HashMap<String, Object>();
-		}		
+		setValue(MessageAttribute.getOrRegister(key), value);
+	}
+
+	/**
+	 * Returns true if the message has a value (also null) for an attribute
+	 * @param a The attribute
+	 * @return true if the message has a value for the attribute
+	 */
+	public boolean hasAttribute(MessageAttribute<?> a) {
+		if (a.isNumber()) {
+			return (numbersSet & (1L << a.getSlot())) != 0;
+		}
+		return attributes != null && a.getSlot() < attributes.length &&
+			attributes[a.getSlot()] != null;
+	}
+
+	/**
+	 * Returns the value of an attribute
+	 * @param a The attribute
+	 * @return The value or null if the message has no value for it
+	 */
+	public <T> T getAttribute(MessageAttribute<T> a) {
+		if (a.isNumber()) {
+			if (!hasAttribute(a)) {
+				return null;
+			}
+			double value = numbers[a.getSlot()];
+			return a.getType().cast(a.getType() == Integer.class ?
+					Integer.valueOf((int)value) : Double.valueOf(value));
+		}
+		if (attributes == null || a.getSlot() >= attributes.length) {
+			return null;
+		}
+		Object value = attributes[a.getSlot()];
+		return value == NULL_VALUE ? null : a.getType().cast(value);
+	}
+
+	/**
+	 * Adds a value for an attribute
+	 * @param a The attribute
+	 * @param value The value
+	 * @throws SimError if the message already has a value for the attribute
+	 */
+	public <T> void addAttribute(MessageAttribute<T> a, T value) {
+		if (hasAttribute(a)) {
+			throw new SimError("Message " + this + " already contains value " +
+					"for " + a);
+		}
+		setValue(a, value);
+	}
+
+	/**
+	 * Sets the value of an attribute
+	 * @param a The attribute
+	 * @param value The new value (null removes the value of a number
+	 * attribute)
+	 */
+	public <T> void setAttribute(MessageAttribute<T> a, T value) {
+		setValue(a, value);
+	}
+
+	/**
+	 * Returns the value of an integer attribute
+	 * @param a The attribute (see {@link MessageAttribute#registerInt})
+	 * @return The value
+	 * @throws SimError if the message has no value for the attribute
+	 */
+	public int getInt(MessageAttribute<Integer> a) {
+		if (!a.isNumber()) {
+			return getObjectNumber(a).intValue();
+		}
+		return (int)getNumber(a);
+	}
+
+	/**
+	 * Sets the value of an integer attribute
+	 * @param a The attribute (see {@link MessageAttribute#registerInt})
+	 * @param value The new value
+	 */
+	public void setInt(MessageAttribute<Integer> a, int value) {
+		if (!a.isNumber()) {
+			setValue(a, Integer.valueOf(value));
+			return;
+		}
+		setNumber(a, value);
+	}
+
+	/**
+	 * Returns the value of a double attribute
+	 * @param a The attribute (see {@link MessageAttribute#registerDouble})
+	 * @return The value
+	 * @throws SimError if the message has no value for the attribute
+	 */
+	public double getDouble(MessageAttribute<Double> a) {
+		if (!a.isNumber()) {
+			return getObjectNumber(a).doubleValue();
+		}
+		return getNumber(a);
+	}
+
+	/**
+	 * Sets the value of a double attribute
+	 * @param a The attribute (see {@link MessageAttribute#registerDouble})
+	 * @param value The new value
+	 */
+	public void setDouble(MessageAttribute<Double> a, double value) {
+		if (!a.isNumber()) {
+			setValue(a, Double.valueOf(value));
+			return;
+		}
+		setNumber(a, value);
+	}
+
+	/**
+	 * Returns the value of a number attribute
+	 * @param a The attribute
+	 * @return The value
+	 * @throws SimError if the message has no value for the attribute
+	 */
+	private double getNumber(MessageAttribute<?> a) {
+		if (!hasAttribute(a)) {
+			throw new SimError("Message " + this + " has no value for " + a);
+		}
+		return numbers[a.getSlot()];
+	}
 
-		this.properties.put(key, value);
+	/**
+	 * Returns the value of an object attribute whose values are numbers
+	 * (e.g., registered with Integer as the type)
+	 * @param a The attribute
+	 * @return The value
+	 * @throws SimError if the message has no value for the attribute
+	 */
+	private Number getObjectNumber(MessageAttribute<? extends Number> a) {
+		Number value = getAttribute(a);
+		if (value == null) {
+			throw new SimError("Message " + this + " has no value for " + a);
+		}
+		return value;
+	}
+
+	/**
+	 * Sets the value of a number attribute
+	 * @param a The attribute
+	 * @param value The new value
+	 */
+	private void setNumber(MessageAttribute<?> a, double value) {
+		int slot = a.getSlot();
+		if (numbers == null || slot >= numbers.length) {
+			double[] grown = new double[MessageAttribute.getNrofNumberSlots()];
+			if (numbers != null) {
+				System.arraycopy(numbers, 0, grown, 0, numbers.length);
+			}
+			numbers = grown;
+		}
+		numbers[slot] = value;
+		numbersSet |= 1L << slot;
+	}
+
+	/**
+	 * Sets the value of any attribute
+	 * @param a The attribute
+	 * @param value The new value
+	 * @throws SimError if the value is not of the attribute's type
+	 */
+	private void setValue(MessageAttribute<?> a, Object value) {
+		if (value != null && !a.getType().isInstance(value)) {
+			throw new SimError("Value " + value + " of " +
+					value.getClass().getSimpleName() + " is not valid for " +
+					"message attribute " + a);
+		}
+		if (a.isNumber()) {
+			if (value == null) {
+				numbersSet &= ~(1L << a.getSlot());
+			} else {
+				setNumber(a, ((Number)value).doubleValue());
+			}
+			return;
+		}
+
+		int slot = a.getSlot();
+		if (attributes == null || slot >= attributes.length) {
+			Object[] grown = new Object[MessageAttribute.getNrofObjectSlots()];
+			if (attributes != null) {
+				System.arraycopy(attributes, 0, grown, 0, attributes.length);
+			}
+			attributes = grown;
+		}
+		attributes[slot] = (value != null ? value : NULL_VALUE);
 	}
 	
 	/**
@@ -331,6 +537,33 @@ public class Message implements Comparable<Message> {
 		return m;
 	}
 	
+	/**
+	 * Returns a copy of this message's current state that is not affected
+	 * by later changes to this message (e.g., new hops). Unlike
+	 * {@link #replicate()}, the copy has the same unique id and receive
+	 * time and it doesn't consume a new unique id.
+	 * @return A snapshot of the message
+	 */
+	public Message snapshot() {
+		Message m = new Message(this);
+		m.copyFrom(this);
+		return m;
+	}
+
+	/**
+	 * Copy constructor for snapshots; the rest of the fields are copied by
+	 * {@link #copyFrom(Message)}
+	 * @param m The message to copy
+	 */
+	private Message(Message m) {
+		this.from = m.from;
+		this.to = m.to;
+		this.id = m.id;
+		this.size = m.size;
+		this.uniqueId = m.uniqueId;
+		this.timeReceived = m.timeReceived;
+	}
+
 	/**
 	 * Compares two messages by their ID (alphabetically).
 	 * @see String#compareTo(String)
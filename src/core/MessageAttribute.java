@@ -0,0 +1,231 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Key of a typed message attribute. Classes that attach data to messages
+ * (e.g., routers) register their attributes once, usually in static final
+ * fields, and every attribute gets a slot index. The messages store the
+ * values in small arrays indexed by the slots, so getting and setting an
+ * attribute doesn't hash its name and replicating a message copies only
+ * the arrays. Integer and double attributes are stored without boxing.
+ * <P>The string keyed properties of {@link Message} (e.g.,
+ * {@link Message#getProperty(String)}) use the same storage: a property
+ * name that has not been registered is registered (implicitly) as an
+ * object attribute when it is set for the first time, and a registered
+ * attribute can also be accessed with its name.</P>
+ * <P>The registry is not reset between runs, so the keys can be kept in
+ * static final fields.</P>
+ * @param <T> Type of the attribute's values
+ */
+public final class MessageAttribute<T> {
+	/** Maximum number of registered integer and double attributes */
+	public static final int MAX_NUMBER_ATTRIBUTES = 64;
+
+	/** registered attributes by their names */
+	private static final Map<String, MessageAttribute<?>> attributes =
+		new ConcurrentHashMap<String, MessageAttribute<?>>();
+	private static int nrofObjectSlots = 0;
+	private static int nrofNumberSlots = 0;
+
+	private final String name;
+	private final Class<T> type;
+	/** is the value stored as a number (int or double) */
+	private final boolean number;
+	/** was the attribute registered through the string keyed properties */
+	private final boolean implicit;
+	private final int slot;
+
+	/**
+	 * Constructor.
+	 * @param name Name of the attribute
+	 * @param type Type of the values
+	 * @param number Is the value stored as a number
+	 * @param implicit Is the attribute registered implicitly
+	 * @param slot Index of the attribute in the object or number slots
+	 */
+	private MessageAttribute(String name, Class<T> type, boolean number,
+			boolean implicit, int slot) {
+		this.name = name;
+		this.type = type;
+		this.number = number;
+		this.implicit = implicit;
+		this.slot = slot;
+	}
+
+	/**
+	 * Registers an object valued attribute. Registering the same name again
+	 * with the same type returns the same key.
+	 * @param name Name of the attribute (should be prefixed with e.g. the
+	 * class name to avoid collisions)
+	 * @param type Type of the values
+	 * @return The key of the attribute
+	 * @throws SimError if the name is already registered with another type
+	 */
+	public static <T> MessageAttribute<T> register(String name,
+			Class<T> type) {
+		return register(name, type, false);
+	}
+
+	/**
+	 * Registers an integer valued attribute. The values are stored in the
+	 * number slots of the messages and can be accessed without boxing with
+	 * {@link Message#getInt(MessageAttribute)} and
+	 * {@link Message#setInt(MessageAttribute, int)}.
+	 * @param name Name of the attribute
+	 * @return The key of the attribute
+	 * @throws SimError if the name is already registered with another type
+	 * or if there are too many number attributes
+	 */
+	public static MessageAttribute<Integer> registerInt(String name) {
+		return register(name, Integer.class, true);
+	}
+
+	/**
+	 * Registers a double valued attribute. The values are stored in the
+	 * number slots of the messages and can be accessed without boxing with
+	 * {@link Message#getDouble(MessageAttribute)} and
+	 * {@link Message#setDouble(MessageAttribute, double)}.
+	 * @param name Name of the attribute
+	 * @return The key of the attribute
+	 * @throws SimError if the name is already registered with another type
+	 * or if there are too many number attributes
+	 */
+	public static MessageAttribute<Double> registerDouble(String name) {
+		return register(name, Double.class, true);
+	}
+
+	/**
+	 * Registers an attribute
+	 * @param name Name of the attribute
+	 * @param type Type of the values
+	 * @param number Should the values be stored as numbers
+	 * @return The key of the attribute
+	 */
+	@SuppressWarnings("unchecked")
+	private static synchronized <T> MessageAttribute<T> register(String name,
+			Class<T> type, boolean number) {
+		MessageAttribute<?> old = attributes.get(name);
+		if (old != null && !old.implicit) {
+			if (old.type != type || old.number != number) {
+				throw new SimError("Message attribute " + name +
+						" is already registered with type " +
+						old.type.getSimpleName());
+			}
+			return (MessageAttribute<T>)old;
+		}
+		/* an implicit registration is replaced; the typed keys are
+		 * registered before the messages use the name */
+		MessageAttribute<T> a = newAttribute(name, type, number, false);
+		attributes.put(name, a);
+		return a;
+	}
+
+	/**
+	 * Creates an attribute with the next free slot
+	 * @param name Name of the attribute
+	 * @param type Type of the values
+	 * @param number Should the values be stored as numbers
+	 * @param implicit Is the attribute registered implicitly
+	 * @return The attribute
+	 */
+	private static <T> MessageAttribute<T> newAttribute(String name,
+			Class<T> type, boolean number, boolean implicit) {
+		if (number) {
+			if (nrofNumberSlots == MAX_NUMBER_ATTRIBUTES) {
+				throw new SimError("Too many number valued message " +
+						"attributes (max " + MAX_NUMBER_ATTRIBUTES + ")");
+			}
+			return new MessageAttribute<T>(name, type, true, implicit,
+					nrofNumberSlots++);
+		}
+		return new MessageAttribute<T>(name, type, false, implicit,
+				nrofObjectSlots++);
+	}
+
+	/**
+	 * Returns the attribute registered with the given name
+	 * @param name Name of the attribute
+	 * @return The attribute or null if the name is not registered
+	 */
+	static MessageAttribute<?> get(String name) {
+		return attributes.get(name);
+	}
+
+	/**
+	 * Returns the attribute registered with the given name and registers
+	 * an object valued attribute implicitly if the name is not registered
+	 * @param name Name of the attribute
+	 * @return The attribute
+	 */
+	static synchronized MessageAttribute<?> getOrRegister(String name) {
+		MessageAttribute<?> a = attributes.get(name);
+		if (a == null) {
+			a = newAttribute(name, Object.class, false, true);
+			attributes.put(name, a);
+		}
+		return a;
+	}
+
+	/**
+	 * Returns the number of object slots the messages need
+	 * @return The number of object slots
+	 */
+	static int getNrofObjectSlots() {
+		return nrofObjectSlots;
+	}
+
+	/**
+	 * Returns the number of number slots the messages need
+	 * @return The number of number slots
+	 */
+	static int getNrofNumberSlots() {
+		return nrofNumberSlots;
+	}
+
+	/**
+	 * Returns the name of the attribute
+	 * @return The name of the attribute
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Returns the type of the attribute's values
+	 * @return The type of the values
+	 */
+	public Class<T> getType() {
+		return this.type;
+	}
+
+	/**
+	 * Returns true if the values are stored as numbers (i.e., the
+	 * attribute was registered with {@link #registerInt(String)} or
+	 * {@link #registerDouble(String)})
+	 * @return true if the values are stored as numbers
+	 */
+	boolean isNumber() {
+		return this.number;
+	}
+
+	/**
+	 * Returns the slot index of the attribute
+	 * @return The slot index
+	 */
+	int getSlot() {
+		return this.slot;
+	}
+
+	/**
+	 * Returns a string representation of the attribute
+	 * @return the name and type of the attribute
+	 */
+	public String toString() {
+		return name + " (" + type.getSimpleName() + ")";
+	}
+}
@@ -7,7 +7,7 @@ package core;
 import interfaces.ConnectivityGrid;
 import interfaces.ConnectivityOptimizer;
 
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Random;
 
@@ -40,6 +40,13 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 
 	protected String interfacetype;
 	protected List<Connection> connections; // connected hosts
+	/** the same list as connections, with the peer indexes */
+	private ConnectionList connectionList;
+	/** work arrays of {@link #connectWithinRange(Collection)} */
+	private NetworkInterface[] candidateInterfaces;
+	private int[] candidateAddresses;
+	private double[] candidateRanges;
+	private int[] selectedCandidates;
 	private List<ConnectionListener> cListeners = null; // list of listeners
 	private int address; // network interface address
 	protected double transmitRange;
@@ -70,7 +77,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	public NetworkInterface(Settings s) {
 		this.interfacetype = s.getNameSpace();
-		this.connections = new ArrayList<Connection>();
+		this.connectionList = new ConnectionList(this);
+		this.connections = connectionList;
 		this.address = getNextNetAddress();
 
 		this.transmitRange = s.getDouble(TRANSMIT_RANGE_S);
@@ -89,7 +97,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	public NetworkInterface() {
 		this.interfacetype = "Default";
-		this.connections = new ArrayList<Connection>();
+		this.connectionList = new ConnectionList(this);
+		this.connections = connectionList;
 		this.address = getNextNetAddress();
 	}
 	
@@ -97,7 +106,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 * copy constructor
 	 */
 	public NetworkInterface(NetworkInterface ni) {
-		this.connections = new ArrayList<Connection>();
+		this.connectionList = new ConnectionList(this);
+		this.connections = connectionList;
 		this.address = getNextNetAddress();
 		this.host = ni.host;
 		this.cListeners = ni.cListeners;
@@ -194,6 +204,36 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	public List<Connection> getConnections() {
 		return this.connections;
 	}
+
+	/**
+	 * Returns the connection to another interface
+	 * @param anotherInterface The interface at the other end
+	 * @return The connection or null if the interfaces are not connected
+	 */
+	public Connection getConnectionTo(NetworkInterface anotherInterface) {
+		return this.connectionList.getConnectionTo(anotherInterface);
+	}
+
+	/**
+	 * Returns a connection from this interface to another host
+	 * @param anotherHost The host at the other end
+	 * @return The connection or null if this interface is not connected to
+	 * the host
+	 */
+	public Connection getConnectionTo(DTNHost anotherHost) {
+		return this.connectionList.getConnectionTo(anotherHost);
+	}
+
+	/**
+	 * Returns the connections of this interface that are ready for a
+	 * transfer (up and not transferring anything), in the same order as
+	 * {@link #getConnections()}. The connections must not change during the
+	 * iteration.
+	 * @return The connections that are ready for transfer
+	 */
+	public Iterable<Connection> getReadyConnections() {
+		return this.connectionList.readyConnections();
+	}
 	
 	/**
 	 * Checks if this interface is currently in the scanning mode
@@ -238,10 +278,13 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	protected void connect(Connection con, NetworkInterface anotherInterface) {
 
 		this.connections.add(con);
-		notifyConnectionListeners(CON_UP, anotherInterface.getHost());
 
 		// set up bidirectional connection
 		anotherInterface.getConnections().add(con);
+		this.host.connectionsChanged();
+		anotherInterface.getHost().connectionsChanged();
+
+		notifyConnectionListeners(CON_UP, anotherInterface.getHost());
 
 		// inform routers about the connection
 		this.host.connectionUp(con);
@@ -256,6 +299,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	protected void disconnect(Connection con,
 			NetworkInterface anotherInterface) {
 		con.setUpState(false);
+		this.host.connectionsChanged();
+		anotherInterface.getHost().connectionsChanged();
 		notifyConnectionListeners(CON_DOWN, anotherInterface.getHost());
 
 		// tear down bidirectional connection
@@ -269,6 +314,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	}
 	public void disconnect(NetworkInterface anotherInterface)
 	{
+		this.host.connectionsChanged();
+		anotherInterface.getHost().connectionsChanged();
 		notifyConnectionListeners(CON_DOWN, anotherInterface.getHost());
 	}
 	
@@ -285,9 +332,62 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 			smallerRange = myRange;
 		}
 
+		HostStore store = this.host.getHostStore();
+		if (store != null) {
+			return store.distance(this.host.getAddress(),
+					anotherInterface.getHost().getAddress()) <= smallerRange;
+		}
 		return this.host.getLocation().distance(
 				anotherInterface.getLocation()) <= smallerRange;
 	}
+
+	/**
+	 * Calls {@link #connect(NetworkInterface)} for the given interfaces,
+	 * except that if the hosts use a {@link HostStore}, the interfaces that
+	 * are not within range are first filtered out in one batch. This may only
+	 * be used by interfaces whose <code>connect</code> does nothing unless
+	 * {@link #isScanning()} (checked first) and
+	 * {@link #isWithinRange(NetworkInterface)} are true.
+	 * @param candidates The interfaces to try to connect to
+	 */
+	protected void connectWithinRange(Collection<NetworkInterface> candidates) {
+		HostStore store = this.host.getHostStore();
+		if (store == null) {
+			for (NetworkInterface ni : candidates) {
+				connect(ni);
+			}
+			return;
+		}
+		/* connect() would check this first for every candidate; the first
+		   check may start a new scan round, later ones don't change it */
+		if (candidates.isEmpty() || !isScanning()) {
+			return;
+		}
+
+		int n = candidates.size();
+		if (candidateAddresses == null || candidateAddresses.length < n) {
+			int size = Math.max(n, 2 * (candidateAddresses == null ? 0 :
+				candidateAddresses.length));
+			candidateAddresses = new int[size];
+			candidateRanges = new double[size];
+			candidateInterfaces = new NetworkInterface[size];
+			selectedCandidates = new int[size];
+		}
+		int i = 0;
+		for (NetworkInterface ni : candidates) {
+			candidateInterfaces[i] = ni;
+			candidateAddresses[i] = ni.getHost().getAddress();
+			candidateRanges[i] = ni.getTransmitRange();
+			i++;
+		}
+
+		int selected = store.selectWithinRange(this.host.getAddress(),
+				getTransmitRange(), candidateAddresses, candidateRanges, n,
+				selectedCandidates);
+		for (i = 0; i < selected; i++) {
+			connect(candidateInterfaces[selectedCandidates[i]]);
+		}
+	}
 	
 	/**
 	 * Returns true if the given NetworkInterface is connected to this host. 
@@ -295,13 +395,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 * @return True if the two hosts are connected
 	 */
 	protected boolean isConnected(NetworkInterface netinterface) {
-		for (int i = 0; i < this.connections.size(); i++) {
-			if (this.connections.get(i).getOtherInterface(this) == 
-				netinterface) {
-				return true;
-			}
-		}
-		return false;
+		return this.connectionList.getConnectionTo(netinterface) != null;
 	}
 	
 	/**
@@ -329,9 +423,12 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 * @param otherHost The other host on the other end of the connection.
 	 */
 	public void notifyConnectionListeners(int type, DTNHost otherHost) {
+		SimProfiler.count(type == CON_UP ? SimProfiler.CONNECTIONS_UP :
+			SimProfiler.CONNECTIONS_DOWN);
 		if (this.cListeners == null) {
 			return;
 		}
+		long start = SimProfiler.start();
 		for (ConnectionListener cl : this.cListeners) {
 			switch (type) {
 			case CON_UP:
@@ -344,6 +441,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 				assert false : type;	// invalid type code
 			}
 		}
+		SimProfiler.stop(SimProfiler.CONNECTION_LISTENERS, start);
 	}
 	
 	/**
@@ -379,22 +477,22 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 * @param anotherHost The host to disconnect from this host
 	 */
 	public void destroyConnection(DTNHost anotherHost) {
-		for (int i=0; i < this.connections.size(); i++) {
-			if (this.connections.get(i).getOtherNode(this.host) == anotherHost){
-				removeConnectionByIndex(i);
-			}
+		Connection con;
+		while ((con = connectionList.getConnectionTo(anotherHost)) != null) {
+			removeConnection(con);
 		}
 		// the connection didn't exist, do nothing
 	}
 
 	/**
-	 * Removes a connection by its position (index) in the connections array
-	 * @param index The array index of the connection to be removed
+	 * Removes a connection from this interface
+	 * @param con The connection to be removed
 	 */
-	private void removeConnectionByIndex(int index) {
-		Connection con = this.connections.get(index);
+	private void removeConnection(Connection con) {
 		DTNHost anotherNode = con.getOtherNode(this.host);
 		con.setUpState(false);
+		this.host.connectionsChanged();
+		anotherNode.connectionsChanged();
 		notifyConnectionListeners(CON_DOWN, anotherNode);
 
 		// tear down bidirectional connection
@@ -406,7 +504,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		this.host.connectionDown(con);
 		anotherNode.connectionDown(con);
 
-		connections.remove(index);
+		connections.remove(con);
+		this.host.connectionsChanged();
 	}
 
 	/**
@@ -444,7 +543,11 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 
 	public boolean removeConnection(Connection con, NetworkInterface initiator)
 	{
-		return this.connections.remove(con);
+		boolean removed = this.connections.remove(con);
+		if (removed) {
+			this.host.connectionsChanged();
+		}
+		return removed;
 	}
 	
 	/*public boolean hasConnection(Connection con)
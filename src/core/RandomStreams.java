@@ -0,0 +1,98 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import movement.MovementModel;
+
+/**
+ * Derives independent, reproducible random number streams for the hosts
+ * and the subsystems of the simulation. Each stream is seeded only by the
+ * scenario seed, the subsystem and the id (e.g., address) of its owner, so
+ * the numbers one host gets don't depend on what the other hosts did
+ * before it, or in which order the hosts are updated.
+ * <P>The streams are used only if {@link #RANDOM_STREAMS_S} is true.
+ * Otherwise the simulation uses its old random number generators (the
+ * shared generator of the movement models and generators seeded with the
+ * simulation time), so the results of old scenarios don't change.</P>
+ */
+public class RandomStreams {
+	/** Use the per host random streams -setting id ({@value}). Boolean
+	 * (in the {@link SimScenario#SCENARIO_NS} namespace). Default is false
+	 * (the old random number generators are used). */
+	public static final String RANDOM_STREAMS_S = "randomStreams";
+	/** Seed of the random streams -setting id ({@value}). Integer (in the
+	 * {@link SimScenario#SCENARIO_NS} namespace). Default is the movement
+	 * models' seed (<code>MovementModel.rngSeed</code>) or 0 if that is not
+	 * set either. */
+	public static final String RNG_SEED_S = "rngSeed";
+
+	/** Stream of the movement models */
+	public static final int MOVEMENT = 1;
+	/** Stream of the routers */
+	public static final int ROUTING = 2;
+	/** Stream of the host update order of the world */
+	public static final int UPDATE_ORDER = 3;
+
+	/** Odd constant (the golden ratio) that spreads the child ids */
+	private static final long GAMMA = 0x9e3779b97f4a7c15L;
+
+	private static boolean enabled;
+	private static long seed;
+
+	static {
+		DTNSim.registerForReset(RandomStreams.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Reads the settings again
+	 */
+	public static void reset() {
+		Settings s = new Settings(SimScenario.SCENARIO_NS);
+		enabled = s.contains(RANDOM_STREAMS_S) &&
+			s.getBoolean(RANDOM_STREAMS_S);
+
+		if (s.contains(RNG_SEED_S)) {
+			seed = s.getInt(RNG_SEED_S);
+		} else {
+			Settings mm = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+			seed = mm.contains(MovementModel.RNG_SEED) ?
+					mm.getInt(MovementModel.RNG_SEED) : 0;
+		}
+	}
+
+	/**
+	 * Returns true if the per host random streams are used
+	 * @return true if the per host random streams are used
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Returns a new random number generator for a stream. Every call with
+	 * the same arguments returns a generator that produces the same numbers.
+	 * @param stream The subsystem of the stream (e.g., {@link #MOVEMENT})
+	 * @param id Id of the owner of the stream within the subsystem (e.g.,
+	 * the address of a host)
+	 * @return A new random number generator
+	 */
+	public static Random newStream(int stream, int id) {
+		return new Random(derive(derive(seed, stream), id));
+	}
+
+	/**
+	 * Derives a seed for a child from a parent seed. The result depends only
+	 * on the two arguments and is well mixed even for consecutive ids.
+	 * @param parent The parent seed
+	 * @param child Id of the child
+	 * @return The child's seed
+	 */
+	private static long derive(long parent, long child) {
+		return new SplittableRandom(parent + child * GAMMA).nextLong();
+	}
+}
@@ -12,6 +12,7 @@ import java.io.PrintStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Interface for simulation settings stored in setting file(s). Settings
@@ -56,6 +57,10 @@ public class Settings {
 
 	/** run index for run-specific settings */
 	private static int runIndex = 0;
+	/** resolved (and parsed) values of the requested settings by their full
+	 * property names. Valid for the current settings and run index. */
+	private static Map<String, Value> values =
+		new ConcurrentHashMap<String, Value>();
 	private String namespace = null; // namespace to look the settings from
 	private String secondaryNamespace = null;
 	private Stack<String> oldNamespaces;
@@ -101,6 +106,28 @@ public class Settings {
 	public static void setRunIndex(int index) {
 		runIndex = index;
 		writtenSettings.clear();
+		values.clear();
+	}
+
+	/**
+	 * Returns the names of all the settings whose value is a run array
+	 * (see {@link #setRunIndex(int)})
+	 * 
+	 * @return The names of the settings in alphabetical order
+	 */
+	public static List<String> getRunArraySettings() {
+		if (props == null) {
+			init(null);
+		}
+		List<String> names = new ArrayList<String>();
+		for (String name : props.stringPropertyNames()) {
+			String value = props.getProperty(name).trim();
+			if (value.startsWith("[") && value.endsWith("]")) {
+				names.add(name);
+			}
+		}
+		Collections.sort(names);
+		return names;
 	}
 
 	/**
@@ -229,6 +256,7 @@ public class Settings {
 		} catch (IOException e) {
 			throw new SettingsError(e);
 		}
+		values.clear();
 
 		outFile = props.getProperty(SETTING_OUTPUT_S);
 		if (outFile != null) {
@@ -247,6 +275,7 @@ public class Settings {
 
 	public static void addSetting(String name, String value) {
 		props.put(name, value);
+		values.clear();
 	}
 
 	/**
@@ -263,6 +292,7 @@ public class Settings {
 		} catch (IOException e) {
 			throw new SettingsError(e);
 		}
+		values.clear();
 	}
 
 	/**
@@ -270,7 +300,7 @@ public class Settings {
 	 * 
 	 * @param setting The string to write
 	 */
-	private static void outputSetting(String setting) {
+	private static synchronized void outputSetting(String setting) {
 		if (out != null && !writtenSettings.contains(setting)) {
 			if (writtenSettings.size() == 0) {
 				out.println("# Settings for run " + (runIndex + 1));
@@ -289,16 +319,13 @@ public class Settings {
 	 * @return True if the setting exists, false if not
 	 */
 	public boolean contains(String name) {
+		if (lookup(name) == null) {
+			return false; // didn't find the setting
+		}
 		try {
-			String value = getSetting(name);
-			if (value == null) {
-				return false;
-			}
-
-			else
-				return value.trim().length() > 0;
+			return getSetting(name).trim().length() > 0;
 		} catch (SettingsError e) {
-			return false; // didn't find the setting
+			return false; // couldn't fill the value
 		}
 	}
 
@@ -331,48 +358,75 @@ public class Settings {
 	 *                       the namespaces
 	 */
 	public String getSetting(String name) {
-		String fullPropName;
+		return getValue(name).getString(this);
+	}
+
+	/**
+	 * Returns the resolved value of a setting. The value is looked up like
+	 * {@link #getSetting(String)} does it, and written to the settings
+	 * output.
+	 * 
+	 * @param name Name of the setting to get
+	 * @return The value
+	 * @throws SettingsError if the setting is not found from either one of
+	 *                       the namespaces
+	 */
+	private Value getValue(String name) {
+		Value v = lookup(name);
+		if (v == null) {
+			throw new SettingsError("Can't find setting " +
+					getPropertyNamesString(name));
+		}
+
+		String value = v.getString(this);
+		if (out != null) {
+			outputSetting(getFullPropertyName(name, false) + " = " + value);
+		}
+		return v;
+	}
+
+	/**
+	 * Finds a setting from the primary namespace, the secondary namespace
+	 * and the earlier secondary namespaces (in this order).
+	 * 
+	 * @param name Name of the setting
+	 * @return The (not yet necessarily resolved) value or null if no
+	 *         non-empty value was found
+	 */
+	private Value lookup(String name) {
 		if (props == null) {
 			init(null);
 		}
-		fullPropName = getFullPropertyName(name, false);
-		String value = props.getProperty(fullPropName);
+		Value v = getPropertyValue(getFullPropertyName(name, false));
 
-		/*
-		 * if ((value == null || value.length() == 0) &&
-		 * this.secondaryNamespace != null) {
-		 * // try secondary namespace if the value wasn't found from primary
-		 * fullPropName = getFullPropertyName(name, true);
-		 * value = props.getProperty(fullPropName);
-		 * 
-		 * if (value != null) {
-		 * value = parseRunSetting(valueFillString(value.trim()));
-		 * }
-		 * }
-		 */
-		if ((value == null || value.length() == 0) && this.secondaryNamespace != null) {
-			value = props.getProperty(this.secondaryNamespace + '.' + name);
+		if (v.isEmpty() && this.secondaryNamespace != null) {
+			v = getPropertyValue(this.secondaryNamespace + '.' + name);
 		}
 
-		if (value == null || value.length() == 0) {
+		if (v.isEmpty()) {
 			Iterator<String> i = this.secondaryNamespaces.iterator();
-			while (value == null && i.hasNext()) {
-				value = props.getProperty(i.next() + '.' + name);
+			while (v.raw == null && i.hasNext()) {
+				v = getPropertyValue(i.next() + '.' + name);
 			}
-
-		}
-
-		if (value == null || value.length() == 0) {
-			throw new SettingsError("Can't find setting " +
-					getPropertyNamesString(name));
 		}
 
-		// if (value != null) { // found value, check if run setting can be parsed
-		value = parseRunSetting(valueFillString(value.trim()));
-		// }
+		return v.isEmpty() ? null : v;
+	}
 
-		outputSetting(fullPropName + " = " + value);
-		return value;
+	/**
+	 * Returns the cached value of a property (the value object is created
+	 * on the first request)
+	 * 
+	 * @param fullPropName Full name of the property
+	 * @return The value
+	 */
+	private static Value getPropertyValue(String fullPropName) {
+		Value v = values.get(fullPropName);
+		if (v == null) {
+			v = new Value(props.getProperty(fullPropName));
+			values.put(fullPropName, v);
+		}
+		return v;
 	}
 
 	/**
@@ -427,7 +481,13 @@ public class Settings {
 	 * @return Value of the setting as a double
 	 */
 	public double getDouble(String name) {
-		return parseDouble(getSetting(name), name);
+		Value v = getValue(name);
+		Double number = v.number;
+		if (number == null) {
+			number = parseDouble(v.getString(this), name);
+			v.number = number;
+		}
+		return number;
 	}
 
 	/**
@@ -474,17 +534,22 @@ public class Settings {
 	 * @throws SettingsError if something went wrong with reading
 	 */
 	public String[] getCsvSetting(String name) {
-		ArrayList<String> values = new ArrayList<String>();
-		String csv = getSetting(name);
-		try (Scanner s = new Scanner(csv)) {
-			s.useDelimiter(",");
-
-			while (s.hasNext()) {
-				values.add(s.next().trim());
+		Value v = getValue(name);
+		String[] csv = v.csv;
+		if (csv == null) {
+			ArrayList<String> values = new ArrayList<String>();
+			try (Scanner s = new Scanner(v.getString(this))) {
+				s.useDelimiter(",");
+
+				while (s.hasNext()) {
+					values.add(s.next().trim());
+				}
 			}
+			csv = values.toArray(new String[0]);
+			v.csv = csv;
 		}
 
-		return values.toArray(new String[0]);
+		return csv.clone();
 	}
 
 	/**
@@ -500,14 +565,24 @@ public class Settings {
 	 */
 	public String[] getCsvSetting(String name, int expectedCount) {
 		String[] values = getCsvSetting(name);
+		checkCount(values.length, name, expectedCount);
+		return values;
+	}
 
-		if (values.length != expectedCount) {
-			throw new SettingsError("Read unexpected amount (" + values.length +
+	/**
+	 * Checks that a CSV setting contained the expected amount of values
+	 * 
+	 * @param count         How many values were read
+	 * @param name          Name of the setting
+	 * @param expectedCount How many values are expected
+	 * @throws SettingsError if the counts differ
+	 */
+	private static void checkCount(int count, String name, int expectedCount) {
+		if (count != expectedCount) {
+			throw new SettingsError("Read unexpected amount (" + count +
 					") of comma separated values for setting '"
 					+ name + "' (expected " + expectedCount + ")");
 		}
-
-		return values;
 	}
 
 	/**
@@ -520,7 +595,9 @@ public class Settings {
 	 * @see #getCsvSetting(String, int)
 	 */
 	public double[] getCsvDoubles(String name, int expectedCount) {
-		return parseDoubles(getCsvSetting(name, expectedCount), name);
+		double[] values = getCsvDoubles(name);
+		checkCount(values.length, name, expectedCount);
+		return values;
 	}
 
 	/**
@@ -531,7 +608,13 @@ public class Settings {
 	 * @see #getCsvSetting(String)
 	 */
 	public double[] getCsvDoubles(String name) {
-		return parseDoubles(getCsvSetting(name), name);
+		Value v = getValue(name);
+		double[] doubles = v.doubles;
+		if (doubles == null) {
+			doubles = parseDoubles(getCsvSetting(name), name);
+			v.doubles = doubles;
+		}
+		return doubles.clone();
 	}
 
 	/**
@@ -796,4 +879,48 @@ public class Settings {
 		return props.toString();
 	}
 
+	/**
+	 * Value of a setting property. The filled and run index specific value
+	 * and the typed values are resolved on the first request, so repeated
+	 * requests (e.g., from the constructors of every host) don't parse the
+	 * value again.
+	 */
+	private static class Value {
+		/** the value in the settings file(s) or null if not set */
+		private final String raw;
+		private volatile String string;
+		private volatile Double number;
+		private volatile String[] csv;
+		private volatile double[] doubles;
+
+		private Value(String raw) {
+			this.raw = raw;
+		}
+
+		/**
+		 * Returns true if the value is not set or is an empty string
+		 * 
+		 * @return True if the value is not set or is an empty string
+		 */
+		private boolean isEmpty() {
+			return raw == null || raw.length() == 0;
+		}
+
+		/**
+		 * Returns the value with the place holders filled and the run
+		 * specific value selected
+		 * 
+		 * @param s Settings to fill the value with
+		 * @return The resolved value
+		 */
+		private String getString(Settings s) {
+			String value = this.string;
+			if (value == null) {
+				value = parseRunSetting(s.valueFillString(raw.trim()));
+				this.string = value;
+			}
+			return value;
+		}
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,234 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Collects per-phase wall clock times and event counters of the simulation
+ * loop. Profiling is off by default and then costs only a check of a static
+ * flag at each measuring point. It is turned on with the
+ * {@link World#PROFILE_S} setting or by {@link report.ProfilingReport}.
+ * <P>Phase times are cumulative nanoseconds since the start of the run.
+ * The {@link #CONNECTION_LISTENERS} phase is measured inside the phase that
+ * created or tore down the connection, so it is also included in that
+ * phase's time. When profiling is on, every world update is also recorded
+ * as a <code>the_one.WorldUpdate</code> JFR event that carries the phase
+ * times of that update.</P>
+ */
+public class SimProfiler {
+	/** Processing external events (not the host updates after them) */
+	public static final int EVENTS = 0;
+	/** Moving hosts */
+	public static final int MOVEMENT = 1;
+	/** Updating network interfaces (connectivity detection and transfers) */
+	public static final int INTERFACES = 2;
+	/** Notifying connection listeners (nested in other phases) */
+	public static final int CONNECTION_LISTENERS = 3;
+	/** Updating message routers */
+	public static final int ROUTERS = 4;
+	/** Notifying update listeners */
+	public static final int UPDATE_LISTENERS = 5;
+	/** Names of the phases, indexed by phase id */
+	public static final String[] PHASE_NAMES = {"events", "movement",
+		"interfaces", "conListeners", "routers", "updateListeners"};
+
+	/** Connections that went up */
+	public static final int CONNECTIONS_UP = 0;
+	/** Connections that went down */
+	public static final int CONNECTIONS_DOWN = 1;
+	/** Message transfers that were started */
+	public static final int TRANSFERS_STARTED = 2;
+	/** Message transfers that were aborted */
+	public static final int TRANSFERS_ABORTED = 3;
+	/** Message transfers that were completed */
+	public static final int TRANSFERS_DONE = 4;
+	/** External events that were processed */
+	public static final int EVENTS_PROCESSED = 5;
+	/** World updates (ticks) */
+	public static final int UPDATES = 6;
+	/** Router updates that were skipped because the router was idle */
+	public static final int ROUTER_UPDATES_SKIPPED = 7;
+	/** Names of the counters, indexed by counter id */
+	public static final String[] COUNTER_NAMES = {"conUp", "conDown",
+		"transfersStarted", "transfersAborted", "transfersDone",
+		"eventsProcessed", "updates", "routerUpdatesSkipped"};
+
+	private static boolean enabled;
+	private static long[] phaseNanos;
+	private static long[] counters;
+	private static long[] tickStartNanos;
+	private static WorldUpdateEvent tickEvent;
+
+	static {
+		DTNSim.registerForReset(SimProfiler.class.getCanonicalName());
+		reset();
+	}
+
+	private SimProfiler() {}
+
+	/**
+	 * Turns profiling off and clears all the collected data
+	 */
+	public static void reset() {
+		enabled = false;
+		phaseNanos = new long[PHASE_NAMES.length];
+		counters = new long[COUNTER_NAMES.length];
+		tickStartNanos = new long[PHASE_NAMES.length];
+		tickEvent = null;
+	}
+
+	/**
+	 * Turns profiling on or off
+	 * @param enable True for turning profiling on
+	 */
+	public static void setEnabled(boolean enable) {
+		enabled = enable;
+	}
+
+	/**
+	 * Returns true if profiling is on
+	 * @return true if profiling is on
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Starts measuring a phase.
+	 * @return The start time to give to {@link #stop(int, long)}, or 0 if
+	 * profiling is off
+	 */
+	public static long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Stops measuring a phase and adds the elapsed time to the phase
+	 * @param phase Id of the phase (e.g. {@link #MOVEMENT})
+	 * @param startTime The value returned by {@link #start()}
+	 */
+	public static void stop(int phase, long startTime) {
+		if (enabled) {
+			phaseNanos[phase] += System.nanoTime() - startTime;
+		}
+	}
+
+	/**
+	 * Increments a counter by one
+	 * @param counter Id of the counter (e.g. {@link #CONNECTIONS_UP})
+	 */
+	public static void count(int counter) {
+		if (enabled) {
+			counters[counter]++;
+		}
+	}
+
+	/**
+	 * Returns the total time spent in a phase
+	 * @param phase Id of the phase
+	 * @return The time in nanoseconds
+	 */
+	public static long getPhaseNanos(int phase) {
+		return phaseNanos[phase];
+	}
+
+	/**
+	 * Returns the value of a counter
+	 * @param counter Id of the counter
+	 * @return The value of the counter
+	 */
+	public static long getCount(int counter) {
+		return counters[counter];
+	}
+
+	/**
+	 * Called by the world when an update starts
+	 */
+	static void updateStarted() {
+		if (!enabled) {
+			return;
+		}
+		counters[UPDATES]++;
+
+		WorldUpdateEvent e = new WorldUpdateEvent();
+		if (e.isEnabled()) {
+			System.arraycopy(phaseNanos, 0, tickStartNanos, 0,
+					phaseNanos.length);
+			e.begin();
+			tickEvent = e;
+		}
+	}
+
+	/**
+	 * Called by the world when an update is done
+	 */
+	static void updateDone() {
+		WorldUpdateEvent e = tickEvent;
+		if (e == null) {
+			return;
+		}
+		tickEvent = null;
+
+		e.end();
+		if (e.shouldCommit()) {
+			e.simTime = SimClock.getTime();
+			e.events = phaseNanos[EVENTS] - tickStartNanos[EVENTS];
+			e.movement = phaseNanos[MOVEMENT] - tickStartNanos[MOVEMENT];
+			e.interfaces = phaseNanos[INTERFACES] -
+				tickStartNanos[INTERFACES];
+			e.connectionListeners = phaseNanos[CONNECTION_LISTENERS] -
+				tickStartNanos[CONNECTION_LISTENERS];
+			e.routers = phaseNanos[ROUTERS] - tickStartNanos[ROUTERS];
+			e.updateListeners = phaseNanos[UPDATE_LISTENERS] -
+				tickStartNanos[UPDATE_LISTENERS];
+			e.commit();
+		}
+	}
+
+	/**
+	 * Returns a human readable summary of the collected data
+	 * @return The summary
+	 */
+	public static String getSummary() {
+		StringBuilder sb = new StringBuilder("Profile:");
+		for (int i = 0; i < PHASE_NAMES.length; i++) {
+			sb.append(String.format(" %s=%.2fs", PHASE_NAMES[i],
+					phaseNanos[i] / 1e9));
+		}
+		for (int i = 0; i < COUNTER_NAMES.length; i++) {
+			sb.append(" " + COUNTER_NAMES[i] + "=" + counters[i]);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * JFR event for a single world update
+	 */
+	@Name("the_one.WorldUpdate")
+	@Label("World Update")
+	@Category("ONE Simulator")
+	@Description("One update step of the simulated world")
+	static class WorldUpdateEvent extends Event {
+		@Label("Simulation Time")
+		double simTime;
+		@Label("Events") @Timespan
+		long events;
+		@Label("Movement") @Timespan
+		long movement;
+		@Label("Interfaces") @Timespan
+		long interfaces;
+		@Label("Connection Listeners") @Timespan
+		long connectionListeners;
+		@Label("Routers") @Timespan
+		long routers;
+		@Label("Update Listeners") @Timespan
+		long updateListeners;
+	}
+}
@@ -4,12 +4,19 @@
  */
 package core;
 
+import input.ContactTraceReader;
 import input.EventQueue;
 import input.EventQueueHandler;
+import interfaces.ConnectivityGrid;
 
+import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import movement.MapBasedMovement;
 import movement.WorkingDayMovement;
@@ -42,6 +49,12 @@ public class SimScenario implements Serializable {
 	public static final String UP_INT_S = "updateInterval";
 	/** simulate connections -setting id ({@value})*/
 	public static final String SIM_CON_S = "simulateConnections";
+	/** simulate movement -setting id ({@value}). Default is true. */
+	public static final String SIM_MOVEMENT_S = "simulateMovement";
+	/** contact trace to replay -setting id ({@value}). Path of a contact
+	 * trace file (see {@link report.ContactTraceReport}). If defined, the
+	 * connections are replayed from the trace and not simulated. */
+	public static final String CONTACT_TRACE_S = "contactTrace";
 
 	/** namespace for interface type settings ({@value}) */
 	public static final String INTTYPE_NS = "Interface";
@@ -113,6 +126,10 @@ public class SimScenario implements Serializable {
 	private EventQueueHandler eqHandler;
 	/** Should connections between hosts be simulated */
 	private boolean simulateConnections;
+	/** Should hosts be moved */
+	private boolean simulateMovement;
+	/** Contact trace the connections are replayed from (or null) */
+	private ContactTraceReader contactTrace;
 	/** Map used for host movement (if any) */
 	private SimMap simMap;
 
@@ -147,6 +164,14 @@ public class SimScenario implements Serializable {
 		this.endTime = s.getDouble(END_TIME_S);
 		this.updateInterval = s.getDouble(UP_INT_S);
 		this.simulateConnections = s.getBoolean(SIM_CON_S);
+		this.simulateMovement = !s.contains(SIM_MOVEMENT_S) ||
+			s.getBoolean(SIM_MOVEMENT_S);
+		String contactTraceFile = null;
+		if (s.contains(CONTACT_TRACE_S)) {
+			contactTraceFile = s.valueFillString(
+					s.getSetting(CONTACT_TRACE_S));
+			this.simulateConnections = false;
+		}
 
 		ensurePositiveValue(nrofGroups, NROF_GROUPS_S);
 		ensurePositiveValue(endTime, END_TIME_S);
@@ -169,10 +194,15 @@ public class SimScenario implements Serializable {
 		this.worldSizeY = worldSize[1];
 		
 		createHosts();
+
+		if (contactTraceFile != null) {
+			this.contactTrace = new ContactTraceReader(
+					new File(contactTraceFile), hosts);
+		}
 		
 		this.world = new World(hosts, worldSizeX, worldSizeY, updateInterval, 
-				updateListeners, simulateConnections, 
-				eqHandler.getEventQueues());
+				updateListeners, simulateConnections, simulateMovement,
+				contactTrace, eqHandler.getEventQueues());
 	}
 	
 	/**
@@ -214,6 +244,14 @@ public class SimScenario implements Serializable {
 		return this.simulateConnections;
 	}
 
+	/**
+	 * Returns true if hosts should be moved
+	 * @return true if hosts should be moved (false if not)
+	 */
+	public boolean simulateMovement() {
+		return this.simulateMovement;
+	}
+
 	/**
 	 * Returns the width of the world
 	 * @return the width of the world
@@ -334,6 +372,33 @@ public class SimScenario implements Serializable {
 	protected void createHosts() {
 		this.hosts = new ArrayList<DTNHost>();
 
+		Settings os = new Settings(World.SETTINGS_NS);
+		int nrofThreads = os.contains(World.HOST_CREATION_THREADS_S) ?
+				os.getInt(World.HOST_CREATION_THREADS_S) : 0;
+		ExecutorService pool = null;
+		if (nrofThreads > 0) {
+			pool = Executors.newFixedThreadPool(nrofThreads);
+			ConnectivityGrid.deferAdditions();
+		}
+		try {
+			createHostGroups(pool, nrofThreads);
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
+				/* also if the creation failed, so that later additions
+				 * aren't deferred */
+				ConnectivityGrid.addDeferred();
+			}
+		}
+	}
+
+	/**
+	 * Creates the hosts of all the groups
+	 * @param pool Threads for creating the hosts in phases or null if the
+	 * hosts should be created one by one
+	 * @param nrofThreads Number of threads in the pool
+	 */
+	private void createHostGroups(ExecutorService pool, int nrofThreads) {
 		for (int i=1; i<=nrofGroups; i++) {
 			List<NetworkInterface> mmNetInterfaces = 
 				new ArrayList<NetworkInterface>();
@@ -416,6 +481,12 @@ public class SimScenario implements Serializable {
 			}
 				
 
+			if (pool != null) {
+				createHostsInPhases(pool, nrofThreads, gid, nrofHosts,
+						mmNetInterfaces, mmProto, mRouterProto);
+				continue;
+			}
+
 			// creates hosts of ith group
 			for (int j=0; j<nrofHosts; j++) {
 				ModuleCommunicationBus comBus = new ModuleCommunicationBus();
@@ -430,6 +501,81 @@ public class SimScenario implements Serializable {
 		}
 	}
 
+	/**
+	 * Creates the hosts of a group in phases. The addresses, interfaces and
+	 * routers are created in the host order in this thread, the movement
+	 * models are replicated and the initial locations drawn in parallel
+	 * (when that doesn't change the results), and finally the movement
+	 * listeners are informed in the host order.
+	 * @param pool The threads
+	 * @param nrofThreads Number of threads in the pool
+	 * @param gid Group id of the hosts
+	 * @param nrofHosts Number of hosts to create
+	 * @param interfaces Prototypes of the network interfaces
+	 * @param mmProto Prototype of the movement model
+	 * @param mRouterProto Prototype of the router
+	 */
+	private void createHostsInPhases(ExecutorService pool, int nrofThreads,
+			String gid, int nrofHosts, List<NetworkInterface> interfaces,
+			final MovementModel mmProto, MessageRouter mRouterProto) {
+		int firstAddress = DTNHost.reserveAddresses(nrofHosts);
+		final List<DTNHost> group = new ArrayList<DTNHost>(nrofHosts);
+		for (int j=0; j<nrofHosts; j++) {
+			group.add(new DTNHost(this.messageListeners,
+					this.movementListeners, gid, interfaces,
+					new ModuleCommunicationBus(), mRouterProto,
+					firstAddress + j));
+		}
+
+		if (RandomStreams.isEnabled() && mmProto.isConcurrentlyReplicable()
+				&& nrofThreads > 1) {
+			/* a few chunks per thread to balance the load */
+			int chunkSize = Math.max(1, nrofHosts / (nrofThreads * 4));
+			List<Future<?>> chunks = new ArrayList<Future<?>>();
+			for (int j=0; j<nrofHosts; j+=chunkSize) {
+				final int start = j;
+				final int end = Math.min(j + chunkSize, nrofHosts);
+				chunks.add(pool.submit(new Runnable() {
+					public void run() {
+						for (int k=start; k<end; k++) {
+							group.get(k).initMovement(mmProto);
+						}
+					}
+				}));
+			}
+			for (Future<?> chunk : chunks) {
+				waitFor(chunk);
+			}
+		} else {
+			for (DTNHost host : group) {
+				host.initMovement(mmProto);
+			}
+		}
+
+		for (DTNHost host : group) {
+			host.notifyInitialLocation();
+			hosts.add(host);
+		}
+	}
+
+	/**
+	 * Waits until a task of the host creation threads is done
+	 * @param task The task
+	 * @throws SimError if the task failed (errors are thrown as such)
+	 */
+	private static void waitFor(Future<?> task) {
+		try {
+			task.get();
+		} catch (InterruptedException e) {
+			throw new SimError("Interrupted while creating hosts", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Error) {
+				throw (Error)e.getCause();
+			}
+			throw new SimError(e);
+		}
+	}
+
 	/**
 	 * Returns the list of nodes for this scenario.
 	 * @return the list of nodes for this scenario.
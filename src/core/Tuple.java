@@ -1,9 +1,12 @@
 package core;
 
+import java.io.Serializable;
+
 /**
  * A generic key-value tuple.
  */
-public class Tuple<K, V> {
+public class Tuple<K, V> implements Serializable {
+	private static final long serialVersionUID = 1L;
 	private K key;
 	private V value;
 
@@ -0,0 +1,260 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import movement.MovementModel;
+import movement.Path;
+
+/**
+ * Checkpoint of the movement state of the hosts after the movement model
+ * warm up. The checkpoint has each host's movement model (including the
+ * model's internal state, such as the path finders, routes and bus and
+ * evening activity control systems), location, destination, path and speed,
+ * plus the movement models' common random number generator. Restoring a
+ * checkpoint gives the same state as running the warm up again.
+ * <P>A checkpoint is only restored if it was saved by a scenario with the
+ * same warm up time, number of hosts, initial host locations and initial
+ * movement state. The movement state before the warm up (each host's
+ * movement model with its settings, and the shared state including the
+ * random number generator) is serialized and hashed to a fingerprint, so
+ * changing any movement setting or the random seed makes the checkpoint
+ * stale and it's replaced. Settings that don't affect the movement (e.g.,
+ * routing and report settings) can be changed. A checkpoint that was
+ * written by a different version of the movement classes can't be read
+ * and is ignored, too.</P>
+ * <P>Movement listeners don't get the events of the warm up period when a
+ * checkpoint is restored.</P>
+ */
+public class WarmupCheckpoint {
+	/** Identifier at the start of checkpoint files */
+	private static final String MAGIC = "ONE warmup checkpoint 2";
+
+	private File file;
+	private List<DTNHost> hosts;
+	private double warmupTime;
+	private long fingerprint;
+
+	/**
+	 * Creates a checkpoint handler for the hosts. Must be created before
+	 * the warm up since the hosts' initial locations are part of the
+	 * scenario's fingerprint.
+	 * @param file The checkpoint file
+	 * @param hosts All the hosts
+	 * @param warmupTime Length of the warm up (seconds)
+	 */
+	public WarmupCheckpoint(File file, List<DTNHost> hosts,
+			double warmupTime) {
+		this.file = file;
+		this.hosts = hosts;
+		this.warmupTime = warmupTime;
+		this.fingerprint = computeFingerprint();
+	}
+
+	/**
+	 * Computes a fingerprint of the scenario's hosts and their initial
+	 * movement state. The movement models and the shared movement state
+	 * are serialized (as they are written to the checkpoint) and hashed,
+	 * so any change in their settings (e.g., speeds, wait times or maps)
+	 * changes the fingerprint.
+	 * @return The fingerprint
+	 * @throws SimError if the movement state can't be serialized
+	 */
+	private long computeFingerprint() {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new SimError(e);
+		}
+
+		try (ObjectOutputStream out = new CheckpointOutputStream(
+				new DigestOutputStream(OutputStream.nullOutputStream(),
+						digest))) {
+			out.writeUTF(MAGIC);
+			out.writeDouble(warmupTime);
+			out.writeInt(hosts.size());
+			out.writeObject(MovementModel.getSharedState());
+			for (DTNHost host : hosts) {
+				out.writeObject(host.getMovement());
+				out.writeObject(host.getLocation());
+			}
+		} catch (IOException e) {
+			throw new SimError("Couldn't compute the fingerprint of warm " +
+					"up checkpoint '" + file + "': " + e, e);
+		}
+
+		long h = 0;
+		byte[] bytes = digest.digest();
+		for (int i = 0; i < 8; i++) {
+			h = (h << 8) | (bytes[i] & 0xff);
+		}
+		return h;
+	}
+
+	/**
+	 * Returns true if the checkpoint file exists
+	 * @return true if the checkpoint file exists
+	 */
+	public boolean exists() {
+		return file.isFile();
+	}
+
+	/**
+	 * Restores the movement state from the checkpoint file. The state is
+	 * left untouched if the checkpoint can't be restored.
+	 * @return True if the state was restored, false if the checkpoint
+	 * doesn't match the scenario or can't be read
+	 */
+	public boolean restore() {
+		int n = hosts.size();
+		MovementModel[] models = new MovementModel[n];
+		Coord[] locations = new Coord[n];
+		Coord[] destinations = new Coord[n];
+		Path[] paths = new Path[n];
+		double[] speeds = new double[n];
+		double[] nextTimes = new double[n];
+		Serializable sharedState;
+
+		try (ObjectInputStream in = new CheckpointInputStream(
+				new BufferedInputStream(new FileInputStream(file), 65536))) {
+			if (!MAGIC.equals(in.readUTF()) ||
+					in.readLong() != fingerprint) {
+				return false;
+			}
+			sharedState = (Serializable)in.readObject();
+			for (int i = 0; i < n; i++) {
+				models[i] = (MovementModel)in.readObject();
+				locations[i] = (Coord)in.readObject();
+				destinations[i] = (Coord)in.readObject();
+				paths[i] = (Path)in.readObject();
+				speeds[i] = in.readDouble();
+				nextTimes[i] = in.readDouble();
+			}
+		} catch (IOException | ClassNotFoundException | ClassCastException e) {
+			return false;
+		}
+
+		MovementModel.setSharedState(sharedState);
+		for (int i = 0; i < n; i++) {
+			hosts.get(i).setMovementState(models[i], locations[i],
+					destinations[i], paths[i], speeds[i], nextTimes[i]);
+		}
+		return true;
+	}
+
+	/**
+	 * Saves the current movement state to the checkpoint file
+	 * @throws SimError if the state can't be saved (e.g., a movement model
+	 * doesn't support checkpointing)
+	 */
+	public void save() {
+		File tmp = new File(file.getPath() + ".tmp");
+		try (ObjectOutputStream out = new CheckpointOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tmp), 65536))) {
+			out.writeUTF(MAGIC);
+			out.writeLong(fingerprint);
+			out.writeObject(MovementModel.getSharedState());
+			for (DTNHost host : hosts) {
+				host.writeMovementState(out);
+			}
+		} catch (IOException e) {
+			tmp.delete();
+			throw new SimError("Couldn't save warm up checkpoint '" + file +
+					"': " + e, e);
+		}
+
+		// replace the old file only with a complete checkpoint
+		if ((file.exists() && !file.delete()) || !tmp.renameTo(file)) {
+			throw new SimError("Couldn't save warm up checkpoint '" + file +
+					"'");
+		}
+	}
+
+	/**
+	 * Stand-in for a host (or its communication bus) in a checkpoint;
+	 * hosts themselves are not part of the checkpoint.
+	 */
+	private static class HostRef implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private final int address;
+		private final boolean comBus;
+
+		private HostRef(int address, boolean comBus) {
+			this.address = address;
+			this.comBus = comBus;
+		}
+	}
+
+	/**
+	 * Writes hosts and their communication buses as references
+	 */
+	private class CheckpointOutputStream extends ObjectOutputStream {
+		private Map<ModuleCommunicationBus, DTNHost> busOwners;
+
+		private CheckpointOutputStream(OutputStream out) throws IOException {
+			super(out);
+			enableReplaceObject(true);
+			this.busOwners = new IdentityHashMap<ModuleCommunicationBus,
+				DTNHost>();
+			for (DTNHost host : hosts) {
+				busOwners.put(host.getComBus(), host);
+			}
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) throws IOException {
+			if (obj instanceof DTNHost) {
+				return new HostRef(((DTNHost)obj).getAddress(), false);
+			}
+			if (obj instanceof ModuleCommunicationBus) {
+				DTNHost owner = busOwners.get(obj);
+				if (owner == null) {
+					throw new IOException("Communication bus without a host");
+				}
+				return new HostRef(owner.getAddress(), true);
+			}
+			return obj;
+		}
+	}
+
+	/**
+	 * Resolves the host references to the hosts of the current scenario
+	 */
+	private class CheckpointInputStream extends ObjectInputStream {
+		private CheckpointInputStream(InputStream in) throws IOException {
+			super(in);
+			enableResolveObject(true);
+		}
+
+		@Override
+		protected Object resolveObject(Object obj)
+				throws ObjectStreamException {
+			if (obj instanceof HostRef) {
+				HostRef ref = (HostRef)obj;
+				DTNHost host = hosts.get(ref.address);
+				return ref.comBus ? host.getComBus() : host;
+			}
+			return obj;
+		}
+	}
+}
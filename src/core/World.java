@@ -4,16 +4,21 @@
  */
 package core;
 
+import input.ContactTraceReader;
 import input.EventQueue;
 import input.ExternalEvent;
 import input.ScheduledUpdatesQueue;
 import interfaces.ConnectivityGrid;
 
+import java.io.File;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
+import movement.MovementModel;
+
 /**
  * World contains all the nodes and is responsible for updating their
  * location and connections.
@@ -37,6 +42,57 @@ public class World {
 	 * Default is @link {@link #DEF_RANDOMIZE_UPDATES}.
 	 */
 	public static final String RANDOMIZE_UPDATES_S = "randomizeUpdateOrder";
+	/**
+	 * Should the time spent in different phases of the updates be measured
+	 * -setting id ({@value}). Boolean (true/false) variable. Default is false.
+	 * @see SimProfiler
+	 */
+	public static final String PROFILE_S = "profile";
+	/**
+	 * Should the updates of idle routers be skipped -setting id ({@value}).
+	 * Boolean (true/false) variable. Default is false. A router is idle
+	 * when an update would not change anything, e.g., when it has no
+	 * connections, transfers or expired messages (see
+	 * {@link routing.MessageRouter#isIdle()}). The network interfaces of
+	 * all hosts are still updated on every update. The results are the same
+	 * as without skipping unless some router class does work in its updates
+	 * that it doesn't take into account when reporting idleness.
+	 */
+	public static final String SKIP_IDLE_ROUTERS_S = "skipIdleRouters";
+	/**
+	 * Should the locations and speeds of the hosts be copied to a compact
+	 * {@link HostStore} -setting id ({@value}). Boolean (true/false)
+	 * variable. Default is false. With the store, the range checks of the
+	 * network interfaces read the locations from a few arrays instead of
+	 * the hosts' Coord objects, which helps with large numbers of hosts.
+	 * The results are the same as without the store.
+	 */
+	public static final String HOST_STORE_S = "hostStore";
+	/**
+	 * Number of threads the hosts are created with -setting id ({@value}).
+	 * Integer. Default is 0: the hosts are created one by one like in the
+	 * old versions. With one or more threads, the hosts of each group are
+	 * created in phases: first the interfaces and routers (in one thread),
+	 * then the movement models and the initial locations (in parallel, if
+	 * {@link RandomStreams} are used and the movement model
+	 * {@link movement.MovementModel#isConcurrentlyReplicable()}), and the
+	 * interfaces are added to the connectivity grids at their initial
+	 * locations in one go. The results don't depend on the number of
+	 * threads, but may differ from the results of the one by one creation
+	 * because of the different order of the interfaces in the grid cells.
+	 */
+	public static final String HOST_CREATION_THREADS_S =
+		"hostCreationThreads";
+	/**
+	 * Movement warm up checkpoint file -setting id ({@value}). If defined,
+	 * the movement state after the warm up is restored from this file when
+	 * the file exists and matches the scenario; otherwise the warm up is
+	 * run and its result saved to the file. The path supports value filling
+	 * (e.g. <code>%%MovementModel.rngSeed%%</code>).
+	 * @see WarmupCheckpoint
+	 */
+	public static final String WARMUP_CHECKPOINT_S =
+		MovementModel.MOVEMENT_MODEL_NS + ".warmupCheckpoint";
 	/** default value for cell size multiplier ({@value}) */
 	public static final int DEF_CON_CELL_SIZE_MULT = 5;
 	/** should the update order of nodes be randomized -setting's default value
@@ -53,11 +109,25 @@ public class World {
 	/** list of nodes; nodes are indexed by their network address */
 	private List<DTNHost> hosts;
 	private boolean simulateConnections;
+	private boolean simulateMovement;
+	/** should the updates of idle routers be skipped */
+	private boolean skipIdleRouters;
+	/** contact trace to replay connections from (or null) */
+	private ContactTraceReader contactTrace;
+	/** number of times all hosts have been updated */
+	private long hostUpdateRound;
+	/** the host whose update is in progress (or null) */
+	private DTNHost updatingHost;
 	/** nodes in the order they should be updated (if the order should be 
 	 * randomized; null value means that the order should not be randomized) */
 	private ArrayList<DTNHost> updateOrder;
+	/** rng for shuffling the update order (null if a new one seeded with
+	 * the simulation time is used for every update) */
+	private Random updateOrderRng;
 	/** is cancellation of simulation requested from UI */
 	private boolean isCancelled;
+	/** has a report requested the simulation to end after this update */
+	private boolean isStopRequested;
 	private List<UpdateListener> updateListeners;
 	/** Queue of scheduled update requests */
 	private ScheduledUpdatesQueue scheduledUpdates;
@@ -71,17 +141,37 @@ public class World {
 	public World(List<DTNHost> hosts, int sizeX, int sizeY, 
 			double updateInterval, List<UpdateListener> updateListeners,
 			boolean simulateConnections, List<EventQueue> eventQueues) {
+		this(hosts, sizeX, sizeY, updateInterval, updateListeners,
+				simulateConnections, true, null, eventQueues);
+	}
+
+	/**
+	 * Constructor.
+	 * @param simulateMovement Should the hosts be moved
+	 * @param contactTrace Contact trace to replay the connections from or
+	 * null if the connections are not replayed. Connections should not be
+	 * simulated when a trace is replayed.
+	 */
+	public World(List<DTNHost> hosts, int sizeX, int sizeY,
+			double updateInterval, List<UpdateListener> updateListeners,
+			boolean simulateConnections, boolean simulateMovement,
+			ContactTraceReader contactTrace, List<EventQueue> eventQueues) {
 		this.hosts = hosts;
 		this.sizeX = sizeX;
 		this.sizeY = sizeY;
 		this.updateInterval = updateInterval;
 		this.updateListeners = updateListeners;
 		this.simulateConnections = simulateConnections;
+		this.simulateMovement = simulateMovement;
+		this.contactTrace = contactTrace;
+		this.hostUpdateRound = 0;
+		this.updatingHost = null;
 		this.eventQueues = eventQueues;
 		
 		this.simClock = SimClock.getInstance();
 		this.scheduledUpdates = new ScheduledUpdatesQueue();
 		this.isCancelled = false;		
+		this.isStopRequested = false;
 
 		setNextEventQueue();
 		initSettings();
@@ -100,11 +190,29 @@ public class World {
 		if(randomizeUpdates) {
 			// creates the update order array that can be shuffled
 			this.updateOrder = new ArrayList<DTNHost>(this.hosts);
+			if (RandomStreams.isEnabled()) {
+				this.updateOrderRng = RandomStreams.newStream(
+						RandomStreams.UPDATE_ORDER, 0);
+			}
 		}
 		else { // null pointer means "don't randomize"
 			this.updateOrder = null;
 		}
 
+		if (s.contains(PROFILE_S) && s.getBoolean(PROFILE_S)) {
+			SimProfiler.setEnabled(true);
+		}
+
+		this.skipIdleRouters = s.contains(SKIP_IDLE_ROUTERS_S) &&
+			s.getBoolean(SKIP_IDLE_ROUTERS_S);
+
+		if (s.contains(HOST_STORE_S) && s.getBoolean(HOST_STORE_S)) {
+			HostStore store = new HostStore(this.hosts);
+			for (DTNHost host : this.hosts) {
+				host.setHostStore(store);
+			}
+		}
+
 		if (s.contains(CELL_SIZE_MULT_S)) {
 			conCellSizeMult = s.getInt(CELL_SIZE_MULT_S);
 		}
@@ -129,6 +237,21 @@ public class World {
 		if (time <= 0) {
 			return;
 		}
+		if (!simulateMovement) {
+			simClock.setTime(0);
+			return;
+		}
+
+		WarmupCheckpoint checkpoint = null;
+		Settings s = new Settings();
+		if (s.contains(WARMUP_CHECKPOINT_S)) {
+			checkpoint = new WarmupCheckpoint(new File(s.valueFillString(
+					s.getSetting(WARMUP_CHECKPOINT_S))), hosts, time);
+			if (checkpoint.exists() && checkpoint.restore()) {
+				simClock.setTime(0);
+				return;
+			}
+		}
 
 		while(SimClock.getTime() < -updateInterval) {
 			moveHosts(updateInterval);
@@ -139,6 +262,10 @@ public class World {
 
 		moveHosts(finalStep);
 		simClock.setTime(0);	
+
+		if (checkpoint != null) {
+			checkpoint.save();
+		}
 	}
 
 	/**
@@ -168,27 +295,39 @@ public class World {
 	 */
 	public void update () {
 		double runUntil = SimClock.getTime() + this.updateInterval;
+		long start;
 
+		SimProfiler.updateStarted();
 		setNextEventQueue();
 
 		/* process all events that are due until next interval update */
 		while (this.nextQueueEventTime <= runUntil) {
 			simClock.setTime(this.nextQueueEventTime);
+			start = SimProfiler.start();
 			ExternalEvent ee = this.nextEventQueue.nextEvent();
 			ee.processEvent(this);
+			SimProfiler.stop(SimProfiler.EVENTS, start);
+			SimProfiler.count(SimProfiler.EVENTS_PROCESSED);
 			updateHosts(); // update all hosts after every event
 			setNextEventQueue();
 		}
 
-		moveHosts(this.updateInterval);
+		if (simulateMovement) {
+			start = SimProfiler.start();
+			moveHosts(this.updateInterval);
+			SimProfiler.stop(SimProfiler.MOVEMENT, start);
+		}
 		simClock.setTime(runUntil);
 
 		updateHosts();
 
 		/* inform all update listeners */
+		start = SimProfiler.start();
 		for (UpdateListener ul : this.updateListeners) {
 			ul.updated(this.hosts);
 		}
+		SimProfiler.stop(SimProfiler.UPDATE_LISTENERS, start);
+		SimProfiler.updateDone();
 	}
 
 	/**
@@ -197,28 +336,67 @@ public class World {
 	 * are made in random order.
 	 */
 	private void updateHosts() {
+		hostUpdateRound++;
 		if (this.updateOrder == null) { // randomizing is off
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
 					break;
 				}
-				hosts.get(i).update(simulateConnections);
+				updateHost(hosts.get(i));
 			}
 		}
 		else { // update order randomizing is on
 			assert this.updateOrder.size() == this.hosts.size() : 
 				"Nrof hosts has changed unexpectedly";
-			Random rng = new Random(SimClock.getIntTime());
-			Collections.shuffle(this.updateOrder, rng); 
+			Random rng = this.updateOrderRng;
+			if (rng == null) {
+				rng = new Random(SimClock.getIntTime());
+			}
+			Collections.shuffle(this.updateOrder, rng);
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
 					break;
 				}
-				this.updateOrder.get(i).update(simulateConnections);
+				updateHost(this.updateOrder.get(i));
 			}			
 		}
 	}
 
+	/**
+	 * Updates a single host. If a contact trace is replayed, the host's
+	 * recorded connection changes are applied first.
+	 * @param host The host to update
+	 */
+	private void updateHost(DTNHost host) {
+		this.updatingHost = host;
+		if (this.contactTrace != null) {
+			long start = SimProfiler.start();
+			contactTrace.replay(host, hostUpdateRound);
+			SimProfiler.stop(SimProfiler.INTERFACES, start);
+		}
+		host.update(simulateConnections, skipIdleRouters);
+		this.updatingHost = null;
+	}
+
+	/**
+	 * Returns the number of times all the hosts have been updated. Each
+	 * simulation step updates the hosts once, plus once after every
+	 * external event.
+	 * @return The number of host update rounds
+	 */
+	public long getHostUpdateRound() {
+		return this.hostUpdateRound;
+	}
+
+	/**
+	 * Returns the host whose update is in progress
+	 * @return The host that is being updated or null if no host update is
+	 * in progress (e.g., an external event is being processed)
+	 */
+	public DTNHost getUpdatingHost() {
+		return this.updatingHost;
+	}
+
 	/**
 	 * Moves all hosts in the world for a given amount of time
 	 * @param timeIncrement The time how long all nodes should move
@@ -237,6 +415,25 @@ public class World {
 		this.isCancelled = true;
 	}
 
+	/**
+	 * Requests the simulation to end after the current update, before the
+	 * end time of the scenario. Unlike {@link #cancelSim()}, the current
+	 * update is completed normally and the run ends as if the end time was
+	 * reached.
+	 */
+	public void requestStop() {
+		this.isStopRequested = true;
+	}
+
+	/**
+	 * Returns true if the simulation should end after the current update
+	 * @return true if the simulation should end after the current update
+	 * @see #requestStop()
+	 */
+	public boolean isStopRequested() {
+		return this.isStopRequested;
+	}
+
 	/**
 	 * Returns the hosts in a list
 	 * @return the hosts in a list
@@ -12,6 +12,7 @@ import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.JOptionPane;
 import javax.swing.JScrollPane;
@@ -22,6 +23,8 @@ import ui.DTNSimUI;
 import core.Coord;
 import core.DTN2Manager;
 import core.DTNHost;
+import core.Settings;
+import core.SettingsError;
 import core.SimClock;
 
 /**
@@ -29,11 +32,32 @@ import core.SimClock;
  *
  */
 public class DTNSimGUI extends DTNSimUI {
+	/** Maximum number of times per second the play field is redrawn
+	 * -setting id ({@value}). Default is {@value #DEF_MAX_FRAME_RATE}. */
+	public static final String MAX_FRAME_RATE_S = "GUI.maxFrameRate";
+	/** Default value for {@link #MAX_FRAME_RATE_S} */
+	public static final int DEF_MAX_FRAME_RATE = 25;
+
 	private MainWindow main;
 	private PlayField field;
 	private GUIControls guiControls;
 	private EventLogPanel eventLogPanel;
 	private InfoPanel infoPanel;
+	/** minimum time (ms) between two view updates */
+	private long minFrameInterval;
+	/** wall clock time (ms) of the latest view update */
+	private long lastFrameTime;
+	/** true if a view update is waiting for the event dispatch thread */
+	private final AtomicBoolean viewUpdatePending = new AtomicBoolean();
+	/** simulation time of the latest snapshot */
+	private volatile double viewTime;
+	/** updates the view in the event dispatch thread */
+	private final Runnable viewUpdater = new Runnable() {
+		public void run() {
+			viewUpdatePending.set(false);
+			updateView();
+		}
+	};
 
 	private void startGUI() {
 		try {
@@ -59,6 +83,17 @@ public class DTNSimGUI extends DTNSimUI {
 	 * Initializes the GUI
 	 */
 	private void initGUI() {
+		Settings s = new Settings();
+		int maxFrameRate = DEF_MAX_FRAME_RATE;
+		if (s.contains(MAX_FRAME_RATE_S)) {
+			maxFrameRate = s.getInt(MAX_FRAME_RATE_S);
+			if (maxFrameRate < 1) {
+				throw new SettingsError("Invalid value for " +
+						MAX_FRAME_RATE_S + ": " + maxFrameRate);
+			}
+		}
+		this.minFrameInterval = 1000 / maxFrameRate;
+		this.viewTime = SimClock.getTime();
 		this.field = new PlayField(world);
 
 		this.field.addMouseListener(new PlayfieldMouseHandler());
@@ -107,7 +142,8 @@ public class DTNSimGUI extends DTNSimUI {
 		// XXX: Would be nice if this wasn't needed..
 		DTN2Manager.setup(world);
 
-		while (simTime < endTime && !simCancelled) {
+		while (simTime < endTime && !simCancelled &&
+				!world.isStopRequested()) {
 			if (guiControls.isPaused()) {
 				wait(10); // release CPU resources when paused
 			} else {
@@ -181,7 +217,13 @@ public class DTNSimGUI extends DTNSimUI {
 	}
 
 	/**
-	 * Updates the GUI
+	 * Updates the GUI. Takes a snapshot of the hosts for the play field
+	 * and schedules a view update in the event dispatch thread. Unless the
+	 * update is forced, the simulation doesn't wait for the view to be
+	 * drawn, and the view isn't updated more often than the maximum frame
+	 * rate allows.
+	 * @param forcedUpdate If true, the view is updated right away and the
+	 * simulation waits for it
 	 */
 	public void update(boolean forcedUpdate) {
 		double guiUpdateInterval = guiControls.getUpdateInterval();
@@ -192,17 +234,25 @@ public class DTNSimGUI extends DTNSimUI {
 			return;
 		}
 
-		try {
-			// run update in EDT, TODO: optimize threading
-			SwingUtilities.invokeAndWait(new Runnable() {
-				public void run() {
-					updateView();
-				}
-			});
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		} catch (InvocationTargetException e) {
-			e.printStackTrace();
+		long now = System.currentTimeMillis();
+		if (!forcedUpdate && now - this.lastFrameTime < minFrameInterval) {
+			return; // the latest frame is still fresh enough
+		}
+		this.lastFrameTime = now;
+		this.lastUpdate = SimClock.getTime();
+		this.viewTime = this.lastUpdate;
+		this.field.takeSnapshot();
+
+		if (forcedUpdate) {
+			try {
+				SwingUtilities.invokeAndWait(viewUpdater);
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			} catch (InvocationTargetException e) {
+				e.printStackTrace();
+			}
+		} else if (!viewUpdatePending.getAndSet(true)) {
+			SwingUtilities.invokeLater(viewUpdater);
 		}
 
 		// wait a while if we don't want to run simulation at full speed
@@ -217,9 +267,7 @@ public class DTNSimGUI extends DTNSimUI {
 	 *
 	 */
 	private void updateView() {
-		double simTime = SimClock.getTime();
-		this.lastUpdate = simTime;
-		guiControls.setSimTime(simTime); // update time to control panel
+		guiControls.setSimTime(viewTime); // update time to control panel
 
 		this.field.updateField();
 	}
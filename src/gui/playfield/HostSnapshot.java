@@ -0,0 +1,234 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package gui.playfield;
+
+import java.util.List;
+
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+
+/**
+ * The state of the hosts that the play field draws, copied at one moment
+ * of the simulation. The snapshot is taken on the simulation thread and
+ * drawn on the event dispatch thread, so the drawing never sees the hosts
+ * in the middle of an update. The hosts are also indexed by their location
+ * in a coarse grid, so the hosts in the visible part of the play field can
+ * be found without going through all of them.
+ */
+public class HostSnapshot {
+	/** How many grid cells there are (at most) along the longer side */
+	private static final int GRID_CELLS = 64;
+
+	private final int nrofHosts;
+	private final double[] x;
+	private final double[] y;
+	private final String[] names;
+	private final boolean[] active;
+	private final int[] nrofMessages;
+	/** transmit ranges of the hosts' interfaces; from rangeStart[i] to
+	 * rangeStart[i+1] for host i */
+	private final double[] ranges;
+	private final int[] rangeStart;
+	/** locations of the hosts' peers; from conStart[i] to conStart[i+1] for
+	 * host i */
+	private final double[] peerX;
+	private final double[] peerY;
+	private final int[] conStart;
+	private double maxRange;
+
+	private final double cellSize;
+	private final int cols;
+	private final int rows;
+	/** host indexes sorted by grid cell */
+	private final int[] cellHosts;
+	/** start of each cell's hosts in cellHosts (and the end as the last) */
+	private final int[] cellStart;
+
+	/**
+	 * Takes a snapshot of the hosts. Must be called when the hosts are not
+	 * being updated (i.e., from the simulation thread).
+	 * @param hosts The hosts
+	 * @param sizeX Width of the world
+	 * @param sizeY Height of the world
+	 */
+	public HostSnapshot(List<DTNHost> hosts, int sizeX, int sizeY) {
+		int n = hosts.size();
+		this.nrofHosts = n;
+		this.x = new double[n];
+		this.y = new double[n];
+		this.names = new String[n];
+		this.active = new boolean[n];
+		this.nrofMessages = new int[n];
+		this.rangeStart = new int[n + 1];
+		this.conStart = new int[n + 1];
+		this.maxRange = 0;
+
+		int nrofRanges = 0;
+		int nrofCons = 0;
+		for (int i = 0; i < n; i++) {
+			DTNHost h = hosts.get(i);
+			nrofRanges += h.getInterfaces().size();
+			nrofCons += h.getConnections().size();
+		}
+		this.ranges = new double[nrofRanges];
+		this.peerX = new double[nrofCons];
+		this.peerY = new double[nrofCons];
+
+		int r = 0;
+		int c = 0;
+		for (int i = 0; i < n; i++) {
+			DTNHost h = hosts.get(i);
+			Coord loc = h.getLocation();
+			x[i] = loc.getX();
+			y[i] = loc.getY();
+			names[i] = h.toString();
+			active[i] = h.isActive();
+			nrofMessages[i] = h.getNrofMessages();
+
+			rangeStart[i] = r;
+			for (NetworkInterface ni : h.getInterfaces()) {
+				ranges[r++] = ni.getTransmitRange();
+				maxRange = Math.max(maxRange, ni.getTransmitRange());
+			}
+			conStart[i] = c;
+			for (Connection con : h.getConnections()) {
+				Coord peer = con.getOtherNode(h).getLocation();
+				peerX[c] = peer.getX();
+				peerY[c] = peer.getY();
+				c++;
+			}
+		}
+		rangeStart[n] = r;
+		conStart[n] = c;
+
+		/* index the hosts by grid cell (counting sort) */
+		this.cellSize = Math.max(1.0,
+				(double)Math.max(sizeX, sizeY) / GRID_CELLS);
+		this.cols = (int)(sizeX / cellSize) + 1;
+		this.rows = (int)(sizeY / cellSize) + 1;
+		this.cellStart = new int[cols * rows + 1];
+		this.cellHosts = new int[n];
+		int[] cellOf = new int[n];
+		for (int i = 0; i < n; i++) {
+			cellOf[i] = cellIndex(col(x[i]), row(y[i]));
+			cellStart[cellOf[i] + 1]++;
+		}
+		for (int i = 0; i < cols * rows; i++) {
+			cellStart[i + 1] += cellStart[i];
+		}
+		int[] fill = new int[cols * rows];
+		for (int i = 0; i < n; i++) {
+			cellHosts[cellStart[cellOf[i]] + fill[cellOf[i]]++] = i;
+		}
+	}
+
+	private int col(double xCoord) {
+		return Math.min(Math.max((int)(xCoord / cellSize), 0), cols - 1);
+	}
+
+	private int row(double yCoord) {
+		return Math.min(Math.max((int)(yCoord / cellSize), 0), rows - 1);
+	}
+
+	private int cellIndex(int col, int row) {
+		return row * cols + col;
+	}
+
+	/**
+	 * Returns the indexes of the hosts whose location is within the given
+	 * area of the world
+	 * @param minX Minimum x coordinate of the area
+	 * @param minY Minimum y coordinate of the area
+	 * @param maxX Maximum x coordinate of the area
+	 * @param maxY Maximum y coordinate of the area
+	 * @param result Array for the indexes; must have room for all hosts
+	 * @return How many indexes were stored in the result
+	 */
+	public int getHostsIn(double minX, double minY, double maxX, double maxY,
+			int[] result) {
+		int count = 0;
+		for (int row = row(minY), lastRow = row(maxY); row <= lastRow; row++) {
+			for (int col = col(minX), lastCol = col(maxX); col <= lastCol;
+					col++) {
+				int cell = cellIndex(col, row);
+				for (int j = cellStart[cell]; j < cellStart[cell + 1]; j++) {
+					int i = cellHosts[j];
+					if (x[i] >= minX && x[i] <= maxX &&
+							y[i] >= minY && y[i] <= maxY) {
+						result[count++] = i;
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of hosts in the snapshot
+	 * @return the number of hosts in the snapshot
+	 */
+	public int getNrofHosts() {
+		return this.nrofHosts;
+	}
+
+	/**
+	 * Returns the largest transmit range of all the hosts' interfaces
+	 * @return the largest transmit range
+	 */
+	public double getMaxRange() {
+		return this.maxRange;
+	}
+
+	/** Returns the x coordinate of a host */
+	public double getX(int host) {
+		return x[host];
+	}
+
+	/** Returns the y coordinate of a host */
+	public double getY(int host) {
+		return y[host];
+	}
+
+	/** Returns the name of a host */
+	public String getName(int host) {
+		return names[host];
+	}
+
+	/** Returns true if a host was active */
+	public boolean isActive(int host) {
+		return active[host];
+	}
+
+	/** Returns the number of messages a host had */
+	public int getNrofMessages(int host) {
+		return nrofMessages[host];
+	}
+
+	/** Returns the number of interfaces of a host */
+	public int getNrofInterfaces(int host) {
+		return rangeStart[host + 1] - rangeStart[host];
+	}
+
+	/** Returns the transmit range of a host's interface */
+	public double getRange(int host, int iface) {
+		return ranges[rangeStart[host] + iface];
+	}
+
+	/** Returns the number of connections of a host */
+	public int getNrofConnections(int host) {
+		return conStart[host + 1] - conStart[host];
+	}
+
+	/** Returns the x coordinate of the other end of a host's connection */
+	public double getPeerX(int host, int con) {
+		return peerX[conStart[host] + con];
+	}
+
+	/** Returns the y coordinate of the other end of a host's connection */
+	public double getPeerY(int host, int con) {
+		return peerY[conStart[host] + con];
+	}
+}
@@ -7,12 +7,9 @@ package gui.playfield;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.geom.Ellipse2D;
-import java.util.ArrayList;
+import java.util.Collections;
 
-import core.Connection;
-import core.Coord;
 import core.DTNHost;
-import core.NetworkInterface;
 
 /**
  * Visualization of a DTN Node
@@ -31,10 +28,27 @@ public class NodeGraphic extends PlayFieldGraphic {
 	private static Color msgColor2 = Color.GREEN;
 	private static Color msgColor3 = Color.RED;
 
-	private DTNHost node;
+	/** snapshot where the node's state is read from */
+	private HostSnapshot snapshot;
+	/** index of the node in the snapshot */
+	private int index;
 
+	/**
+	 * Creates a graphic of the node's current state
+	 * @param node The node
+	 */
 	public NodeGraphic(DTNHost node) {
-		this.node = node;
+		this(new HostSnapshot(Collections.singletonList(node), 0, 0), 0);
+	}
+
+	/**
+	 * Creates a graphic of a node in a snapshot
+	 * @param snapshot The snapshot
+	 * @param index Index of the node in the snapshot
+	 */
+	public NodeGraphic(HostSnapshot snapshot, int index) {
+		this.snapshot = snapshot;
+		this.index = index;
 	}
 
 	@Override
@@ -48,121 +62,42 @@ public class NodeGraphic extends PlayFieldGraphic {
 	 * 
 	 * @param g2 The graphic context to draw to
 	 */
-	// private void drawHost(Graphics2D g2) {
-	// Coord loc = node.getLocation();
-
-	// if (drawCoverage && node.isActive()) {
-	// ArrayList<NetworkInterface> interfaces = new ArrayList<NetworkInterface>();
-	// interfaces.addAll(node.getInterfaces());
-	// for (NetworkInterface ni : interfaces) {
-	// double range = ni.getTransmitRange();
-	// Ellipse2D.Double coverage;
-
-	// coverage = new Ellipse2D.Double(scale(loc.getX()-range),
-	// scale(loc.getY()-range), scale(range * 2), scale(range * 2));
-
-	// // draw the "range" circle
-	// g2.setColor(rangeColor);
-	// g2.draw(coverage);
-	// }
-	// }
-
-	// if (drawConnections) {
-	// g2.setColor(conColor);
-	// Coord c1 = node.getLocation();
-	// // ArrayList<Connection> conList = new ArrayList<Connection>();
-	// // create a copy to prevent concurrent modification exceptions
-	// //conList.addAll(node);
-	// for (Connection c : node.getConnections()) {
-	// Coord c2 = c.getOtherNode(node).getLocation();
-
-	// g2.drawLine(scale(c1.getX()), scale(c1.getY()),
-	// scale(c2.getX()), scale(c2.getY()));
-	// }
-	// }
-
-	// g2.setColor(hostColor); // draw rectangle to host's location
-	// g2.drawRect(scale(loc.getX()-1),scale(loc.getY()-1),scale(2),scale(2));
-
-	// if (drawNodeName) {
-	// g2.setColor(hostNameColor);
-	// // Draw node's address next to it
-	// g2.drawString(node.toString(), scale(loc.getX()),
-	// scale(loc.getY()));
-	// }
-	// }
-
-	/**
-	 * Visualize node's location, radio ranges and connections
-	 * 
-	 * @param g2 The graphic context to draw to
-	 */
-	private void drawHost(Graphics2D g2) { // baris 33
-		Coord loc = node.getLocation(); // baris 34
-
-		if (drawCoverage && node.isActive()) { // baris 36
-			ArrayList<NetworkInterface> interfaces = new ArrayList<NetworkInterface>();
-			interfaces.addAll(node.getInterfaces());
-			for (NetworkInterface ni : interfaces) {
-				double range = ni.getTransmitRange();
+	private void drawHost(Graphics2D g2) {
+		double x = snapshot.getX(index);
+		double y = snapshot.getY(index);
+
+		if (drawCoverage && snapshot.isActive(index)) {
+			g2.setColor(rangeColor);
+			for (int i = 0, n = snapshot.getNrofInterfaces(index); i < n; i++) {
+				double range = snapshot.getRange(index, i);
 				Ellipse2D.Double coverage;
 
-				coverage = new Ellipse2D.Double(scale(loc.getX() - range),
-						scale(loc.getY() - range), scale(range * 2), scale(range * 2));
+				coverage = new Ellipse2D.Double(scale(x - range),
+						scale(y - range), scale(range * 2), scale(range * 2));
 
 				// draw the "range" circle
-				g2.setColor(rangeColor);
 				g2.draw(coverage);
 			}
 		}
 
-		if (drawConnections) { // baris 53
-			g2.setColor(conColor); // baris 54
-			Coord c1 = node.getLocation(); // baris 55
-
-			// --- Start of fix ---
-			// Create a *safe* copy of the connections list before iterating.
-			// This prevents ConcurrentModificationException if the list is modified
-			// by another thread (simulation thread) while we are drawing (GUI thread).
-			// Also, add a null check for each connection object itself.
-			ArrayList<Connection> currentConnections;
-			synchronized (node.getConnections()) { // Synchronize access to the original list for safety
-				currentConnections = new ArrayList<>(node.getConnections());
+		if (drawConnections) {
+			g2.setColor(conColor);
+			for (int i = 0, n = snapshot.getNrofConnections(index); i < n; i++) {
+				g2.drawLine(scale(x), scale(y),
+						scale(snapshot.getPeerX(index, i)),
+						scale(snapshot.getPeerY(index, i)));
 			}
-			// --- End of fix for concurrent modification ---
-
-			// --- Start of fix for NullPointerException ---
-			// Iterate over the safe copy
-			for (Connection c : currentConnections) { // baris 59
-				// Check if the connection object 'c' is not null before using it
-				if (c != null) { // <--- TAMBAHKAN PEMERIKSAAN NULL INI
-
-					// Baris yang menyebabkan error jika c null:
-					Coord c2 = c.getOtherNode(node).getLocation(); // baris 60 - SEKARANG AMAN JIKA c TIDAK NULL
-
-					// Draw the line
-					g2.drawLine(scale(c1.getX()), scale(c1.getY()), // baris 62
-							scale(c2.getX()), scale(c2.getY())); // baris 63
-				} else {
-					// Opsional: Tambahkan log jika Anda ingin tahu kapan koneksi null muncul
-					// System.err.println("Warning: Null connection object found for node " +
-					// node.getAddress() + " in drawHost.");
-				}
-			} // baris 64
-				// --- End of fix for NullPointerException ---
-
-		} // baris 65
+		}
 
-		g2.setColor(hostColor); // draw rectangle to host's location // baris 67
-		g2.drawRect(scale(loc.getX() - 1), scale(loc.getY() - 1), scale(2), scale(2)); // baris 68
+		g2.setColor(hostColor); // draw rectangle to host's location
+		g2.drawRect(scale(x - 1), scale(y - 1), scale(2), scale(2));
 
-		if (drawNodeName) { // baris 70
-			g2.setColor(hostNameColor); // baris 71
-			// Draw node's address next to it // baris 72
-			g2.drawString(node.toString(), scale(loc.getX()), // baris 73
-					scale(loc.getY())); // baris 74
-		} // baris 75
-	} // baris 76
+		if (drawNodeName) {
+			g2.setColor(hostNameColor);
+			// Draw node's address next to it
+			g2.drawString(snapshot.getName(index), scale(x), scale(y));
+		}
+	}
 
 	/**
 	 * Sets whether radio coverage of nodes should be drawn
@@ -197,22 +132,25 @@ public class NodeGraphic extends PlayFieldGraphic {
 	 * @param g2 The graphic context to draw to
 	 */
 	private void drawMessages(Graphics2D g2) {
-		int nrofMessages = node.getNrofMessages();
-		Coord loc = node.getLocation();
+		int nrofMessages = snapshot.getNrofMessages(index);
+		double x = snapshot.getX(index);
+		double y = snapshot.getY(index);
 
-		drawBar(g2, loc, nrofMessages % 10, 1);
-		drawBar(g2, loc, nrofMessages / 10, 2);
+		drawBar(g2, x, y, nrofMessages % 10, 1);
+		drawBar(g2, x, y, nrofMessages / 10, 2);
 	}
 
 	/**
 	 * Draws a bar (stack of squares) next to a location
 	 * 
 	 * @param g2   The graphic context to draw to
-	 * @param loc  The location where to draw
+	 * @param x    X coordinate of the location where to draw
+	 * @param y    Y coordinate of the location where to draw
 	 * @param nrof How many squares in the stack
 	 * @param col  Which column
 	 */
-	private void drawBar(Graphics2D g2, Coord loc, int nrof, int col) {
+	private void drawBar(Graphics2D g2, double x, double y, int nrof,
+			int col) {
 		final int BAR_HEIGHT = 5;
 		final int BAR_WIDTH = 5;
 		final int BAR_DISPLACEMENT = 2;
@@ -229,8 +167,8 @@ public class NodeGraphic extends PlayFieldGraphic {
 				}
 			}
 
-			g2.fillRect(scale(loc.getX() - BAR_DISPLACEMENT - (BAR_WIDTH * col)),
-					scale(loc.getY() - BAR_DISPLACEMENT - i * BAR_HEIGHT),
+			g2.fillRect(scale(x - BAR_DISPLACEMENT - (BAR_WIDTH * col)),
+					scale(y - BAR_DISPLACEMENT - i * BAR_HEIGHT),
 					scale(BAR_WIDTH), scale(BAR_HEIGHT));
 		}
 
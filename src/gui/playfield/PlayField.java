@@ -8,6 +8,7 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
@@ -24,9 +25,16 @@ import core.World;
 
 /**
  * The canvas where node graphics and message visualizations are drawn.
- *
+ * The nodes are drawn from a snapshot of their state that the simulation
+ * thread takes ({@link #takeSnapshot()}), and only the nodes near the
+ * visible part of the field are drawn. The static background (underlay
+ * image and map) is drawn once into an off-screen buffer that is reused
+ * until the view is scrolled or zoomed.
  */
 public class PlayField extends JPanel {
+	/** How far (pixels) node names are assumed to extend from the nodes */
+	private static final int NAME_MARGIN = 100;
+
 	private World w;
 	private Color bgColor = Color.WHITE;
 	
@@ -41,6 +49,16 @@ public class PlayField extends JPanel {
 	private AffineTransform curTransform;
 	private double underlayImgDx;
 	private double underlayImgDy;
+
+	/** the latest snapshot of the hosts */
+	private volatile HostSnapshot snapshot;
+	/** buffer for the visible part of the background */
+	private BufferedImage bgBuffer;
+	/** the area of the field the background buffer covers (null if the
+	 * buffer must be redrawn) */
+	private Rectangle bgBufferArea;
+	/** indexes of the hosts to draw (reused between paints) */
+	private int[] visibleHosts;
 	
 	/**
 	 * Creates a playfield
@@ -57,6 +75,8 @@ public class PlayField extends JPanel {
         this.underlayImage = null;
         this.imageTransform = null;
         this.autoClearOverlay = true;
+        this.visibleHosts = new int[0];
+        takeSnapshot();
 	}
 	
 	/**
@@ -65,6 +85,16 @@ public class PlayField extends JPanel {
 	public void updateField() {
 		this.repaint();
 	}
+
+	/**
+	 * Takes a new snapshot of the hosts to draw. Must be called when the
+	 * world is not being updated (e.g., from the simulation thread between
+	 * updates).
+	 */
+	public void takeSnapshot() {
+		this.snapshot = new HostSnapshot(w.getHosts(), w.getSizeX(),
+				w.getSizeY());
+	}
 	
 	/**
 	 * Sets an image to show under the host graphics
@@ -76,6 +106,7 @@ public class PlayField extends JPanel {
 	 */
 	public void setUnderlayImage(BufferedImage image, 
 			double dx, double dy, double scale, double rotation) {
+		this.bgBufferArea = null;
 		if (image == null) { 
 			this.underlayImage = null;
 			this.imageTransform = null;
@@ -102,6 +133,7 @@ public class PlayField extends JPanel {
 	public void setScale(double scale) {
 		PlayFieldGraphic.setScale(scale);
 		this.updateFieldSize();
+		this.bgBufferArea = null;
 		if (this.imageTransform != null) {
 			this.curTransform = new AffineTransform(imageTransform);
 			curTransform.scale(scale, scale);
@@ -116,6 +148,7 @@ public class PlayField extends JPanel {
 	public void setMap(SimMap simMap) {
 		this.mapGraphic = new MapGraphic(simMap);
 		this.showMapGraphic = true;
+		this.bgBufferArea = null;
 	}
 	
 	/**
@@ -124,6 +157,7 @@ public class PlayField extends JPanel {
 	 */
 	public void setShowMapGraphic(boolean show) {
 		this.showMapGraphic = show;
+		this.bgBufferArea = null;
 	}
 	
 	/**
@@ -143,23 +177,23 @@ public class PlayField extends JPanel {
 	 */
 	public void paint(Graphics g) {
 		Graphics2D g2 = (Graphics2D)g;
-		g2.setBackground(bgColor);
-		
-		// clear old playfield graphics
-		g2.clearRect(0, 0, this.getWidth(), this.getHeight());
-		if (underlayImage != null) {
-			g2.drawImage(underlayImage,curTransform, null);
+		Rectangle clip = g2.getClipBounds();
+		if (clip == null) {
+			clip = new Rectangle(0, 0, this.getWidth(), this.getHeight());
 		}
 
-		// draw map (is exists and drawing requested)
-		if (mapGraphic != null && showMapGraphic) {
-			mapGraphic.draw(g2);
-		}
-		
-		// draw hosts
-		for (DTNHost h : w.getHosts()) {
-			new NodeGraphic(h).draw(g2); // TODO: Optimization..?
+		Rectangle view = this.getVisibleRect();
+		if (view.contains(clip) && !view.isEmpty()) {
+			// on screen: use the buffered background
+			if (bgBufferArea == null || !bgBufferArea.equals(view)) {
+				updateBackgroundBuffer(view);
+			}
+			g2.drawImage(bgBuffer, view.x, view.y, null);
+		} else {
+			drawBackground(g2, clip);
 		}
+
+		drawHosts(g2, clip);
 		
 		// draw overlay graphics
 		for (int i=0, n=overlayGraphics.size(); i<n; i++) {
@@ -171,6 +205,66 @@ public class PlayField extends JPanel {
 	}
 
 	
+	/**
+	 * Draws the background (underlay image and map) of the given area
+	 * @param g2 The graphics context to draw to
+	 * @param area The area to draw
+	 */
+	private void drawBackground(Graphics2D g2, Rectangle area) {
+		g2.setBackground(bgColor);
+		g2.clearRect(area.x, area.y, area.width, area.height);
+		if (underlayImage != null) {
+			g2.drawImage(underlayImage,curTransform, null);
+		}
+
+		// draw map (is exists and drawing requested)
+		if (mapGraphic != null && showMapGraphic) {
+			mapGraphic.draw(g2);
+		}
+	}
+
+	/**
+	 * Redraws the background buffer for the given area of the field
+	 * @param area The area
+	 */
+	private void updateBackgroundBuffer(Rectangle area) {
+		if (bgBuffer == null || bgBuffer.getWidth() < area.width ||
+				bgBuffer.getHeight() < area.height) {
+			bgBuffer = new BufferedImage(area.width, area.height,
+					BufferedImage.TYPE_INT_RGB);
+		}
+		Graphics2D bg = bgBuffer.createGraphics();
+		bg.translate(-area.x, -area.y);
+		bg.setClip(area.x, area.y, area.width, area.height);
+		drawBackground(bg, area);
+		bg.dispose();
+		bgBufferArea = new Rectangle(area);
+	}
+
+	/**
+	 * Draws the hosts of the latest snapshot that are near the given area
+	 * @param g2 The graphics context to draw to
+	 * @param area The area to draw
+	 */
+	private void drawHosts(Graphics2D g2, Rectangle area) {
+		HostSnapshot s = this.snapshot;
+		double margin = s.getMaxRange() +
+			PlayFieldGraphic.invScale(NAME_MARGIN);
+		if (visibleHosts.length < s.getNrofHosts()) {
+			visibleHosts = new int[s.getNrofHosts()];
+		}
+
+		int n = s.getHostsIn(
+				PlayFieldGraphic.invScale(area.x) - margin,
+				PlayFieldGraphic.invScale(area.y) - margin,
+				PlayFieldGraphic.invScale(area.x + area.width) + margin,
+				PlayFieldGraphic.invScale(area.y + area.height) + margin,
+				visibleHosts);
+		for (int i = 0; i < n; i++) {
+			new NodeGraphic(s, visibleHosts[i]).draw(g2);
+		}
+	}
+
 	/**
 	 * Removes all overlay graphics stored to be drawn
 	 */
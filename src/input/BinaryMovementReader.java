@@ -0,0 +1,499 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.Coord;
+import core.SimError;
+import core.Tuple;
+
+/**
+ * Reader for binary external movement traces. The binary format stores the
+ * same data as the text format of {@link ExternalMovementReader} (and can
+ * be created from it with {@link #convert(String, String)}), but it can be
+ * read without parsing text. A background thread decodes the trace ahead
+ * of the simulation into a ring of reusable time instance blocks, so the
+ * simulation only copies ready values from arrays.
+ * <P>Usage of the converter: <code>java input.BinaryMovementReader
+ * textFile binaryFile</code></P>
+ * <P>The file format (all values big-endian, as written by
+ * {@link DataOutputStream}):</P>
+ * <PRE>
+ * int    magic ({@link #MAGIC})
+ * int    version ({@link #VERSION})
+ * double minTime, maxTime, minX, maxX, minY, maxY (offset header)
+ * blocks, one for each time instance:
+ *   int    number of locations in the block
+ *   double time
+ *   the locations:
+ *     int    index of the node id; if the index is the number of ids
+ *            seen so far, the id (UTF string) follows
+ *     double x
+ *     double y
+ * int    -1 (end of the trace)
+ * </PRE>
+ * The times and coordinates are stored as they are in the text file; they
+ * are normalized (offset header's minimum values are subtracted) when they
+ * are read.
+ */
+public class BinaryMovementReader {
+	/** Magic number at the start of binary movement traces */
+	public static final int MAGIC = 0x4F4E454D;
+	/** Version of the binary movement trace format */
+	public static final int VERSION = 1;
+	/** Extension of binary movement traces */
+	public static final String BINARY_EXT = ".binem";
+
+	private final File file;
+	private double minTime;
+	private double maxTime;
+	private double minX;
+	private double maxX;
+	private double minY;
+	private double maxY;
+
+	/** ids of the nodes, in the order of their indexes */
+	private List<String> ids;
+
+	/** the ring of decoded blocks */
+	private final Block[] ring;
+	/** index of the next block to read from the ring */
+	private int readPos;
+	/** number of decoded blocks in the ring that haven't been read */
+	private int available;
+	/** has the decoder reached the end of the trace */
+	private boolean endOfTrace;
+	/** error that stopped the decoder (if any) */
+	private SimError decodeError;
+	private boolean closed;
+	private Thread decoder;
+
+	/** the block that is currently read */
+	private Block current;
+
+	/**
+	 * Opens a binary movement trace and starts decoding it on a background
+	 * thread.
+	 * @param file The trace file
+	 * @param readAhead How many time instances can be decoded ahead of the
+	 * reading
+	 * @throws SimError if the file can't be read or is not a binary movement
+	 * trace
+	 */
+	public BinaryMovementReader(File file, int readAhead) {
+		this.file = file;
+		this.ids = new ArrayList<String>();
+		this.ring = new Block[Math.max(readAhead, 1) + 2];
+		for (int i = 0; i < ring.length; i++) {
+			ring[i] = new Block();
+		}
+
+		final DataInputStream in;
+		try {
+			in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(file), 65536));
+			if (in.readInt() != MAGIC) {
+				in.close();
+				throw new SimError("'" + file + "' is not a binary movement " +
+						"trace");
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				in.close();
+				throw new SimError("Unsupported binary movement trace " +
+						"version " + version + " in '" + file + "'");
+			}
+			minTime = in.readDouble();
+			maxTime = in.readDouble();
+			minX = in.readDouble();
+			maxX = in.readDouble();
+			minY = in.readDouble();
+			maxY = in.readDouble();
+		} catch (IOException e) {
+			throw new SimError("Couldn't read binary movement trace '" +
+					file + "'", e);
+		}
+
+		this.decoder = new Thread("BinaryMovementReader " + file.getName()) {
+			public void run() {
+				decode(in);
+			}
+		};
+		decoder.setDaemon(true);
+		decoder.start();
+	}
+
+	/**
+	 * Checks if the given file is a binary movement trace (starts with
+	 * {@link #MAGIC})
+	 * @param file The file to check
+	 * @return True if the file is a binary movement trace, false if not
+	 */
+	public static boolean isBinaryMovementFile(File file) {
+		try {
+			DataInputStream in = new DataInputStream(new FileInputStream(file));
+			try {
+				return in.readInt() == MAGIC;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Decodes the blocks of the trace to the ring until the end of the trace
+	 * or until the reader is closed. Run by the decoder thread.
+	 * @param in The input stream, positioned after the header
+	 */
+	private void decode(DataInputStream in) {
+		int writePos = 0;
+		List<String> newIds = new ArrayList<String>();
+		int nrofIds = 0;
+		try {
+			while (true) {
+				synchronized (this) {
+					while (available == ring.length - 1 && !closed) {
+						wait();
+					}
+					if (closed) {
+						break;
+					}
+				}
+
+				/* the block at writePos is not readable, so it's ours */
+				Block b = ring[writePos];
+				int count = in.readInt();
+				if (count < 0) {
+					synchronized (this) {
+						endOfTrace = true;
+						notifyAll();
+					}
+					break;
+				}
+				b.time = in.readDouble() - minTime;
+				b.ensureCapacity(count);
+				newIds.clear();
+				for (int i = 0; i < count; i++) {
+					int index = in.readInt();
+					if (index == nrofIds) {
+						newIds.add(in.readUTF());
+						nrofIds++;
+					} else if (index < 0 || index > nrofIds) {
+						throw new SimError("Invalid node id index " + index +
+								" in binary movement trace '" + file + "'");
+					}
+					b.indexes[i] = index;
+					b.x[i] = in.readDouble() - minX;
+					b.y[i] = in.readDouble() - minY;
+				}
+				b.count = count;
+
+				synchronized (this) {
+					b.newIds.clear();
+					b.newIds.addAll(newIds);
+					writePos = (writePos + 1) % ring.length;
+					available++;
+					notifyAll();
+				}
+			}
+		} catch (InterruptedException e) {
+			/* closed while waiting */
+		} catch (EOFException e) {
+			stop(new SimError("Binary movement trace '" + file +
+					"' is truncated", e));
+		} catch (IOException e) {
+			stop(new SimError("Couldn't read binary movement trace '" +
+					file + "'", e));
+		} catch (SimError e) {
+			stop(e);
+		} catch (RuntimeException e) {
+			stop(new SimError(e));
+		} finally {
+			try {
+				in.close();
+			} catch (IOException e) {
+				/* nothing to do; the data is already read */
+			}
+		}
+	}
+
+	/**
+	 * Stops the decoding because of an error. The error is thrown to the
+	 * reader when it runs out of decoded blocks.
+	 * @param error The error
+	 */
+	private synchronized void stop(SimError error) {
+		decodeError = error;
+		notifyAll();
+	}
+
+	/**
+	 * Moves to the next time instance of the trace. Its locations can then
+	 * be read with {@link #getTime()}, {@link #getCount()},
+	 * {@link #getIndex(int)}, {@link #getX(int)} and {@link #getY(int)}.
+	 * @return True if there was a next time instance, false if the trace
+	 * has ended
+	 * @throws SimError if the trace couldn't be decoded
+	 */
+	public boolean next() {
+		synchronized (this) {
+			if (current != null) {
+				/* give the previous block back to the decoder */
+				current = null;
+				readPos = (readPos + 1) % ring.length;
+				available--;
+				notifyAll();
+			}
+
+			while (available == 0) {
+				if (decodeError != null) {
+					throw decodeError;
+				}
+				if (endOfTrace || closed) {
+					return false;
+				}
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					throw new SimError("Interrupted while reading binary " +
+							"movement trace '" + file + "'", e);
+				}
+			}
+			current = ring[readPos];
+			ids.addAll(current.newIds);
+		}
+		return true;
+	}
+
+	/**
+	 * Stops the decoder thread. The reader can't be used after this.
+	 */
+	public void close() {
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Returns the (normalized) time of the current time instance
+	 * @return The time
+	 */
+	public double getTime() {
+		return current.time;
+	}
+
+	/**
+	 * Returns the number of locations in the current time instance
+	 * @return The number of locations
+	 */
+	public int getCount() {
+		return current.count;
+	}
+
+	/**
+	 * Returns the index of the node id of a location of the current time
+	 * instance. The indexes are given to the ids in the order they first
+	 * appear in the trace.
+	 * @param i Index of the location in the time instance
+	 * @return The index of the node id
+	 * @see #getId(int)
+	 */
+	public int getIndex(int i) {
+		return current.indexes[i];
+	}
+
+	/**
+	 * Returns the (normalized) x coordinate of a location of the current
+	 * time instance
+	 * @param i Index of the location in the time instance
+	 * @return The x coordinate
+	 */
+	public double getX(int i) {
+		return current.x[i];
+	}
+
+	/**
+	 * Returns the (normalized) y coordinate of a location of the current
+	 * time instance
+	 * @param i Index of the location in the time instance
+	 * @return The y coordinate
+	 */
+	public double getY(int i) {
+		return current.y[i];
+	}
+
+	/**
+	 * Returns the node id that has the given index
+	 * @param index Index of the id
+	 * @return The node id
+	 */
+	public String getId(int index) {
+		return ids.get(index);
+	}
+
+	/**
+	 * Returns offset maxTime
+	 * @return the maxTime
+	 */
+	public double getMaxTime() {
+		return maxTime;
+	}
+
+	/**
+	 * Returns offset maxX
+	 * @return the maxX
+	 */
+	public double getMaxX() {
+		return maxX;
+	}
+
+	/**
+	 * Returns offset maxY
+	 * @return the maxY
+	 */
+	public double getMaxY() {
+		return maxY;
+	}
+
+	/**
+	 * Returns offset minTime
+	 * @return the minTime
+	 */
+	public double getMinTime() {
+		return minTime;
+	}
+
+	/**
+	 * Returns offset minX
+	 * @return the minX
+	 */
+	public double getMinX() {
+		return minX;
+	}
+
+	/**
+	 * Returns offset minY
+	 * @return the minY
+	 */
+	public double getMinY() {
+		return minY;
+	}
+
+	/**
+	 * Converts a text movement trace (see {@link ExternalMovementReader})
+	 * to a binary movement trace. The text trace is read with
+	 * ExternalMovementReader, so the binary trace gives exactly the same
+	 * time instances and locations.
+	 * @param textFile Path of the text trace
+	 * @param binaryFile Path of the binary trace to create
+	 * @return The number of time instances in the trace
+	 * @throws SimError if the binary trace can't be written
+	 */
+	public static long convert(String textFile, String binaryFile) {
+		ExternalMovementReader reader = new ExternalMovementReader(textFile);
+		reader.setNormalize(false);
+		Map<String, Integer> indexes = new HashMap<String, Integer>();
+		long nrofInstances = 0;
+
+		try {
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(
+							new FileOutputStream(binaryFile), 65536));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeDouble(reader.getMinTime());
+			out.writeDouble(reader.getMaxTime());
+			out.writeDouble(reader.getMinX());
+			out.writeDouble(reader.getMaxX());
+			out.writeDouble(reader.getMinY());
+			out.writeDouble(reader.getMaxY());
+
+			List<Tuple<String, Coord>> moves = reader.readNextMovements();
+			while (moves.size() > 0) {
+				out.writeInt(moves.size());
+				out.writeDouble(reader.getLastTimeStamp());
+				for (Tuple<String, Coord> t : moves) {
+					Integer index = indexes.get(t.getKey());
+					if (index == null) {
+						out.writeInt(indexes.size());
+						out.writeUTF(t.getKey());
+						indexes.put(t.getKey(), indexes.size());
+					} else {
+						out.writeInt(index);
+					}
+					out.writeDouble(t.getValue().getX());
+					out.writeDouble(t.getValue().getY());
+				}
+				nrofInstances++;
+				moves = reader.readNextMovements();
+			}
+			out.writeInt(-1);
+			out.close();
+		} catch (IOException e) {
+			throw new SimError("Couldn't write binary movement trace '" +
+					binaryFile + "'", e);
+		}
+		return nrofInstances;
+	}
+
+	/**
+	 * Converts a text movement trace to a binary movement trace
+	 * @param args Path of the text trace and path of the binary trace
+	 */
+	public static void main(String[] args) {
+		if (args.length != 2) {
+			System.err.println("Usage: java input.BinaryMovementReader " +
+					"textFile binaryFile");
+			System.exit(1);
+		}
+		long start = System.currentTimeMillis();
+		long instances = convert(args[0], args[1]);
+		System.out.println("Wrote " + instances + " time instances to '" +
+				args[1] + "' in " +
+				(System.currentTimeMillis() - start) / 1000.0 + "s");
+	}
+
+	/**
+	 * Decoded locations of one time instance. The arrays are reused when the
+	 * block is filled again.
+	 */
+	private static class Block {
+		private double time;
+		private int count;
+		private int[] indexes = new int[16];
+		private double[] x = new double[16];
+		private double[] y = new double[16];
+		/** ids that first appear in this block */
+		private List<String> newIds = new ArrayList<String>();
+
+		/**
+		 * Makes sure the arrays have room for the given number of locations
+		 * @param size The number of locations
+		 */
+		private void ensureCapacity(int size) {
+			if (indexes.length < size) {
+				int newSize = Math.max(size, indexes.length * 2);
+				indexes = new int[newSize];
+				x = new double[newSize];
+				y = new double[newSize];
+			}
+		}
+	}
+}
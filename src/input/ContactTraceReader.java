@@ -0,0 +1,179 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+
+import core.Connection;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.SimError;
+
+/**
+ * Replays a contact trace written by {@link ContactTraceWriter} (e.g. using
+ * {@link report.ContactTraceReport}). The world calls
+ * {@link #replay(DTNHost, long)} right before each host update, in place of
+ * updating the host's network interfaces, so every connection goes up and
+ * down at the same point of the update loop as in the recorded run. The
+ * routers see exactly the same sequence of connection changes as long as
+ * the scenario's hosts, update interval and external events are the same
+ * as in the recorded run; the routers may differ.
+ */
+public class ContactTraceReader {
+	private DataInputStream in;
+	private File traceFile;
+	/** interfaces of the hosts; [host address][interface type index] */
+	private NetworkInterface[][] interfaces;
+	private String[] types;
+
+	private int changesLeftInRound;
+	private long nextRound;
+	private int nextFrom;
+	private int nextTo;
+	private int nextFlags;
+
+	/**
+	 * Opens a contact trace for replaying
+	 * @param traceFile The contact trace file
+	 * @param hosts All the hosts of the scenario
+	 */
+	public ContactTraceReader(File traceFile, List<DTNHost> hosts) {
+		this.traceFile = traceFile;
+		try {
+			this.in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(traceFile), 65536));
+			if (in.readInt() != ContactTraceWriter.MAGIC) {
+				throw new SimError("'" + traceFile + "' is not a contact trace");
+			}
+			int version = in.readInt();
+			if (version != ContactTraceWriter.VERSION) {
+				throw new SimError("Unsupported contact trace version " +
+						version + " in '" + traceFile + "'");
+			}
+			int nrofHosts = in.readInt();
+			if (nrofHosts != hosts.size()) {
+				throw new SimError("Contact trace '" + traceFile + "' has " +
+						nrofHosts + " hosts but the scenario has " +
+						hosts.size());
+			}
+			this.types = new String[in.readInt()];
+			for (int i = 0; i < types.length; i++) {
+				types[i] = in.readUTF();
+			}
+		} catch (IOException e) {
+			throw new SimError("Couldn't read contact trace '" + traceFile +
+					"'", e);
+		}
+
+		this.interfaces = new NetworkInterface[hosts.size()][types.length];
+		for (DTNHost h : hosts) {
+			for (NetworkInterface ni : h.getInterfaces()) {
+				for (int i = 0; i < types.length; i++) {
+					if (types[i].equals(ni.getInterfaceType()) &&
+							interfaces[h.getAddress()][i] == null) {
+						interfaces[h.getAddress()][i] = ni;
+					}
+				}
+			}
+		}
+
+		this.changesLeftInRound = 0;
+		readNext();
+	}
+
+	/**
+	 * Applies the recorded connection changes that the given host's update
+	 * made in the given update round
+	 * @param host The host that is about to be updated
+	 * @param round The current host update round
+	 * @throws SimError if the trace doesn't match the simulation
+	 */
+	public void replay(DTNHost host, long round) {
+		if (nextRound < round) {
+			throw new SimError("Contact trace '" + traceFile + "' doesn't " +
+					"match the scenario: change of update round " + nextRound +
+					" was not replayed");
+		}
+
+		int address = host.getAddress();
+		while (nextRound == round && nextFrom == address) {
+			apply();
+			readNext();
+		}
+	}
+
+	/**
+	 * Applies the next change of the trace
+	 */
+	private void apply() {
+		int type = nextFlags >> 1;
+		NetworkInterface from = interfaces[nextFrom][type];
+		NetworkInterface to = interfaces[nextTo][type];
+		if (from == null || to == null) {
+			throw new SimError("Contact trace '" + traceFile + "' has a " +
+					"connection of type " + types[type] + " between hosts " +
+					nextFrom + " and " + nextTo + " that don't have one");
+		}
+
+		if ((nextFlags & 1) != 0) {
+			from.createConnection(to);
+			return;
+		}
+
+		Connection con = from.getConnectionTo(to);
+		if (con != null) {
+			con.disconnect(from);
+			return;
+		}
+		throw new SimError("Contact trace '" + traceFile + "' doesn't " +
+				"match the scenario: no connection between hosts " +
+				nextFrom + " and " + nextTo + " to tear down");
+	}
+
+	/**
+	 * Reads the next change from the trace
+	 */
+	private void readNext() {
+		try {
+			if (changesLeftInRound == 0) {
+				long round = in.readLong();
+				if (round < 0) {
+					nextRound = Long.MAX_VALUE;
+					in.close();
+					return;
+				}
+				in.readDouble(); // simulation time (informative only)
+				changesLeftInRound = in.readInt();
+				nextRound = round;
+			}
+			nextFrom = in.readInt();
+			nextTo = in.readInt();
+			nextFlags = in.readUnsignedByte();
+			changesLeftInRound--;
+		} catch (EOFException e) {
+			throw new SimError("Contact trace '" + traceFile + "' is " +
+					"truncated", e);
+		} catch (IOException e) {
+			throw new SimError("Couldn't read contact trace '" + traceFile +
+					"'", e);
+		}
+	}
+
+	/**
+	 * Closes the trace file
+	 */
+	public void close() {
+		try {
+			in.close();
+		} catch (IOException e) {
+			// nothing to do about it
+		}
+	}
+}
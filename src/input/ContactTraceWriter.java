@@ -0,0 +1,174 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.DTNHost;
+import core.NetworkInterface;
+import core.SimError;
+
+/**
+ * Writes binary contact traces that can be replayed with
+ * {@link ContactTraceReader}. A contact trace stores the connection up and
+ * down changes of a simulation run in the order they happened, together
+ * with the host update round (see {@link core.World#getHostUpdateRound()})
+ * and the host whose update caused the change.
+ * <P>The file format (all values big-endian, as written by
+ * {@link DataOutputStream}):</P>
+ * <PRE>
+ * int    magic ({@link #MAGIC})
+ * int    version ({@link #VERSION})
+ * int    number of hosts
+ * int    number of interface types, followed by the types (UTF strings)
+ * blocks of changes, one for each update round that had changes:
+ *   long   update round
+ *   double simulation time
+ *   int    number of changes, followed by the changes:
+ *     int  address of the host whose update made the change
+ *     int  address of the other host
+ *     byte interface type index &lt;&lt; 1 | 1 for up, 0 for down
+ * long   -1 (end of the trace)
+ * </PRE>
+ */
+public class ContactTraceWriter {
+	/** Magic number at the start of contact trace files */
+	public static final int MAGIC = 0x4F4E4354;
+	/** Version of the contact trace file format */
+	public static final int VERSION = 1;
+	/** Extension of contact trace files */
+	public static final String TRACE_EXT = ".bct";
+	/** Maximum number of different interface types in a trace */
+	public static final int MAX_INTERFACE_TYPES = 127;
+
+	private DataOutputStream out;
+	private Map<String, Integer> typeIndexes;
+
+	private ByteArrayOutputStream roundBytes;
+	private DataOutputStream roundOut;
+	private long round;
+	private double roundTime;
+	private int roundChanges;
+	private long nrofChanges;
+
+	/**
+	 * Creates a new contact trace file and writes its header.
+	 * @param fileName Path of the file to create
+	 * @param hosts All the hosts of the scenario
+	 */
+	public ContactTraceWriter(String fileName, List<DTNHost> hosts) {
+		this.typeIndexes = new HashMap<String, Integer>();
+		List<String> types = new ArrayList<String>();
+		for (DTNHost h : hosts) {
+			for (NetworkInterface ni : h.getInterfaces()) {
+				String type = ni.getInterfaceType();
+				if (!typeIndexes.containsKey(type)) {
+					typeIndexes.put(type, types.size());
+					types.add(type);
+				}
+			}
+		}
+		if (types.size() > MAX_INTERFACE_TYPES) {
+			throw new SimError("Too many interface types (" + types.size() +
+					") for a contact trace");
+		}
+
+		try {
+			this.out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(fileName), 65536));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(hosts.size());
+			out.writeInt(types.size());
+			for (String type : types) {
+				out.writeUTF(type);
+			}
+		} catch (IOException e) {
+			throw new SimError("Couldn't create contact trace file '" +
+					fileName + "'", e);
+		}
+
+		this.roundBytes = new ByteArrayOutputStream();
+		this.roundOut = new DataOutputStream(roundBytes);
+		this.round = -1;
+		this.roundChanges = 0;
+		this.nrofChanges = 0;
+	}
+
+	/**
+	 * Records a connection change
+	 * @param round The host update round when the change happened
+	 * @param time The simulation time of the change
+	 * @param from The interface of the host whose update made the change
+	 * @param to The interface at the other end of the connection
+	 * @param up True if the connection went up, false if it went down
+	 */
+	public void record(long round, double time, NetworkInterface from,
+			NetworkInterface to, boolean up) {
+		if (round != this.round) {
+			flushRound();
+			this.round = round;
+			this.roundTime = time;
+		}
+
+		int type = typeIndexes.get(from.getInterfaceType());
+		try {
+			roundOut.writeInt(from.getHost().getAddress());
+			roundOut.writeInt(to.getHost().getAddress());
+			roundOut.writeByte(type << 1 | (up ? 1 : 0));
+		} catch (IOException e) {
+			throw new SimError(e); // can't happen with a byte array
+		}
+		roundChanges++;
+		nrofChanges++;
+	}
+
+	/**
+	 * Writes the changes of the current round to the file
+	 */
+	private void flushRound() {
+		if (roundChanges == 0) {
+			return;
+		}
+		try {
+			out.writeLong(round);
+			out.writeDouble(roundTime);
+			out.writeInt(roundChanges);
+			roundBytes.writeTo(out);
+		} catch (IOException e) {
+			throw new SimError("Couldn't write contact trace", e);
+		}
+		roundBytes.reset();
+		roundChanges = 0;
+	}
+
+	/**
+	 * Returns the number of changes recorded so far
+	 * @return the number of changes recorded so far
+	 */
+	public long getNrofChanges() {
+		return this.nrofChanges;
+	}
+
+	/**
+	 * Writes the rest of the changes and closes the file
+	 */
+	public void close() {
+		flushRound();
+		try {
+			out.writeLong(-1);
+			out.close();
+		} catch (IOException e) {
+			throw new SimError("Couldn't write contact trace", e);
+		}
+	}
+}
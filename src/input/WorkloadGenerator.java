@@ -0,0 +1,436 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import core.Settings;
+import core.SettingsError;
+import core.SimError;
+import core.SimScenario;
+
+/**
+ * Message creation -external events generator for large, skewed workloads.
+ * Messages are created as a Poisson process whose rate can follow a
+ * diurnal (cosine) curve. The sources and destinations are drawn from
+ * Zipf distributions over the host ranges, and every source can alternate
+ * between on and off periods (with exponentially distributed lengths);
+ * sources don't create messages while they are off.
+ * <P>The events are generated in batches into primitive arrays and a
+ * {@link MessageCreateEvent} object is created only when the event is
+ * taken from the queue. The whole workload can also be stored to a binary
+ * external events file (see {@link #STORE_FILE_S}) that can be replayed in
+ * later runs with {@link ExternalEventsQueue}.</P>
+ * <P>The size, host range, destination host range, message ID prefix and
+ * time range settings are the same as with {@link MessageEventGenerator}
+ * (the time range is the simulation time by default).</P>
+ */
+public class WorkloadGenerator implements EventQueue {
+	/** Mean message creation rate -setting id ({@value}). Messages per
+	 * second, over a whole diurnal period. */
+	public static final String RATE_S = "rate";
+	/** Exponent of the Zipf distribution of the source hosts -setting id
+	 * ({@value}). Default is 0 (uniform). The hosts are ranked in an order
+	 * that is shuffled with the generator's random number generator. */
+	public static final String ZIPF_S = "zipf";
+	/** Exponent of the Zipf distribution of the destination hosts -setting
+	 * id ({@value}). Default is the value of {@link #ZIPF_S}. */
+	public static final String TO_ZIPF_S = "toZipf";
+	/** Amplitude of the diurnal rate curve -setting id ({@value}). Between
+	 * 0 (constant rate, the default) and 1 (no messages at the lowest
+	 * point). */
+	public static final String DIURNAL_S = "diurnal";
+	/** Period of the diurnal rate curve -setting id ({@value}). Seconds.
+	 * Default is 86400 (one day). */
+	public static final String DIURNAL_PERIOD_S = "diurnalPeriod";
+	/** Time of the peak of the diurnal rate curve within the period
+	 * -setting id ({@value}). Seconds. Default is half of the period. */
+	public static final String DIURNAL_PEAK_S = "diurnalPeak";
+	/** Mean lengths of the sources' on and off periods -setting id
+	 * ({@value}). Two values (seconds). If not defined, the sources are
+	 * always on. */
+	public static final String ON_OFF_S = "onOff";
+	/** Number of events generated per batch -setting id ({@value}).
+	 * Default is 4096. */
+	public static final String BATCH_SIZE_S = "batchSize";
+	/** Binary external events file where the whole workload is stored
+	 * -setting id ({@value}). If defined, the file is written when the
+	 * generator is created. */
+	public static final String STORE_FILE_S = "storeFile";
+
+	/** default value for the batch size */
+	public static final int DEF_BATCH_SIZE = 4096;
+	/** how many events are written before the object stream is reset */
+	private static final int STORE_RESET_INTERVAL = 10000;
+
+	private int[] sizeRange;
+	private int[] hostRange;
+	private int[] toHostRange;
+	private String idPrefix;
+	private double startTime;
+	private double endTime;
+	private double rate;
+	private double diurnal;
+	private double diurnalPeriod;
+	private double diurnalPeak;
+	private double meanOn;
+	private double meanOff;
+	private int batchSize;
+	private Random rng;
+
+	/** cumulative probabilities of the source ranks */
+	private double[] fromCdf;
+	/** host addresses of the source ranks */
+	private int[] fromHosts;
+	/** cumulative probabilities of the destination ranks */
+	private double[] toCdf;
+	/** host addresses of the destination ranks */
+	private int[] toHosts;
+
+	/** are the sources on (by offset in the host range) */
+	private boolean[] on;
+	/** when do the sources' current on/off periods end (NaN if not set) */
+	private double[] periodEnd;
+
+	/** rate of the candidate events (before thinning) */
+	private double candidateRate;
+	/** time of the latest candidate event */
+	private double candidateTime;
+
+	/** the current batch */
+	private double[] times;
+	private int[] froms;
+	private int[] tos;
+	private int[] sizes;
+	private int batchCount;
+	private int batchPos;
+	/** number of the last message */
+	private int id;
+
+	/**
+	 * Constructor.
+	 * @param s Settings for this generator
+	 */
+	public WorkloadGenerator(Settings s) {
+		this(s, true);
+	}
+
+	/**
+	 * Constructor.
+	 * @param s Settings for this generator
+	 * @param store If true and {@link #STORE_FILE_S} is defined, the
+	 * workload is stored to the file
+	 */
+	private WorkloadGenerator(Settings s, boolean store) {
+		this.sizeRange = s.getCsvInts(MessageEventGenerator.MESSAGE_SIZE_S);
+		this.hostRange = s.getCsvInts(MessageEventGenerator.HOST_RANGE_S, 2);
+		this.idPrefix = s.getSetting(
+				MessageEventGenerator.MESSAGE_ID_PREFIX_S);
+		this.rate = s.getDouble(RATE_S);
+
+		if (s.contains(MessageEventGenerator.MESSAGE_TIME_S)) {
+			double[] time = s.getCsvDoubles(
+					MessageEventGenerator.MESSAGE_TIME_S, 2);
+			this.startTime = time[0];
+			this.endTime = time[1];
+		} else {
+			this.startTime = 0;
+			this.endTime = new Settings(SimScenario.SCENARIO_NS).getDouble(
+					SimScenario.END_TIME_S);
+		}
+		if (s.contains(MessageEventGenerator.TO_HOST_RANGE_S)) {
+			this.toHostRange = s.getCsvInts(
+					MessageEventGenerator.TO_HOST_RANGE_S, 2);
+			s.assertValidRange(toHostRange,
+					MessageEventGenerator.TO_HOST_RANGE_S);
+		} else {
+			this.toHostRange = hostRange;
+		}
+		if (this.sizeRange.length == 1) {
+			this.sizeRange = new int[] {sizeRange[0], sizeRange[0]};
+		} else {
+			s.assertValidRange(sizeRange,
+					MessageEventGenerator.MESSAGE_SIZE_S);
+		}
+		s.assertValidRange(hostRange, MessageEventGenerator.HOST_RANGE_S);
+		if (hostRange[1] - hostRange[0] < 1 ||
+				toHostRange[1] - toHostRange[0] < 1) {
+			throw new SettingsError("Host ranges must contain at least one " +
+					"node");
+		}
+		if (toHostRange[1] - toHostRange[0] == 1 &&
+				hostRange[1] - hostRange[0] == 1 &&
+				toHostRange[0] == hostRange[0]) {
+			throw new SettingsError("If to and from host ranges contain" +
+					" only one host, they can't be the same");
+		}
+		if (rate <= 0) {
+			throw new SettingsError("Message creation rate must be positive");
+		}
+
+		this.diurnal = s.contains(DIURNAL_S) ? s.getDouble(DIURNAL_S) : 0;
+		if (diurnal < 0 || diurnal > 1) {
+			throw new SettingsError("Diurnal amplitude must be between " +
+					"0 and 1");
+		}
+		this.diurnalPeriod = s.contains(DIURNAL_PERIOD_S) ?
+				s.getDouble(DIURNAL_PERIOD_S) : 86400;
+		this.diurnalPeak = s.contains(DIURNAL_PEAK_S) ?
+				s.getDouble(DIURNAL_PEAK_S) : diurnalPeriod / 2;
+
+		double dutyCycle = 1;
+		if (s.contains(ON_OFF_S)) {
+			double[] onOff = s.getCsvDoubles(ON_OFF_S, 2);
+			this.meanOn = onOff[0];
+			this.meanOff = onOff[1];
+			if (meanOn <= 0 || meanOff < 0) {
+				throw new SettingsError("Invalid on/off period lengths for " +
+						"setting " + s.getFullPropertyName(ON_OFF_S));
+			}
+			dutyCycle = meanOn / (meanOn + meanOff);
+			int n = hostRange[1] - hostRange[0];
+			this.on = new boolean[n];
+			this.periodEnd = new double[n];
+			Arrays.fill(periodEnd, Double.NaN);
+		}
+
+		this.batchSize = s.contains(BATCH_SIZE_S) ?
+				Math.max(s.getInt(BATCH_SIZE_S), 1) : DEF_BATCH_SIZE;
+
+		if (store && s.contains(STORE_FILE_S)) {
+			/* the copies made for storing start with the same random
+			 * numbers, so they create the same events as this one */
+			storeToBinaryFile(s.getSetting(STORE_FILE_S), s);
+		}
+
+		/* if prefix is unique, so will be the rng's sequence */
+		this.rng = new Random(idPrefix.hashCode());
+
+		double fromZipf = s.contains(ZIPF_S) ? s.getDouble(ZIPF_S) : 0;
+		double toZipf = s.contains(TO_ZIPF_S) ? s.getDouble(TO_ZIPF_S) :
+			fromZipf;
+		this.fromHosts = rankHosts(hostRange);
+		this.fromCdf = zipfCdf(fromHosts.length, fromZipf);
+		this.toHosts = rankHosts(toHostRange);
+		this.toCdf = zipfCdf(toHosts.length, toZipf);
+
+		/* thinning: candidates at the highest possible rate; the ones that
+		 * fall on off-sources or on the low part of the curve are dropped */
+		this.candidateRate = rate * (1 + diurnal) / dutyCycle;
+		this.candidateTime = startTime;
+
+		this.times = new double[batchSize];
+		this.froms = new int[batchSize];
+		this.tos = new int[batchSize];
+		this.sizes = new int[batchSize];
+		this.batchCount = 0;
+		this.batchPos = 0;
+		this.id = 0;
+		generateBatch();
+	}
+
+	/**
+	 * Returns the host addresses of a host range in a random order
+	 * (the popularity ranks)
+	 * @param range The host range
+	 * @return The addresses in rank order
+	 */
+	private int[] rankHosts(int[] range) {
+		int[] hosts = new int[range[1] - range[0]];
+		for (int i = 0; i < hosts.length; i++) {
+			hosts[i] = range[0] + i;
+		}
+		for (int i = hosts.length - 1; i > 0; i--) {
+			int j = rng.nextInt(i + 1);
+			int tmp = hosts[i];
+			hosts[i] = hosts[j];
+			hosts[j] = tmp;
+		}
+		return hosts;
+	}
+
+	/**
+	 * Returns the cumulative distribution of a Zipf distribution
+	 * @param n Number of ranks
+	 * @param exponent Exponent of the distribution (0 for uniform)
+	 * @return The cumulative probabilities of the ranks
+	 */
+	private static double[] zipfCdf(int n, double exponent) {
+		double[] cdf = new double[n];
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			sum += 1 / Math.pow(i + 1, exponent);
+			cdf[i] = sum;
+		}
+		for (int i = 0; i < n; i++) {
+			cdf[i] /= sum;
+		}
+		cdf[n - 1] = 1;
+		return cdf;
+	}
+
+	/**
+	 * Draws a rank from a cumulative distribution
+	 * @param cdf The cumulative distribution
+	 * @return The rank
+	 */
+	private int drawRank(double[] cdf) {
+		double p = rng.nextDouble();
+		int low = 0;
+		int high = cdf.length - 1;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (cdf[mid] <= p) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns true if a source is on at the given time. The sources' on/off
+	 * periods are generated lazily, when they are first needed; the times
+	 * given to this method must not decrease.
+	 * @param offset Offset of the source in the host range
+	 * @param time The time
+	 * @return True if the source is on
+	 */
+	private boolean isOn(int offset, double time) {
+		if (Double.isNaN(periodEnd[offset])) {
+			/* the periods are memoryless, so the source can start
+			 * in the middle of a period */
+			on[offset] = rng.nextDouble() < meanOn / (meanOn + meanOff);
+			periodEnd[offset] = time + drawPeriod(on[offset]);
+		}
+		while (periodEnd[offset] <= time) {
+			on[offset] = !on[offset];
+			periodEnd[offset] += drawPeriod(on[offset]);
+		}
+		return on[offset];
+	}
+
+	/**
+	 * Draws the length of an on or off period
+	 * @param isOn True for an on period, false for an off period
+	 * @return The length of the period
+	 */
+	private double drawPeriod(boolean isOn) {
+		double mean = isOn ? meanOn : meanOff;
+		return -mean * Math.log(1 - rng.nextDouble());
+	}
+
+	/**
+	 * Generates the next batch of events to the arrays
+	 */
+	private void generateBatch() {
+		batchCount = 0;
+		batchPos = 0;
+		while (batchCount < batchSize) {
+			candidateTime += -Math.log(1 - rng.nextDouble()) / candidateRate;
+			if (candidateTime > endTime) {
+				candidateTime = endTime;
+				return;
+			}
+
+			if (diurnal > 0) {
+				double level = 1 + diurnal * Math.cos(2 * Math.PI *
+						(candidateTime - diurnalPeak) / diurnalPeriod);
+				if (rng.nextDouble() * (1 + diurnal) >= level) {
+					continue;
+				}
+			}
+
+			int from = fromHosts[drawRank(fromCdf)];
+			if (on != null && !isOn(from - hostRange[0], candidateTime)) {
+				continue;
+			}
+			if (toHosts.length == 1 && toHosts[0] == from) {
+				continue; // no other destination for this source
+			}
+			int to;
+			do {
+				to = toHosts[drawRank(toCdf)];
+			} while (to == from);
+
+			times[batchCount] = candidateTime;
+			froms[batchCount] = from;
+			tos[batchCount] = to;
+			sizes[batchCount] = sizeRange[0] + (sizeRange[0] == sizeRange[1] ?
+					0 : rng.nextInt(sizeRange[1] - sizeRange[0]));
+			batchCount++;
+		}
+	}
+
+	/**
+	 * Returns the next message creation event
+	 * @see input.EventQueue#nextEvent()
+	 */
+	public ExternalEvent nextEvent() {
+		if (batchPos == batchCount) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+
+		this.id++;
+		MessageCreateEvent mce = new MessageCreateEvent(froms[batchPos],
+				tos[batchPos], idPrefix + id, sizes[batchPos], 0,
+				times[batchPos]);
+		batchPos++;
+		if (batchPos == batchCount && batchCount == batchSize) {
+			generateBatch();
+		}
+		return mce;
+	}
+
+	/**
+	 * Returns next message creation event's time
+	 * @see input.EventQueue#nextEventsTime()
+	 */
+	public double nextEventsTime() {
+		if (batchPos == batchCount) {
+			return Double.MAX_VALUE;
+		}
+		return times[batchPos];
+	}
+
+	/**
+	 * Writes all the events of a generator to a binary external events file
+	 * (see {@link BinaryEventsReader}). The events are generated twice (first
+	 * to count them) so they don't need to fit in memory.
+	 * @param fileName Path of the file
+	 * @param s Settings of the generator
+	 */
+	private static void storeToBinaryFile(String fileName, Settings s) {
+		int count = 0;
+		WorkloadGenerator gen = new WorkloadGenerator(s, false);
+		while (gen.nextEventsTime() != Double.MAX_VALUE) {
+			gen.nextEvent();
+			count++;
+		}
+
+		gen = new WorkloadGenerator(s, false);
+		try {
+			ObjectOutputStream out = new ObjectOutputStream(
+					new BufferedOutputStream(new FileOutputStream(fileName),
+							65536));
+			out.writeObject(Integer.valueOf(count));
+			for (int i = 0; i < count; i++) {
+				out.writeObject(gen.nextEvent());
+				if (i % STORE_RESET_INTERVAL == 0) {
+					out.reset(); // don't keep references to written events
+				}
+			}
+			out.close();
+		} catch (IOException e) {
+			throw new SimError("Couldn't write external events file '" +
+					fileName + "'", e);
+		}
+	}
+}
@@ -181,11 +181,13 @@ public class APInterface extends NetworkInterface
 							nearEndpoint, anotherInterface, this, conSpeed);
 					
 					
-					ni.notifyConnectionListeners(CON_UP, anotherInterface.getHost());
-					
 					// add con to end point connection lists
 					anotherInterface.getConnections().add(con);
 					ni.getConnections().add(con);
+					nearEndpoint.connectionsChanged();
+					farEndpoint.connectionsChanged();
+					
+					ni.notifyConnectionListeners(CON_UP, anotherInterface.getHost());
 					
 					// inform host routers about connection
 					nearEndpoint.connectionUp(con);
@@ -0,0 +1,161 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import routing.MessageRouter;
+import core.Connection;
+import core.DTNHost;
+import core.Message;
+import core.NetworkInterface;
+import core.SimClock;
+
+/**
+ * Connection between two hosts that are attached to the same backbone
+ * through {@link BackboneInterface} access points. The backbone's switch
+ * forwards the traffic transparently, so the connection's ends are the
+ * hosts' own interfaces and the messages go from the sender's router
+ * straight to the receiver's router. For each host's interface, the other
+ * end of the connection is the access point the host is attached through,
+ * so the host's interface tears the connection down when it moves out of
+ * the access point's range. The speed of a transfer is the lowest one of
+ * the hosts' and the access points' transmit speeds, and the transfers of
+ * all the connections of the backbone share the backbone's aggregate
+ * capacity.
+ */
+public class BackboneConnection extends Connection {
+	private NetworkInterface fromAccessPoint;
+	private NetworkInterface toAccessPoint;
+	private BackboneSwitch backboneSwitch;
+	/** speed of the links between the hosts and the access points */
+	private double linkSpeed;
+	/** current speed of the transfer */
+	private double rate;
+	private double bytesLeft;
+	private double lastSettleTime;
+	private double transferDoneTime;
+
+	/**
+	 * Creates a new connection between two hosts of a backbone
+	 * @param fromInterface The interface of the host that attached last
+	 * @param fromAccessPoint The access point that host is attached through
+	 * @param toInterface The interface of the other host
+	 * @param toAccessPoint The access point the other host is attached
+	 * through
+	 * @param backboneSwitch The switch of the backbone
+	 */
+	BackboneConnection(NetworkInterface fromInterface,
+			NetworkInterface fromAccessPoint, NetworkInterface toInterface,
+			NetworkInterface toAccessPoint, BackboneSwitch backboneSwitch) {
+		super(fromInterface.getHost(), fromInterface, toInterface.getHost(),
+				toInterface);
+		this.fromAccessPoint = fromAccessPoint;
+		this.toAccessPoint = toAccessPoint;
+		this.backboneSwitch = backboneSwitch;
+		this.linkSpeed = Math.min(
+				Math.min(fromInterface.getTransmitSpeed(),
+						fromAccessPoint.getTransmitSpeed()),
+				Math.min(toInterface.getTransmitSpeed(),
+						toAccessPoint.getTransmitSpeed()));
+		this.rate = linkSpeed;
+	}
+
+	/**
+	 * Returns the access point the host of the given interface is attached
+	 * through
+	 * @param i The interface in this end of the connection
+	 * @return The access point of this end of the connection
+	 */
+	@Override
+	public NetworkInterface getOtherInterface(NetworkInterface i) {
+		if (i == this.fromInterface) {
+			return this.fromAccessPoint;
+		}
+		return this.toAccessPoint;
+	}
+
+	@Override
+	public int startTransfer(DTNHost from, Message m) {
+		assert this.msgOnFly == null : "Already transferring " +
+			this.msgOnFly + " from " + this.msgFromNode + ". Can't " +
+			"start transfer of " + m + " from " + from;
+
+		this.msgFromNode = from;
+		Message newMessage = m.replicate();
+		int retVal = getOtherNode(from).receiveMessage(newMessage, from);
+
+		if (retVal == MessageRouter.RCV_OK) {
+			this.msgOnFly = newMessage;
+			this.bytesLeft = m.getSize();
+			this.lastSettleTime = SimClock.getTime();
+			this.rate = linkSpeed;
+			this.transferDoneTime = lastSettleTime + bytesLeft / rate;
+			backboneSwitch.transferStarted(this);
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * Updates the number of bytes left up to the given time using the
+	 * current rate
+	 * @param now The current simulation time
+	 */
+	void settle(double now) {
+		bytesLeft -= rate * (now - lastSettleTime);
+		if (bytesLeft < 0) {
+			bytesLeft = 0;
+		}
+		lastSettleTime = now;
+	}
+
+	/**
+	 * Sets the share of the backbone's capacity that this connection's
+	 * transfer gets. Must be called right after {@link #settle(double)}.
+	 * @param share The share (bytes per second)
+	 */
+	void setShare(double share) {
+		this.rate = Math.min(linkSpeed, share);
+		this.transferDoneTime = lastSettleTime + bytesLeft / rate;
+	}
+
+	@Override
+	protected void clearMsgOnFly() {
+		if (this.msgOnFly != null) {
+			backboneSwitch.transferEnded(this);
+		}
+		super.clearMsgOnFly();
+	}
+
+	@Override
+	public boolean isMessageTransferred() {
+		return getRemainingByteCount() == 0;
+	}
+
+	@Override
+	public double getSpeed() {
+		return this.rate;
+	}
+
+	@Override
+	public int getRemainingByteCount() {
+		if (msgOnFly == null) {
+			return 0;
+		}
+
+		int remaining = (int)((this.transferDoneTime - SimClock.getTime())
+				* this.rate);
+
+		return (remaining > 0 ? remaining : 0);
+	}
+
+	@Override
+	public String toString() {
+		return fromNode + "<->" + toNode + " via " + fromAccessPoint.getHost() +
+			" and " + toAccessPoint.getHost() + " (" + rate + "Bps) is " +
+			(isUp() ? "up" : "down") +
+			(this.msgOnFly != null ? " transferring " + this.msgOnFly +
+				" from " + this.msgFromNode + " until " +
+				this.transferDoneTime : "");
+	}
+}
@@ -0,0 +1,301 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.DTNSim;
+import core.NetworkInterface;
+import core.Settings;
+import core.SimScenario;
+
+/**
+ * <p>Access point of a wired backbone. All the access points of the same
+ * interface type share a virtual switch: a host that comes within range of
+ * any of the access points is attached to the switch, which connects it
+ * with a {@link BackboneConnection} to each of the other attached hosts.
+ * The switch forwards the traffic transparently: the messages go from the
+ * sender's router straight to the receiver's router, and the access point
+ * hosts never get any connections or messages. Unlike
+ * {@link APInterface}, which creates the connections of a newcomer for
+ * each access point separately, the switch is shared by all the access
+ * points and only it creates connections.</p>
+ *
+ * <p>A host stays attached as long as it is within range of the access
+ * point it attached through; when it moves out of that range, its
+ * connections are torn down and the host attaches again through the next
+ * access point that has it in range. The ongoing transfers of the
+ * backbone share the aggregate capacity of the switch (setting
+ * {@value #CAPACITY_S}; unlimited by default) equally, but a transfer never
+ * goes faster than the lowest one of the two hosts' and their access
+ * points' transmit speeds.</p>
+ *
+ * <p>The interface types the access points serve can be defined with the
+ * {@value #INTERFACE_COUNT_S} and {@value #INTERFACE_S_PREFIX}{i} settings;
+ * by default, the access points serve all the interface types of the host
+ * groups.</p>
+ */
+public class BackboneInterface extends NetworkInterface {
+	/** Aggregate capacity of the backbone (bytes per second) -setting id
+	 * ({@value}) */
+	public static final String CAPACITY_S = "capacity";
+	/** Number of interface types the access points serve -setting id
+	 * ({@value}) */
+	public static final String INTERFACE_COUNT_S = "interfaceCount";
+	/** Interface types the access points serve -setting id prefix
+	 * ({@value}) */
+	public static final String INTERFACE_S_PREFIX = "interface";
+
+	/** switches of the backbones by their interface type */
+	private static Map<String, BackboneSwitch> switches;
+
+	static {
+		DTNSim.registerForReset(BackboneInterface.class.getCanonicalName());
+		reset();
+	}
+
+	private double capacity;
+	private String[] servedTypes;
+	/** connectivity grids of the served interface types (null until the
+	 * first update) */
+	private List<ConnectivityGrid> servedGrids;
+	private BackboneSwitch backboneSwitch;
+	/** interfaces attached to the backbone through this access point */
+	private List<NetworkInterface> attachedHere;
+
+	/**
+	 * Resets the static fields of the class
+	 */
+	public static void reset() {
+		switches = new HashMap<String, BackboneSwitch>();
+	}
+
+	/**
+	 * Creates the prototype interface
+	 * @param s The settings
+	 */
+	public BackboneInterface(Settings s) {
+		super(s);
+		if (s.contains(CAPACITY_S)) {
+			this.capacity = s.getDouble(CAPACITY_S);
+			ensurePositiveValue(capacity, CAPACITY_S);
+		} else {
+			this.capacity = Double.POSITIVE_INFINITY;
+		}
+
+		if (s.contains(INTERFACE_COUNT_S)) {
+			int count = s.getInt(INTERFACE_COUNT_S);
+			this.servedTypes = new String[count];
+			for (int i = 0; i < count; i++) {
+				servedTypes[i] = s.getSetting(INTERFACE_S_PREFIX + (i + 1));
+			}
+		} else {
+			this.servedTypes = readGroupInterfaceTypes();
+		}
+	}
+
+	/**
+	 * Copy constructor
+	 * @param ni The prototype to copy
+	 */
+	public BackboneInterface(BackboneInterface ni) {
+		super(ni);
+		this.capacity = ni.capacity;
+		this.servedTypes = ni.servedTypes;
+		this.attachedHere = new ArrayList<NetworkInterface>();
+	}
+
+	@Override
+	public NetworkInterface replicate() {
+		return new BackboneInterface(this);
+	}
+
+	/**
+	 * Returns the interface types of all the host groups, except this one
+	 * @return the interface types
+	 */
+	private String[] readGroupInterfaceTypes() {
+		Settings s = new Settings(SimScenario.SCENARIO_NS);
+		int nrofGroups = s.getInt(SimScenario.NROF_GROUPS_S);
+		Set<String> types = new LinkedHashSet<String>();
+		for (int i = 1; i <= nrofGroups; i++) {
+			s.setNameSpace(SimScenario.GROUP_NS + i);
+			s.setSecondaryNamespace(SimScenario.GROUP_NS);
+			int nrofInterfaces = s.getInt(SimScenario.NROF_INTERF_S);
+			for (int j = 1; j <= nrofInterfaces; j++) {
+				types.add(s.getSetting(SimScenario.INTERFACENAME_S + j));
+			}
+		}
+		types.remove(this.interfacetype);
+		return types.toArray(new String[0]);
+	}
+
+	@Override
+	public void setHost(DTNHost host) {
+		super.setHost(host);
+		this.backboneSwitch = switches.get(this.interfacetype);
+		if (this.backboneSwitch == null) {
+			this.backboneSwitch = new BackboneSwitch(capacity);
+			switches.put(this.interfacetype, this.backboneSwitch);
+		}
+	}
+
+	/**
+	 * Finds the connectivity grids of the served interface types. Done at
+	 * the first update, when all the hosts (and grids) exist.
+	 * @return The grids
+	 */
+	private List<ConnectivityGrid> findServedGrids() {
+		List<ConnectivityGrid> grids = new ArrayList<ConnectivityGrid>();
+		for (String type : servedTypes) {
+			ConnectivityGrid g = ConnectivityGrid.getExistingGrid(
+					type.hashCode());
+			if (g != null) {
+				grids.add(g);
+			}
+		}
+		return grids;
+	}
+
+	/**
+	 * Detaches the hosts that are no longer within range from the backbone
+	 * and attaches the hosts that are within range
+	 */
+	@Override
+	public void update() {
+		optimizer.updateLocation(this);
+		boolean active = isActive();
+		for (int i = 0; i < attachedHere.size(); ) {
+			NetworkInterface ni = attachedHere.get(i);
+			if (!active || !ni.isActive() || !isWithinRange(ni)) {
+				detach(ni);
+			} else {
+				i++;
+			}
+		}
+		if (!active) {
+			return;
+		}
+		if (servedGrids == null) {
+			servedGrids = findServedGrids();
+		}
+
+		Coord loc = getLocation();
+		for (int i = 0, n = servedGrids.size(); i < n; i++) {
+			for (NetworkInterface ni :
+					servedGrids.get(i).getInterfacesNear(loc, transmitRange)) {
+				connect(ni);
+			}
+		}
+	}
+
+	/**
+	 * Attaches the host of the given interface to the backbone if it is
+	 * active and within range of this access point
+	 * @param anotherInterface The host's interface
+	 */
+	@Override
+	public void connect(NetworkInterface anotherInterface) {
+		if (anotherInterface.isActive() && isWithinRange(anotherInterface)) {
+			attach(anotherInterface);
+		}
+	}
+
+	/**
+	 * Attaches the host of the given interface to the backbone through
+	 * this access point without checking the range
+	 * @param anotherInterface The host's interface
+	 */
+	@Override
+	public void createConnection(NetworkInterface anotherInterface) {
+		attach(anotherInterface);
+	}
+
+	/**
+	 * Attaches an interface to the backbone through this access point and
+	 * connects it to all the other attached hosts, unless it is already
+	 * attached through an access point that has it in range
+	 * @param ni The interface to attach
+	 */
+	private void attach(NetworkInterface ni) {
+		if (ni instanceof BackboneInterface) {
+			return;
+		}
+		BackboneInterface ap = backboneSwitch.getAccessPoint(ni);
+		if (ap != null) {
+			if (ap == this || (ap.isActive() && ap.isWithinRange(ni))) {
+				return;
+			}
+			ap.detach(ni); // moved to this access point's range
+		}
+
+		DTNHost host = ni.getHost();
+		for (NetworkInterface peer : backboneSwitch.getAttached()) {
+			if (peer.getHost() == host) {
+				continue;
+			}
+			BackboneConnection con = new BackboneConnection(ni, this, peer,
+					backboneSwitch.getAccessPoint(peer), backboneSwitch);
+
+			// set up bidirectional connection
+			ni.getConnections().add(con);
+			peer.getConnections().add(con);
+			host.connectionsChanged();
+			peer.getHost().connectionsChanged();
+
+			ni.notifyConnectionListeners(CON_UP, peer.getHost());
+
+			// inform routers about the connection
+			host.connectionUp(con);
+			peer.getHost().connectionUp(con);
+		}
+		backboneSwitch.attach(ni, this);
+		attachedHere.add(ni);
+	}
+
+	/**
+	 * Detaches an interface from the backbone and tears down its backbone
+	 * connections
+	 * @param ni The interface to detach
+	 */
+	private void detach(NetworkInterface ni) {
+		attachedHere.remove(ni);
+		backboneSwitch.detach(ni);
+		List<Connection> cons = ni.getConnections();
+		for (int i = 0; i < cons.size(); ) {
+			Connection con = cons.get(i);
+			if (con instanceof BackboneConnection &&
+					con.getOtherInterface(ni) == this) {
+				con.disconnect(ni);
+			} else {
+				i++;
+			}
+		}
+	}
+
+	/**
+	 * Returns false; hosts can't connect to access points on their own
+	 */
+	@Override
+	public boolean acceptingConnections() {
+		return false;
+	}
+
+	/**
+	 * Returns a string representation of the object.
+	 * @return a string representation of the object.
+	 */
+	@Override
+	public String toString() {
+		return "BackboneInterface " + super.toString();
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import core.NetworkInterface;
+import core.SimClock;
+
+/**
+ * Virtual switch of a backbone that the {@link BackboneInterface} access
+ * points of one interface type share. The switch knows which access point
+ * each attached host interface is attached through, and it has an
+ * aggregate capacity that the ongoing transfers of all the
+ * {@link BackboneConnection}s share equally (each transfer is also limited
+ * by the speed of its own links).
+ */
+class BackboneSwitch {
+	/** aggregate capacity (bytes per second; infinite if unlimited) */
+	private double capacity;
+	/** access points of the attached interfaces, in the attaching order */
+	private Map<NetworkInterface, BackboneInterface> attached;
+	/** connections that are transferring a message */
+	private List<BackboneConnection> transfers;
+
+	/**
+	 * Creates a new switch
+	 * @param capacity Aggregate capacity of the switch (bytes per second)
+	 */
+	BackboneSwitch(double capacity) {
+		this.capacity = capacity;
+		this.attached = new LinkedHashMap<NetworkInterface, BackboneInterface>();
+		this.transfers = new ArrayList<BackboneConnection>();
+	}
+
+	/**
+	 * Returns the access point an interface is attached through
+	 * @param ni The interface
+	 * @return The access point or null if the interface is not attached
+	 */
+	BackboneInterface getAccessPoint(NetworkInterface ni) {
+		return this.attached.get(ni);
+	}
+
+	/**
+	 * Returns the attached interfaces in the order they were attached
+	 * @return the attached interfaces
+	 */
+	Set<NetworkInterface> getAttached() {
+		return this.attached.keySet();
+	}
+
+	/**
+	 * Records an interface as attached through an access point
+	 * @param ni The interface
+	 * @param accessPoint The access point
+	 */
+	void attach(NetworkInterface ni, BackboneInterface accessPoint) {
+		this.attached.put(ni, accessPoint);
+	}
+
+	/**
+	 * Removes an interface from the attached ones
+	 * @param ni The interface
+	 */
+	void detach(NetworkInterface ni) {
+		this.attached.remove(ni);
+	}
+
+	/**
+	 * Adds a transfer to the shared capacity
+	 * @param con The connection that started a transfer
+	 */
+	void transferStarted(BackboneConnection con) {
+		if (Double.isInfinite(capacity)) {
+			return; // only the links limit the speed
+		}
+		settle();
+		transfers.add(con);
+		share();
+	}
+
+	/**
+	 * Removes a transfer from the shared capacity
+	 * @param con The connection whose transfer ended
+	 */
+	void transferEnded(BackboneConnection con) {
+		if (Double.isInfinite(capacity)) {
+			return;
+		}
+		settle();
+		transfers.remove(con);
+		share();
+	}
+
+	/**
+	 * Updates the progress of all the transfers up to the current time
+	 */
+	private void settle() {
+		double now = SimClock.getTime();
+		for (int i = 0, n = transfers.size(); i < n; i++) {
+			transfers.get(i).settle(now);
+		}
+	}
+
+	/**
+	 * Divides the capacity between the transfers
+	 */
+	private void share() {
+		if (transfers.isEmpty()) {
+			return;
+		}
+		double share = capacity / transfers.size();
+		for (int i = 0, n = transfers.size(); i < n; i++) {
+			transfers.get(i).setShare(share);
+		}
+	}
+}
@@ -7,6 +7,7 @@ package interfaces;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 
 import movement.MovementModel;
 
@@ -47,6 +48,10 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	private static int worldSizeY;
 
 	static HashMap<Integer,ConnectivityGrid> gridobjects;
+	/** are the additions of interfaces deferred (see deferAdditions()) */
+	private static boolean deferAdditions;
+	/** interfaces whose addition has been deferred (or null) */
+	private List<NetworkInterface> deferred;
 
 	static {
 		DTNSim.registerForReset(ConnectivityGrid.class.getCanonicalName());
@@ -55,6 +60,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	
 	public static void reset() {
 		gridobjects = new HashMap<Integer,ConnectivityGrid>();
+		deferAdditions = false;
 
 		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
 		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,2);
@@ -102,11 +108,53 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		}
 	}
 
+	/**
+	 * Returns the grid of an interface type if it has been created
+	 * @param key The hash value of the grid
+	 * @return The grid or null if there's no grid for the key
+	 */
+	static ConnectivityGrid getExistingGrid(int key) {
+		return gridobjects.get(key);
+	}
+
+	/**
+	 * Defers the additions of interfaces to all the grids until
+	 * {@link #addDeferred()} is called. This way interfaces whose hosts
+	 * don't have a location yet are put to the cell of their initial
+	 * location instead of all to the same cell, where they would have to be
+	 * removed from one by one when the hosts move for the first time.
+	 */
+	public static void deferAdditions() {
+		deferAdditions = true;
+	}
+
+	/**
+	 * Adds the interfaces whose additions were deferred to the grids (in
+	 * the order they were added) and stops deferring the additions
+	 * @see #deferAdditions()
+	 */
+	public static void addDeferred() {
+		deferAdditions = false;
+		for (ConnectivityGrid grid : gridobjects.values()) {
+			if (grid.deferred != null) {
+				grid.addInterfaces(grid.deferred);
+				grid.deferred = null;
+			}
+		}
+	}
+
 	/**
 	 * Adds a network interface to the overlay grid
 	 * @param ni The new network interface
 	 */
 	public void addInterface(NetworkInterface ni) {
+		if (deferAdditions) {
+			if (deferred == null) {
+				deferred = new ArrayList<NetworkInterface>();
+			}
+			deferred.add(ni);
+			return;
+		}
 		GridCell c = cellFromCoord(ni.getLocation());
 		c.addInterface(ni);
 		ginterfaces.put(ni,c);
@@ -204,21 +252,57 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 */
 	public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface netinterf) {
-		ArrayList<NetworkInterface> ni = new ArrayList<NetworkInterface>();
-		ni.clear();
-
 		GridCell loc = (GridCell)ginterfaces.get(netinterf);
-		if (loc != null) {	
-			GridCell[] neighbors = 
-				getNeighborCellsByCoord(netinterf.getLocation());
-			for (int i=0; i < neighbors.length; i++) {
-				ni.addAll(neighbors[i].getInterfaces());
+		if (loc == null) {
+			return new ArrayList<NetworkInterface>(0);
+		}
+
+		GridCell[] neighbors =
+			getNeighborCellsByCoord(netinterf.getLocation());
+		int size = 0;
+		for (int i=0; i < neighbors.length; i++) {
+			size += neighbors[i].getInterfaces().size();
+		}
+		/* copy element by element; addAll would make a temporary array
+		   of each cell's interfaces */
+		ArrayList<NetworkInterface> ni = new ArrayList<NetworkInterface>(size);
+		for (int i=0; i < neighbors.length; i++) {
+			ArrayList<NetworkInterface> cellInterfaces =
+				neighbors[i].getInterfaces();
+			for (int j=0, n=cellInterfaces.size(); j < n; j++) {
+				ni.add(cellInterfaces.get(j));
 			}
 		}
 		return ni;
 	}
 
 
+	/**
+	 * Returns all interfaces in the cells that are at least partially within
+	 * the given distance from the given location. Unlike
+	 * {@link #getNearInterfaces(NetworkInterface)}, this works also for
+	 * distances larger than the cell size. The returned interfaces may be
+	 * farther away than the distance.
+	 * @param c The location
+	 * @param distance The distance
+	 * @return The interfaces of the cells
+	 */
+	public Collection<NetworkInterface> getInterfacesNear(Coord c,
+			double distance) {
+		ArrayList<NetworkInterface> ni = new ArrayList<NetworkInterface>();
+		// +1 due empty cells on both sides of the matrix
+		int minRow = Math.max((int)((c.getY() - distance)/cellSize) + 1, 1);
+		int maxRow = Math.min((int)((c.getY() + distance)/cellSize) + 1, rows);
+		int minCol = Math.max((int)((c.getX() - distance)/cellSize) + 1, 1);
+		int maxCol = Math.min((int)((c.getX() + distance)/cellSize) + 1, cols);
+		for (int row = minRow; row <= maxRow; row++) {
+			for (int col = minCol; col <= maxCol; col++) {
+				ni.addAll(cells[row][col].getInterfaces());
+			}
+		}
+		return ni;
+	}
+
 	/**
 	 * Returns a string representation of the ConnectivityCells object
 	 * @return a string representation of the ConnectivityCells object
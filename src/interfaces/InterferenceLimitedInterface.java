@@ -99,8 +99,7 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 		// Then find new possible connections
 		Collection<NetworkInterface> interfaces = 
 			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) 
-			connect(i);
+		connectWithinRange(interfaces);
 		}
 		// Find the current number of transmissions
 		// (to calculate the current transmission speed
@@ -99,9 +99,7 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 		// Then find new possible connections
 		Collection<NetworkInterface> interfaces =
 			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) {
-			connect(i);
-		}
+		connectWithinRange(interfaces);
 	}
 
 	/** 
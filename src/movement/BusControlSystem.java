@@ -4,6 +4,7 @@
  */
 package movement;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -20,7 +21,8 @@ import core.DTNSim;
  * 
  * @author Frans Ekman
  */
-public class BusControlSystem {
+public class BusControlSystem implements Serializable {
+	private static final long serialVersionUID = 1L;
 	public static final String BUS_CONTROL_SYSTEM_NR = "busControlSystemNr";
 	
 	private static HashMap<Integer, BusControlSystem> systems;
@@ -50,6 +52,22 @@ public class BusControlSystem {
 	public static void reset() {
 		systems = new HashMap<Integer, BusControlSystem>();
 	}
+
+	/**
+	 * Returns all the bus control systems by their IDs
+	 * @return all the bus control systems
+	 */
+	static HashMap<Integer, BusControlSystem> getSystems() {
+		return systems;
+	}
+
+	/**
+	 * Replaces all the bus control systems (when restoring a checkpoint)
+	 * @param newSystems The new systems by their IDs
+	 */
+	static void setSystems(HashMap<Integer, BusControlSystem> newSystems) {
+		systems = newSystems;
+	}
 	
 	/**
 	 * Called by busses belonging to this system every time the bus has stopped.
@@ -4,6 +4,7 @@
  */
 package movement;
 
+import java.io.Serializable;
 import java.util.*;
 
 import movement.map.DijkstraPathFinder;
@@ -27,6 +28,7 @@ import core.Settings;
  */
 public class BusTravellerMovement extends MapBasedMovement implements
 		TransportMovement {
+	private static final long serialVersionUID = 1L;
 
 	public static final String PROBABILITIES_STRING = "probs";
 	public static final String PROBABILITY_TAKE_OTHER_BUS = "probTakeOtherBus";
@@ -253,7 +255,8 @@ public class BusTravellerMovement extends MapBasedMovement implements
 	 * 
 	 * @author Frans Ekman
 	 */
-	class ContinueBusTripDecider {
+	class ContinueBusTripDecider implements Serializable {
+		private static final long serialVersionUID = 1L;
 
 		private double[] probabilities; // Probability to travel with bus
 		private int state;
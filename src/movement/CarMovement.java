@@ -18,6 +18,7 @@ import core.Settings;
  */
 public class CarMovement extends MapBasedMovement implements
 		TransportMovement {
+	private static final long serialVersionUID = 1L;
 
 	private Coord from;
 	private Coord to;
@@ -13,6 +13,7 @@ import java.util.Random;
  * area.
  */
 public class CrowdMovement extends MovementModel {
+	private static final long serialVersionUID = 1L;
 
     /**
      * how many waypoints should there be per path
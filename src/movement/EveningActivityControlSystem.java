@@ -4,6 +4,7 @@
  */
 package movement;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
@@ -18,7 +19,8 @@ import core.SimError;
  * 
  * @author Frans Ekman
  */
-public class EveningActivityControlSystem {
+public class EveningActivityControlSystem implements Serializable {
+	private static final long serialVersionUID = 1L;
 
 	private HashMap<Integer, EveningActivityMovement> eveningActivityNodes;
 	private List<Coord> meetingSpots;
@@ -47,6 +49,24 @@ public class EveningActivityControlSystem {
 	public static void reset() {
 		controlSystems = new HashMap<Integer, EveningActivityControlSystem>();
 	}
+
+	/**
+	 * Returns all the evening activity control systems by their IDs
+	 * @return all the control systems
+	 */
+	static HashMap<Integer, EveningActivityControlSystem> getSystems() {
+		return controlSystems;
+	}
+
+	/**
+	 * Replaces all the evening activity control systems (when restoring a
+	 * checkpoint)
+	 * @param systems The new systems by their IDs
+	 */
+	static void setSystems(
+			HashMap<Integer, EveningActivityControlSystem> systems) {
+		controlSystems = systems;
+	}
 	
 	/**
 	 * Register a evening activity node with the system
@@ -25,6 +25,7 @@ import core.Settings;
  * @author Frans Ekman
  */
 public class EveningActivityMovement extends MapBasedMovement {
+	private static final long serialVersionUID = 1L;
 
 	private static final int WALKING_TO_MEETING_SPOT_MODE = 0;
 	private static final int EVENING_ACTIVITY_MODE = 1;
@@ -4,6 +4,8 @@
  */
 package movement;
 
+import java.io.Serializable;
+
 import core.Coord;
 import core.SimError;
 
@@ -16,7 +18,8 @@ import core.SimError;
  * 
  * @author Frans Ekman
  */
-public class EveningTrip {
+public class EveningTrip implements Serializable {
+	private static final long serialVersionUID = 1L;
 	private EveningActivityMovement[] eveningActivityNodes;
 	private int eveningActivityNodesInBuffer;
 	private int eveningActivityNodesExpected;
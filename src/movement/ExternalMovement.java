@@ -4,13 +4,17 @@
  */
 package movement;
 
+import input.BinaryMovementReader;
 import input.ExternalMovementReader;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 
 import core.Coord;
 import core.DTNSim;
@@ -19,40 +23,51 @@ import core.SimClock;
 import core.Tuple;
 
 /**
- * Movement model that uses external data of node locations.
+ * Movement model that uses external data of node locations. The location
+ * data can be a text file (see {@link ExternalMovementReader}) or a binary
+ * file (see {@link BinaryMovementReader}). Groups that define their own
+ * location file with {@link #GROUP_MOVEMENT_FILE_S} follow it independently
+ * of the other groups; all the other groups share the nodes of the
+ * {@link #MOVEMENT_FILE_S} file.
  */
 public class ExternalMovement extends MovementModel {
+	private static final long serialVersionUID = 1L;
 	/** Namespace for settings */
 	public static final String EXTERNAL_MOVEMENT_NS = "ExternalMovement";
 	/** external locations file's path -setting id ({@value})*/
 	public static final String MOVEMENT_FILE_S = "file";
 	/** number of preloaded intervals per preload run -setting id ({@value})*/
 	public static final String NROF_PRELOAD_S = "nrofPreload";
+	/** number of time instances a binary file is decoded ahead
+	 * -setting id ({@value}). Default is 64. */
+	public static final String READ_AHEAD_S = "readAhead";
+	/** group specific external locations file's path -setting id
+	 * ({@value}). Read from the group's namespace. If not defined, the file
+	 * of the {@link #MOVEMENT_FILE_S} setting is used. */
+	public static final String GROUP_MOVEMENT_FILE_S = "externalMovementFile";
 	
 	/** default initial location for excess nodes */
 	private static final Coord DEF_INIT_LOC = new Coord(0,0);
-	private static ExternalMovementReader reader;
-	private static String inputFileName;
-	
-	/** mapping of external id to movement model */
-	private static Map<String, ExternalMovement> idMapping;
-	/** initial locations for nodes */
-	private static List<Tuple<String, Coord>> initLocations;
-	/** time of the very first location data */
-	private static double initTime;
-	/** sampling interval (seconds) of the location data */
-	private static double samplingInterval;
-	/** last read time stamp after preloading */
-	private static double lastPreloadTime;
-	/** how many time intervals to load on every preload run */
-	private static double nrofPreload = 10;
+	/** default value for the number of time instances decoded ahead */
+	private static final int DEF_READ_AHEAD = 64;
 	/** minimum number intervals that should be preloaded ahead of sim time */
 	private static final double MIN_AHEAD_INTERVALS = 2;
 		
+	/** the location files that are in use, by their path */
+	private static Map<String, Trace> traces;
+
+	/** the location file of this node */
+	private Trace trace;
 	/** the very first location of the node */
 	private Coord intialLocation;
-	/** queue of path-start-time, path tuples */
-	private Queue<Tuple<Double, Path>> pathQueue;
+	/** start times of the queued paths (a ring buffer) */
+	private double[] pathStartTimes;
+	/** the queued paths (same positions as in {@link #pathStartTimes}) */
+	private Path[] paths;
+	/** position of the first queued path in the ring buffer */
+	private int pathHead;
+	/** number of queued paths */
+	private int nrofPaths;
 	
 	/** when was the path currently under construction started */
 	private double latestPathStartTime;
@@ -76,71 +91,45 @@ public class ExternalMovement extends MovementModel {
 	public ExternalMovement(Settings settings) {
 		super(settings);
 		
-		if (idMapping == null) {
+		if (traces == null) {
 			// run these the first time object is created or after reset call
-			Settings s = new Settings(EXTERNAL_MOVEMENT_NS);
-			idMapping = new HashMap<String, ExternalMovement>();
-			inputFileName = s.getSetting(MOVEMENT_FILE_S);
-			reader = new ExternalMovementReader(inputFileName);
+			traces = new HashMap<String, Trace>();
+		}
 			
-			initLocations = reader.readNextMovements();
-			initTime = reader.getLastTimeStamp();
-			samplingInterval = -1;
-			lastPreloadTime = -1;
+		Settings s = new Settings(EXTERNAL_MOVEMENT_NS);
+		String fileName;
+		if (settings.contains(GROUP_MOVEMENT_FILE_S)) {
+			fileName = settings.getSetting(GROUP_MOVEMENT_FILE_S);
+		} else {
+			fileName = s.getSetting(MOVEMENT_FILE_S);
+		}
 			
-			s.setNameSpace(EXTERNAL_MOVEMENT_NS);
-			if (s.contains(NROF_PRELOAD_S)) {
-				nrofPreload = s.getInt(NROF_PRELOAD_S);
-				if (nrofPreload <= 0) {
-					nrofPreload = 1;
-				}
-			}
+		this.trace = traces.get(fileName);
+		if (this.trace == null) {
+			this.trace = new Trace(fileName, s);
+			traces.put(fileName, this.trace);
 		}
 	}
 	
 	/** 
 	 * Copy constructor. Gives out location data for the new node from 
 	 * location queue.
-	 * @param mm The movement model to copy from
+	 * @param em The movement model to copy from
 	 */
-	private ExternalMovement(MovementModel mm) {
-		super(mm);
+	private ExternalMovement(ExternalMovement em) {
+		super(em);
 		
-		pathQueue = new LinkedList<Tuple<Double, Path>>();
+		this.trace = em.trace;
+		this.pathStartTimes = new double[4];
+		this.paths = new Path[4];
+		this.pathHead = 0;
+		this.nrofPaths = 0;
 		latestPath = null;
 		
-		if (initLocations.size() > 0) { // we have location data left
-			// gets a new location from the list
-			Tuple<String, Coord> initLoc = initLocations.remove(0); 
-			this.intialLocation = this.latestLocation = initLoc.getValue();
-			this.latestPathStartTime = initTime;
-			
-			// puts the new model to model map for later updates
-			idMapping.put(initLoc.getKey(), this);
-			isActive = true;
-		}
-		else {
+		if (!trace.assignNode(this)) {
 			// no more location data left for the new node -> set inactive
 			this.intialLocation = DEF_INIT_LOC;
 			isActive = false;
-		}		
-	}
-	
-	/**
-	 * Checks if more paths should be preloaded and preloads them if
-	 * needed.
-	 */
-	private static void checkPathNeed() {
-		if (samplingInterval == -1) { // first preload
-			lastPreloadTime = readMorePaths();
-		}
-		
-		if (lastPreloadTime != Double.NaN && SimClock.getTime() >= 
-				lastPreloadTime - (samplingInterval * MIN_AHEAD_INTERVALS) ) {
-			for (int i=0; i < nrofPreload && 
-					lastPreloadTime != Double.NaN; i++) {
-				lastPreloadTime = readMorePaths();
-			}
 		}
 	}
 	
@@ -162,13 +151,12 @@ public class ExternalMovement extends MovementModel {
 	 * @param time When should the node be there
 	 */
 	private void addLocation(Coord loc, double time) {
-		assert samplingInterval > 0 : "Non-positive sampling interval!";
+		assert trace.samplingInterval > 0 : "Non-positive sampling interval!";
 		
 		if (loc.equals(latestLocation)) { // node didn't move
 			if (latestPath != null) {
 				// constructing path -> end constructing and put it in the queue
-				pathQueue.add(new Tuple<Double, Path>
-					(latestPathStartTime, latestPath));
+				queuePath(latestPathStartTime, latestPath);
 				latestPath = null;
 			}
 
@@ -180,11 +168,37 @@ public class ExternalMovement extends MovementModel {
 			latestPath = new Path();			
 		}
 			
-		double speed = loc.distance(this.latestLocation) / samplingInterval;		
+		double speed = loc.distance(this.latestLocation) /
+			trace.samplingInterval;
 		latestPath.addWaypoint(loc, speed);
 
 		this.latestLocation = loc;
 	}
+
+	/**
+	 * Adds a path to the end of the path queue
+	 * @param startTime When the path should be started
+	 * @param path The path
+	 */
+	private void queuePath(double startTime, Path path) {
+		if (nrofPaths == paths.length) { // full -> double the size
+			double[] newTimes = new double[paths.length * 2];
+			Path[] newPaths = new Path[paths.length * 2];
+			for (int i = 0; i < nrofPaths; i++) {
+				int pos = (pathHead + i) % paths.length;
+				newTimes[i] = pathStartTimes[pos];
+				newPaths[i] = paths[pos];
+			}
+			pathStartTimes = newTimes;
+			paths = newPaths;
+			pathHead = 0;
+		}
+
+		int pos = (pathHead + nrofPaths) % paths.length;
+		pathStartTimes[pos] = startTime;
+		paths[pos] = path;
+		nrofPaths++;
+	}
 	
 	/**
 	 * Returns a sim time when the next path is available.
@@ -192,11 +206,11 @@ public class ExternalMovement extends MovementModel {
 	 */
 	@Override
 	public double nextPathAvailable() {
-		if (pathQueue.size() == 0) {
+		if (nrofPaths == 0) {
 			return latestPathStartTime;
 		}
 		else {
-			return pathQueue.element().getKey();
+			return pathStartTimes[pathHead];
 		}		
 	}
 	
@@ -204,18 +218,21 @@ public class ExternalMovement extends MovementModel {
 	public Path getPath() {
 		Path p;
 		
-		checkPathNeed(); // check if we should preload more paths		
+		trace.checkPathNeed(); // check if we should preload more paths
 		
 		if (SimClock.getTime() < this.nextPathAvailable()) {
 			return null;
 		}		
 		
-		if (pathQueue.size() == 0) { // nothing in the queue, return latest
+		if (nrofPaths == 0) { // nothing in the queue, return latest
 			p = latestPath;
 			latestPath = null;
 		}
 		else {	// return first path in the queue
-			p = pathQueue.remove().getValue();
+			p = paths[pathHead];
+			paths[pathHead] = null;
+			pathHead = (pathHead + 1) % paths.length;
+			nrofPaths--;
 		}
 		
 		return p;
@@ -223,12 +240,12 @@ public class ExternalMovement extends MovementModel {
 	
 	@Override
 	public int getMaxX() {
-		return (int)(reader.getMaxX() - reader.getMinX()) + 1;
+		return (int)(trace.maxX - trace.minX) + 1;
 	}
 
 	@Override
 	public int getMaxY() {
-		return (int)(reader.getMaxY() - reader.getMinY()) + 1;
+		return (int)(trace.maxY - trace.minY) + 1;
 	}
 
 	
@@ -238,39 +255,240 @@ public class ExternalMovement extends MovementModel {
 	}
 	
 	/**
-	 * Reads paths for the next time instance from the reader
-	 * @return The time stamp of the reading or Double.NaN if no movements
-	 * were read.
+	 * Reset state so that next instance will have a fresh state
 	 */
-	private static double readMorePaths() {
-		List<Tuple<String, Coord>> list = reader.readNextMovements();
-		double time = reader.getLastTimeStamp();
-		
-		if (samplingInterval == -1) {
-			samplingInterval = time - initTime;
-		}
-		
-		for (Tuple<String, Coord> t : list) {
-			ExternalMovement em = idMapping.get(t.getKey());
-			if (em != null) { // skip unknown IDs, i.e. IDs not mentioned in...
-				// ...init phase or if there are more IDs than nodes
-				em.addLocation(t.getValue(), time);
+	public static void reset() {
+		if (traces != null) {
+			for (Trace t : traces.values()) {
+				t.close();
 			}
 		}
-		
-		if (list.size() > 0) {
-			return time;
-		}
-		else {
-			return Double.NaN;
-		}
+		traces = null;
 	}
-	
+
 	/**
-	 * Reset state so that next instance will have a fresh state
+	 * External movement can't be checkpointed because the state of the
+	 * (shared) trace reader can't be saved
 	 */
-	public static void reset() {
-		idMapping = null;
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		throw new NotSerializableException("ExternalMovement can't be " +
+				"checkpointed");
+	}
+
+	/**
+	 * Location data of one file and the nodes that follow it
+	 */
+	private static class Trace {
+		/** reader of a text file (null if the file is binary) */
+		private ExternalMovementReader reader;
+		/** reader of a binary file (null if the file is text) */
+		private BinaryMovementReader binaryReader;
+
+		/** mapping of external id to movement model (text files) */
+		private Map<String, ExternalMovement> idMapping;
+		/** mapping of id index to movement model (binary files) */
+		private List<ExternalMovement> indexMapping;
+		/** initial locations for nodes */
+		private List<Tuple<String, Coord>> initLocations;
+		/** id indexes of the initial locations (binary files) */
+		private List<Integer> initIndexes;
+		/** index of the next initial location to give out */
+		private int nextInit;
+		/** time of the very first location data */
+		private double initTime;
+		/** sampling interval (seconds) of the location data */
+		private double samplingInterval;
+		/** last read time stamp after preloading */
+		private double lastPreloadTime;
+		/** time stamp of the last read time instance */
+		private double lastTime;
+		/** how many time intervals to load on every preload run */
+		private int nrofPreload;
+
+		private double minX;
+		private double maxX;
+		private double minY;
+		private double maxY;
+
+		/**
+		 * Opens a location file and reads the initial locations
+		 * @param fileName Path of the file
+		 * @param s Settings of the {@link ExternalMovement#EXTERNAL_MOVEMENT_NS}
+		 * namespace
+		 */
+		private Trace(String fileName, Settings s) {
+			this.nrofPreload = 10;
+			if (s.contains(NROF_PRELOAD_S)) {
+				nrofPreload = s.getInt(NROF_PRELOAD_S);
+				if (nrofPreload <= 0) {
+					nrofPreload = 1;
+				}
+			}
+
+			initLocations = new ArrayList<Tuple<String, Coord>>();
+			File file = new File(fileName);
+			if (BinaryMovementReader.isBinaryMovementFile(file)) {
+				int readAhead = s.contains(READ_AHEAD_S) ?
+						s.getInt(READ_AHEAD_S) : DEF_READ_AHEAD;
+				binaryReader = new BinaryMovementReader(file, readAhead);
+				indexMapping = new ArrayList<ExternalMovement>();
+				initIndexes = new ArrayList<Integer>();
+				lastTime = -1;
+				if (binaryReader.next()) {
+					lastTime = binaryReader.getTime();
+					for (int i = 0, n = binaryReader.getCount(); i < n; i++) {
+						int index = binaryReader.getIndex(i);
+						initLocations.add(new Tuple<String, Coord>(
+								binaryReader.getId(index), new Coord(
+								binaryReader.getX(i), binaryReader.getY(i))));
+						initIndexes.add(index);
+					}
+				}
+				minX = binaryReader.getMinX();
+				maxX = binaryReader.getMaxX();
+				minY = binaryReader.getMinY();
+				maxY = binaryReader.getMaxY();
+			} else {
+				reader = new ExternalMovementReader(fileName);
+				idMapping = new HashMap<String, ExternalMovement>();
+				initLocations = reader.readNextMovements();
+				lastTime = reader.getLastTimeStamp();
+				minX = reader.getMinX();
+				maxX = reader.getMaxX();
+				minY = reader.getMinY();
+				maxY = reader.getMaxY();
+			}
+
+			initTime = lastTime;
+			samplingInterval = -1;
+			lastPreloadTime = -1;
+			nextInit = 0;
+		}
+
+		/**
+		 * Gives the next initial location (and its id) to a node
+		 * @param em The movement model of the node
+		 * @return True if the node got a location, false if there was no
+		 * location data left for it
+		 */
+		private boolean assignNode(ExternalMovement em) {
+			if (nextInit >= initLocations.size()) {
+				return false;
+			}
+
+			Tuple<String, Coord> initLoc = initLocations.get(nextInit);
+			em.intialLocation = em.latestLocation = initLoc.getValue();
+			em.latestPathStartTime = initTime;
+			em.isActive = true;
+
+			// puts the new model to model map for later updates
+			if (binaryReader != null) {
+				int index = initIndexes.get(nextInit);
+				while (indexMapping.size() <= index) {
+					indexMapping.add(null);
+				}
+				indexMapping.set(index, em);
+			} else {
+				idMapping.put(initLoc.getKey(), em);
+			}
+			nextInit++;
+			return true;
+		}
+
+		/**
+		 * Checks if more paths should be preloaded and preloads them if
+		 * needed.
+		 */
+		private void checkPathNeed() {
+			if (samplingInterval == -1) { // first preload
+				lastPreloadTime = readMorePaths();
+			}
+
+			if (!Double.isNaN(lastPreloadTime) && SimClock.getTime() >=
+					lastPreloadTime - (samplingInterval * MIN_AHEAD_INTERVALS)) {
+				for (int i=0; i < nrofPreload &&
+						!Double.isNaN(lastPreloadTime); i++) {
+					lastPreloadTime = readMorePaths();
+				}
+			}
+		}
+
+		/**
+		 * Reads paths for the next time instance from the reader
+		 * @return The time stamp of the reading or Double.NaN if no movements
+		 * were read.
+		 */
+		private double readMorePaths() {
+			if (binaryReader != null) {
+				return readMoreBinaryPaths();
+			}
+
+			List<Tuple<String, Coord>> list = reader.readNextMovements();
+			lastTime = reader.getLastTimeStamp();
+
+			if (samplingInterval == -1) {
+				samplingInterval = lastTime - initTime;
+			}
+
+			for (Tuple<String, Coord> t : list) {
+				ExternalMovement em = idMapping.get(t.getKey());
+				if (em != null) { // skip unknown IDs, i.e. IDs not mentioned in...
+					// ...init phase or if there are more IDs than nodes
+					em.addLocation(t.getValue(), lastTime);
+				}
+			}
+
+			if (list.size() > 0) {
+				return lastTime;
+			}
+			else {
+				return Double.NaN;
+			}
+		}
+
+		/**
+		 * Reads paths for the next time instance from the binary reader
+		 * @return The time stamp of the reading or Double.NaN if no movements
+		 * were read.
+		 */
+		private double readMoreBinaryPaths() {
+			int count = 0;
+			if (binaryReader.next()) {
+				lastTime = binaryReader.getTime();
+				count = binaryReader.getCount();
+			}
+
+			if (samplingInterval == -1) {
+				samplingInterval = lastTime - initTime;
+			}
+
+			int nrofMapped = indexMapping.size();
+			for (int i = 0; i < count; i++) {
+				int index = binaryReader.getIndex(i);
+				ExternalMovement em = index < nrofMapped ?
+						indexMapping.get(index) : null;
+				if (em != null) { // skip unknown IDs
+					em.addLocation(new Coord(binaryReader.getX(i),
+							binaryReader.getY(i)), lastTime);
+				}
+			}
+
+			if (count > 0) {
+				return lastTime;
+			}
+			else {
+				return Double.NaN;
+			}
+		}
+
+		/**
+		 * Stops the background decoding of a binary file (if any)
+		 */
+		private void close() {
+			if (binaryReader != null) {
+				binaryReader.close();
+			}
+		}
 	}
 
 }
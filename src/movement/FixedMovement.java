@@ -29,6 +29,7 @@ import core.*;
  */
 public class FixedMovement extends MapBasedMovement
 {
+	private static final long serialVersionUID = 1L;
 	/** Path to a file containing locations -setting id {@value} */
 	public static final String LOCATIONS_FILE_SETTING = "locationsFile";
 	/** Number of locations files -setting id {@value} */
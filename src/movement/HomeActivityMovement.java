@@ -25,6 +25,7 @@ import core.SimClock;
  * @author Frans Ekman
  */
 public class HomeActivityMovement extends MapBasedMovement {
+	private static final long serialVersionUID = 1L;
 
 	private static final int WALKING_HOME_MODE = 0;
 	private static final int AT_HOME_MODE = 1;
@@ -29,6 +29,7 @@ import core.SimError;
  * roads of a SimMap. 
  */
 public class MapBasedMovement extends MovementModel implements SwitchableMovement {
+	private static final long serialVersionUID = 1L;
 	/** sim map for the model */
 	private SimMap map = null;
 	/** node where the last path ended or node next to initial placement */
@@ -396,6 +397,11 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		return cachedMap;
 	}
 	
+	@Override
+	public boolean isConcurrentlyReplicable() {
+		return getClass() == MapBasedMovement.class;
+	}
+
 	@Override
 	public MapBasedMovement replicate() {
 		return new MapBasedMovement(this);
@@ -20,6 +20,7 @@ import core.Settings;
  * different type of routes; see {@link #ROUTE_TYPE_S}.
  */
 public class MapRouteMovement extends MapBasedMovement {
+	private static final long serialVersionUID = 1L;
 
 	/** Per node group setting used for selecting a route file ({@value}) */
 	public static final String ROUTE_FILE_S = "routeFile";
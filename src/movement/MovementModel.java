@@ -4,6 +4,8 @@
  */
 package movement;
 
+import java.io.Serializable;
+import java.util.HashMap;
 import java.util.Random;
 
 import core.Coord;
@@ -23,7 +25,8 @@ import core.SimError;
  * {@link #getInitialLocation()} and {@link #getPath()} are worthwhile to 
  * override.</P>
  */
-public abstract class MovementModel {
+public abstract class MovementModel implements Serializable {
+	private static final long serialVersionUID = 1L;
 	/** node's speed CSV (min, max) -setting id ({@value})*/
 	public static final String SPEED = "speed";
 	/** node's wait time CSV (min, max) -setting id ({@value})*/
@@ -43,7 +46,15 @@ public abstract class MovementModel {
 	public static final String RNG_SEED = "rngSeed";
 	
 	/** common rng for all movement models in the simulation */
-	protected static Random rng; 
+	private static Random sharedRng;
+
+	/** rng of this movement model; the common rng unless the model has
+	 * its own random stream (see {@link core.RandomStreams}) */
+	protected Random rng;
+	/** rng for the models that are being replicated by
+	 * {@link #replicate(Random)} (in the current thread) */
+	private static final ThreadLocal<Random> replicaRng =
+		new ThreadLocal<Random>();
 	
 	private ActivenessHandler ah;
 		
@@ -87,6 +98,7 @@ public abstract class MovementModel {
 	 */
 	public MovementModel() {
 		super();
+		this.rng = sharedRng;
 	}
 	
 	/**
@@ -120,6 +132,8 @@ public abstract class MovementModel {
 		minWaitTime = times[0];
 		maxWaitTime = times[1];
 		checkMinAndMaxSetting(WAIT_TIME,minWaitTime,maxWaitTime);
+
+		this.rng = sharedRng;
 		
 		settings.setNameSpace(MOVEMENT_MODEL_NS);
 		int [] worldSize = settings.getCsvInts(WORLD_SIZE,2);
@@ -143,6 +157,8 @@ public abstract class MovementModel {
 		this.maxY = mm.maxY;
 		this.ah = mm.ah;
 		this.comBus = null;
+		Random replica = replicaRng.get();
+		this.rng = (replica != null ? replica : mm.rng);
 	}
 		
 	/**
@@ -249,6 +265,43 @@ public abstract class MovementModel {
 	 * @return A new movement model with the same settings as this model
 	 */
 	public abstract MovementModel replicate();
+
+	/**
+	 * Returns true if replicates of this model can be created, and their
+	 * initial locations drawn, in several threads at the same time (when
+	 * every replicate gets its own random number generator with
+	 * {@link #replicate(Random)}). That requires that the copy constructor
+	 * and {@link #getInitialLocation()} only read the prototype and the
+	 * objects shared with it. Models that fulfill this override the method.
+	 * Since subclasses don't necessarily fulfill it, the overriding methods
+	 * check the exact class of the model.
+	 * @return false (by default)
+	 * @see core.SimScenario
+	 */
+	public boolean isConcurrentlyReplicable() {
+		return false;
+	}
+
+	/**
+	 * Creates a replicate of the movement model that uses the given random
+	 * number generator instead of this model's generator. The generator is
+	 * given to all the movement models that are copied during the call
+	 * (also the sub-models of e.g. {@link ExtendedMovementModel}s), so
+	 * everything they draw, also in their copy constructors, comes from it.
+	 * Helper objects that the replicates share with the prototype keep
+	 * their own generators.
+	 * @param random The random number generator of the replicate
+	 * @return A new movement model with the same settings as this model
+	 * @see core.RandomStreams
+	 */
+	public MovementModel replicate(Random random) {
+		replicaRng.set(random);
+		try {
+			return replicate();
+		} finally {
+			replicaRng.remove();
+		}
+	}
 	
 	/**
 	 * Resets all static fields to default values
@@ -257,11 +310,38 @@ public abstract class MovementModel {
 		Settings s = new Settings(MOVEMENT_MODEL_NS);
 		if (s.contains(RNG_SEED)) {
 			int seed = s.getInt(RNG_SEED);
-			rng = new Random(seed);
+			sharedRng = new Random(seed);
 		}
 		else {
-			rng = new Random(0);
+			sharedRng = new Random(0);
 		}
 	}
+
+	/**
+	 * Returns the state that is shared by all movement models: the common
+	 * random number generator and the bus and evening activity control
+	 * systems. Used for checkpointing the movement state of a simulation.
+	 * @return The shared state
+	 * @see #setSharedState(Serializable)
+	 */
+	public static Serializable getSharedState() {
+		return new Object[] {sharedRng, BusControlSystem.getSystems(),
+				EveningActivityControlSystem.getSystems()};
+	}
+
+	/**
+	 * Replaces the state that is shared by all movement models with a state
+	 * returned by {@link #getSharedState()}
+	 * @param state The new shared state
+	 */
+	@SuppressWarnings("unchecked")
+	public static void setSharedState(Serializable state) {
+		Object[] s = (Object[])state;
+		sharedRng = (Random)s[0];
+		BusControlSystem.setSystems(
+				(HashMap<Integer, BusControlSystem>)s[1]);
+		EveningActivityControlSystem.setSystems(
+				(HashMap<Integer, EveningActivityControlSystem>)s[2]);
+	}
 	
 }
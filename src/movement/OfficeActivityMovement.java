@@ -28,6 +28,7 @@ import core.SimClock;
  *
  */
 public class OfficeActivityMovement extends MapBasedMovement {
+	private static final long serialVersionUID = 1L;
 
 	private static final int WALKING_TO_OFFICE_MODE = 0;
 	private static final int AT_OFFICE_MODE = 1;
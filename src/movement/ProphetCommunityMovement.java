@@ -26,6 +26,7 @@ import java.util.Map; // Added import
  * This model is ONLY for the mobile nodes group.
  */
 public class ProphetCommunityMovement extends MovementModel {
+	private static final long serialVersionUID = 1L;
 
     /** Area number for the Gathering Place (G) */
     public static final int GATHERING_AREA = 12;
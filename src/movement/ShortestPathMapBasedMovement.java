@@ -16,6 +16,7 @@ import core.Settings;
  * paths between two random map nodes and Points Of Interest
  */
 public class ShortestPathMapBasedMovement extends MapBasedMovement {
+	private static final long serialVersionUID = 1L;
 	/** the Dijkstra shortest path finder */
 	private DijkstraPathFinder pathFinder;
 
@@ -43,7 +44,9 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement {
 	protected ShortestPathMapBasedMovement(ShortestPathMapBasedMovement mbm) {
 		super(mbm);
 		this.pathFinder = mbm.pathFinder;
-		this.pois = mbm.pois;
+		/* the POIs draw from the prototype's rng; copy them for own rng */
+		this.pois = (rng == mbm.rng ? mbm.pois :
+			new PointsOfInterest(mbm.pois, rng));
 	}
 
 	@Override
@@ -66,6 +69,11 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement {
 		return p;
 	}
 
+	@Override
+	public boolean isConcurrentlyReplicable() {
+		return getClass() == ShortestPathMapBasedMovement.class;
+	}
+
 	@Override
 	public ShortestPathMapBasedMovement replicate() {
 		return new ShortestPathMapBasedMovement(this);
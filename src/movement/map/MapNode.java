@@ -4,6 +4,9 @@
  */
 package movement.map;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.List;
 import java.util.Vector;
 
@@ -14,7 +17,8 @@ import core.SettingsError;
  * A node in a SimMap. Node has a location, 0-n neighbors that it is
  * connected to and possibly a type identifier.
  */
-public class MapNode implements Comparable<MapNode> {
+public class MapNode implements Comparable<MapNode>, Serializable {
+	private static final long serialVersionUID = 1L;
 	/** Smallest valid type of a node: {@value}*/
 	public static final int MIN_TYPE = 1;
 	/** Biggest valid type of a node: {@value} */
@@ -22,7 +26,9 @@ public class MapNode implements Comparable<MapNode> {
 	
 	
 	private Coord location;
-	private Vector<MapNode> neighbors;
+	/** neighbors are serialized by the map (see SimMap) to avoid deep
+	 * recursion in serializing the node graph */
+	private transient Vector<MapNode> neighbors;
 	// bit mask of map node's types or 0 if no type's are defined
 	private int type;
 	
@@ -142,5 +148,11 @@ public class MapNode implements Comparable<MapNode> {
 	public int compareTo(MapNode o) {
 		return this.getLocation().compareTo((o).getLocation());
 	}
+
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		this.neighbors = new Vector<MapNode>();
+	}
 	
 }
@@ -8,6 +8,7 @@ import input.WKTReader;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
@@ -21,7 +22,8 @@ import core.Tuple;
 /**
  * Handler for points of interest data.
  */
-public class PointsOfInterest {
+public class PointsOfInterest implements Serializable {
+	private static final long serialVersionUID = 1L;
 	/** Points Of Interest settings namespace ({@value})*/
 	public static final String POI_NS = "PointsOfInterest";
 	/** Points Of Interest file path -prefix id ({@value})*/
@@ -65,6 +67,20 @@ public class PointsOfInterest {
 		this.rng = rng;
 		readPois(settings);
 	}
+
+	/**
+	 * Copy constructor. The copy has the same POIs and probabilities as
+	 * the prototype but draws its random numbers from another generator.
+	 * @param proto The prototype
+	 * @param rng The random number generator to use
+	 */
+	public PointsOfInterest(PointsOfInterest proto, Random rng) {
+		this.poiLists = proto.poiLists;
+		this.poiProbs = proto.poiProbs;
+		this.map = proto.map;
+		this.okMapNodeTypes = proto.okMapNodeTypes;
+		this.rng = rng;
+	}
 	
 	/**
 	 * Selects a random destination from POIs or all MapNodes. Selecting among
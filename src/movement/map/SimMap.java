@@ -4,8 +4,12 @@
  */
 package movement.map;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -157,6 +161,36 @@ public class SimMap implements Serializable {
 		maxBound = new Coord(maxX, maxY);
 	}
 	
+	/**
+	 * Writes the map and the neighbors of its nodes as indexes to the node
+	 * list, so that serializing doesn't recurse through the node graph
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		Map<MapNode, Integer> indexes = new IdentityHashMap<MapNode, Integer>();
+		for (int i = 0, n = nodes.size(); i < n; i++) {
+			indexes.put(nodes.get(i), i);
+		}
+		for (MapNode node : nodes) {
+			List<MapNode> neighbors = node.getNeighbors();
+			out.writeInt(neighbors.size());
+			for (MapNode neighbor : neighbors) {
+				out.writeInt(indexes.get(neighbor));
+			}
+		}
+	}
+
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		for (MapNode node : nodes) {
+			List<MapNode> neighbors = node.getNeighbors();
+			for (int i = 0, n = in.readInt(); i < n; i++) {
+				neighbors.add(nodes.get(in.readInt()));
+			}
+		}
+	}
+
 	/**
 	 * Returns a String representation of the map
 	 * @return a String representation of the map
@@ -0,0 +1,216 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import core.SimError;
+
+/**
+ * Writer that moves report output off the simulation thread. Text written
+ * to this writer is collected into large chunks on the calling thread and
+ * the full chunks are handed to a dedicated writer thread that encodes (and
+ * possibly compresses) them into the underlying stream. The hand-off queue
+ * is bounded, so a simulation that produces output faster than the disk can
+ * take it is slowed down instead of filling up the heap.
+ * {@link #close()} writes out all pending chunks and waits for the writer
+ * thread to finish, so the file is complete once {@link Report#done()}
+ * returns.
+ */
+public class AsyncReportWriter extends Writer {
+	/** Chunk that tells the writer thread to flush the stream */
+	private static final char[] FLUSH = new char[0];
+	/** Chunk that tells the writer thread to close the stream and exit */
+	private static final char[] CLOSE = new char[0];
+
+	private final BlockingQueue<char[]> queue;
+	private final Thread writerThread;
+	private final int chunkSize;
+	private char[] buffer;
+	private int count;
+	private boolean closed;
+	/** Failure of the writer thread, reported on the next call */
+	private volatile IOException failure;
+
+	/**
+	 * Creates a new asynchronous writer and starts its writer thread.
+	 * @param out The stream where the text is written to
+	 * @param name Name of the output, used for naming the writer thread
+	 * @param chunkSize How many characters are collected before the chunk
+	 * is handed to the writer thread
+	 * @param queueSize How many full chunks may wait for the writer thread
+	 * before writers have to wait
+	 */
+	public AsyncReportWriter(OutputStream out, String name, int chunkSize,
+			int queueSize) {
+		this.chunkSize = chunkSize;
+		this.buffer = new char[chunkSize];
+		this.count = 0;
+		this.closed = false;
+		this.queue = new ArrayBlockingQueue<char[]>(queueSize);
+
+		final Writer target = new OutputStreamWriter(out,
+				Charset.defaultCharset());
+		this.writerThread = new Thread("ReportWriter-" + name) {
+			public void run() {
+				drain(target);
+			}
+		};
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+
+	/**
+	 * Writes chunks from the queue to the target until the close chunk is
+	 * received.
+	 * @param target The writer where the chunks are written to
+	 */
+	private void drain(Writer target) {
+		try {
+			while (true) {
+				char[] chunk = queue.take();
+				if (chunk == CLOSE) {
+					break;
+				}
+				if (failure != null) {
+					continue; // keep consuming so that writers never block
+				}
+				try {
+					if (chunk == FLUSH) {
+						target.flush();
+					} else {
+						target.write(chunk);
+					}
+				} catch (IOException e) {
+					failure = e;
+				}
+			}
+		} catch (InterruptedException e) {
+			failure = new IOException("Report writer interrupted", e);
+		} finally {
+			try {
+				target.close();
+			} catch (IOException e) {
+				if (failure == null) {
+					failure = e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Hands a chunk to the writer thread, waiting for space in the queue
+	 * if necessary.
+	 * @param chunk The chunk to enqueue
+	 */
+	private void enqueue(char[] chunk) throws IOException {
+		checkFailure();
+		try {
+			queue.put(chunk);
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while writing report", e);
+		}
+	}
+
+	/**
+	 * Hands the current (partial) chunk to the writer thread
+	 */
+	private void handOff() throws IOException {
+		if (count == 0) {
+			return;
+		}
+		char[] chunk = (count == buffer.length) ? buffer :
+			Arrays.copyOf(buffer, count);
+		enqueue(chunk);
+		buffer = new char[chunkSize];
+		count = 0;
+	}
+
+	private void checkFailure() throws IOException {
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Writer closed");
+		}
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		ensureOpen();
+		while (len > 0) {
+			int n = Math.min(len, buffer.length - count);
+			System.arraycopy(cbuf, off, buffer, count, n);
+			count += n;
+			off += n;
+			len -= n;
+			if (count == buffer.length) {
+				handOff();
+			}
+		}
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		ensureOpen();
+		while (len > 0) {
+			int n = Math.min(len, buffer.length - count);
+			str.getChars(off, off + n, buffer, count);
+			count += n;
+			off += n;
+			len -= n;
+			if (count == buffer.length) {
+				handOff();
+			}
+		}
+	}
+
+	/**
+	 * Hands all buffered text to the writer thread and asks it to flush the
+	 * underlying stream. Doesn't wait for the flush to happen.
+	 */
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		handOff();
+		enqueue(FLUSH);
+	}
+
+	/**
+	 * Writes out all buffered text, closes the underlying stream and waits
+	 * for the writer thread to finish.
+	 * @throws SimError if writing the output failed at any point
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		try {
+			if (failure == null) {
+				handOff();
+			}
+			queue.put(CLOSE);
+			writerThread.join();
+			checkFailure();
+		} catch (IOException e) {
+			throw new SimError("Couldn't write report output\n" +
+					e.getMessage(), e);
+		} catch (InterruptedException e) {
+			throw new SimError("Interrupted while closing report output", e);
+		}
+	}
+}
@@ -67,5 +67,13 @@ public class ConnectivityDtnsim2Report extends Report
 			return h2 + " <-> " + h1;
 		}
 	}
-	
+
+	/**
+	 * Returns true; only the event times and the host addresses are used
+	 * @return true
+	 */
+	@Override
+	public boolean supportsAsyncEvents() {
+		return true;
+	}
 }
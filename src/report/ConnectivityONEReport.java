@@ -65,5 +65,13 @@ public class ConnectivityONEReport extends Report
 		    return h2.getAddress() + " " + h1.getAddress();
 		}
 	}
-	
+
+	/**
+	 * Returns true; only the event times and the host addresses are used
+	 * @return true
+	 */
+	@Override
+	public boolean supportsAsyncEvents() {
+		return true;
+	}
 }
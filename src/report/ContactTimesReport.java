@@ -4,8 +4,8 @@
  */
 package report;
 
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Vector;
 
 import core.ConnectionListener;
 import core.DTNHost;
@@ -19,7 +19,10 @@ import core.Settings;
  */
 public class ContactTimesReport extends Report implements ConnectionListener {
 	protected HashMap<ConnectionInfo, ConnectionInfo> connections;
-	private Vector<Integer> nrofContacts;
+	/** Contact counts per granularity-sized time interval */
+	private int[] nrofContacts;
+	/** How many intervals of {@link #nrofContacts} are in use */
+	private int nrofIntervals;
 	
 	/** Granularity -setting id ({@value}). Defines how many simulated seconds
 	 * are grouped in one reported interval. */
@@ -46,7 +49,8 @@ public class ContactTimesReport extends Report implements ConnectionListener {
 	protected void init() {
 		super.init();
 		this.connections = new HashMap<ConnectionInfo,ConnectionInfo>();
-		this.nrofContacts = new Vector<Integer>();
+		this.nrofContacts = new int[16];
+		this.nrofIntervals = 0;
 	}
 		
 	public void hostsConnected(DTNHost host1, DTNHost host2) {
@@ -90,31 +94,25 @@ public class ContactTimesReport extends Report implements ConnectionListener {
 	protected void increaseTimeCount(double time) {
 		int index = (int)(time/this.granularity);
 		
-		if (index >= this.nrofContacts.size()) {
-			/* if biggest index so far, fill array with nulls up to 
-			  index+2 to keep the last time count always zero */
-			this.nrofContacts.setSize(index + 2);
+		if (index >= this.nrofIntervals) {
+			/* if biggest index so far, use intervals up to index+2 to keep
+			  the last time count always zero */
+			this.nrofIntervals = index + 2;
+			if (this.nrofIntervals > this.nrofContacts.length) {
+				this.nrofContacts = Arrays.copyOf(this.nrofContacts,
+					Math.max(this.nrofIntervals, 2 * this.nrofContacts.length));
+			}
 		}
 		
-		Integer curValue = this.nrofContacts.get(index); 
-		if (curValue == null) { // no value found -> put the first
-			this.nrofContacts.set(index, 1); 
-		}
-		else { // value found -> increase the number by one
-			this.nrofContacts.set(index, curValue+1);
-		}
+		this.nrofContacts[index]++;
 	}
 	
 	@Override
 	public void done() {
 		
-		for (int i=0, n=this.nrofContacts.size(); i<n; i++) {
-			Integer contacts = nrofContacts.get(i); 
-			if (contacts == null) {
-				contacts = 0;
-			}
+		for (int i=0; i<this.nrofIntervals; i++) {
 			//     time(interval)             nrofContacts
-			write((i*this.granularity) + " " + contacts);
+			write((i*this.granularity) + " " + this.nrofContacts[i]);
 		}
 		
 		super.done();
@@ -189,16 +187,15 @@ public class ContactTimesReport extends Report implements ConnectionListener {
 		 * @return Hash code
 		 */
 		public int hashCode() {
-			String hostString;
+			int a1 = this.h1.getAddress();
+			int a2 = this.h2.getAddress();
 
-			if (this.h1.compareTo(this.h2) < 0) {
-				hostString = h1.toString() + "-" + h2.toString();
+			if (a1 < a2) {
+				return 31 * a1 + a2;
 			}
 			else {
-				hostString = h2.toString() + "-" + h1.toString();
+				return 31 * a2 + a1;
 			}
-			
-			return hostString.hashCode();
 		}
 		
 		/**
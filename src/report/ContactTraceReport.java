@@ -0,0 +1,118 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import core.Connection;
+import core.ConnectionListener;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.SimScenario;
+import core.World;
+import input.ContactTraceWriter;
+
+/**
+ * Records the connection changes of the simulation into a binary contact
+ * trace that can be replayed in later runs of the same scenario with the
+ * {@link SimScenario#CONTACT_TRACE_S} setting. Replaying skips the
+ * connectivity detection (and, with {@link SimScenario#SIM_MOVEMENT_S}
+ * turned off, also the movement) but gives the routers the same connection
+ * ups and downs in the same order, so e.g. routers can be compared on
+ * identical contacts at a fraction of the cost of a full run.
+ * <P>The trace is written next to the report's text output, with
+ * {@value input.ContactTraceWriter#TRACE_EXT} extension, and the text output
+ * gets the number of recorded changes. Only connection changes made by host
+ * updates are recorded; connection changes of external events (e.g.
+ * connection events of an external events file) are not, since they are
+ * replayed by the events themselves. Warm up setting is ignored.</P>
+ */
+public class ContactTraceReport extends Report implements ConnectionListener {
+	private World world;
+	private ContactTraceWriter writer;
+	private String traceFileName;
+	/** connections that have been recorded as up */
+	private Set<Connection> upConnections;
+	private int nrofUps;
+	private int nrofDowns;
+
+	/**
+	 * Constructor.
+	 */
+	public ContactTraceReport() {
+		init();
+	}
+
+	@Override
+	protected void init() {
+		super.init();
+		SimScenario scen = SimScenario.getInstance();
+		this.world = scen.getWorld();
+
+		String name = getOutputFileName();
+		if (name.endsWith(OUT_SUFFIX)) {
+			name = name.substring(0, name.length() - OUT_SUFFIX.length());
+		}
+		this.traceFileName = name + ContactTraceWriter.TRACE_EXT;
+		this.writer = new ContactTraceWriter(traceFileName, scen.getHosts());
+		this.upConnections = new HashSet<Connection>();
+		this.nrofUps = 0;
+		this.nrofDowns = 0;
+	}
+
+	public void hostsConnected(DTNHost h1, DTNHost h2) {
+		if (world.getUpdatingHost() != h1) {
+			return; // not made by a host update
+		}
+
+		// the new connection is the latest one of one of h1's interfaces
+		for (NetworkInterface ni : h1.getInterfaces()) {
+			List<Connection> cons = ni.getConnections();
+			if (cons.isEmpty()) {
+				continue;
+			}
+			Connection con = cons.get(cons.size() - 1);
+			if (con.isUp() && con.getOtherNode(h1) == h2 &&
+					upConnections.add(con)) {
+				record(ni, con, true);
+				nrofUps++;
+				return;
+			}
+		}
+	}
+
+	public void hostsDisconnected(DTNHost h1, DTNHost h2) {
+		if (world.getUpdatingHost() != h1) {
+			return;
+		}
+
+		// connection that is being torn down is already marked down
+		for (NetworkInterface ni : h1.getInterfaces()) {
+			for (Connection con : ni.getConnections()) {
+				if (!con.isUp() && con.getOtherNode(h1) == h2 &&
+						upConnections.remove(con)) {
+					record(ni, con, false);
+					nrofDowns++;
+					return;
+				}
+			}
+		}
+	}
+
+	private void record(NetworkInterface ni, Connection con, boolean up) {
+		writer.record(world.getHostUpdateRound(), getSimTime(), ni,
+				con.getOtherInterface(ni), up);
+	}
+
+	@Override
+	public void done() {
+		writer.close();
+		write("Contact trace: " + traceFileName);
+		write("ups: " + nrofUps);
+		write("downs: " + nrofDowns);
+		super.done();
+	}
+}
@@ -85,4 +85,14 @@ public class EventLogReport extends Report
 	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
 		processEvent(StandardEventsReader.SEND, from, to, m, null);		
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Returns true; only the event times and the names of the hosts and messages are
+	 * logged
+	 * @return true
+	 */
+	@Override
+	public boolean supportsAsyncEvents() {
+		return true;
+	}
+}
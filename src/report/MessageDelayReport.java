@@ -4,9 +4,6 @@
  */
 package report;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import core.DTNHost;
 import core.Message;
 import core.MessageListener;
@@ -15,12 +12,16 @@ import core.MessageListener;
  * Reports delivered messages' delays (one line per delivered message)
  * and cumulative delivery probability sorted by message delays.
  * Ignores the messages that were created during the warm up period.
+ * If more messages are delivered than {@link Report#STATS_EXACT_LIMIT_S},
+ * the delays are grouped by the approximate quantile sketch and one line is
+ * written per group (with relative delay accuracy of
+ * {@link Report#STATS_ACCURACY_S}).
  */
 public class MessageDelayReport extends Report implements MessageListener {
 	public static final String HEADER =
 	    "# messageDelay  cumulativeProbability";
 	/** all message delays */
-	private List<Double> delays;
+	private SampleStats delays;
 	private int nrofCreated;
 	
 	/**
@@ -34,7 +35,7 @@ public class MessageDelayReport extends Report implements MessageListener {
 	public void init() {
 		super.init();
 		write(HEADER);
-		this.delays = new ArrayList<Double>();
+		this.delays = newSampleStats();
 		this.nrofCreated = 0;
 	}
 	
@@ -57,18 +58,29 @@ public class MessageDelayReport extends Report implements MessageListener {
 
 	@Override
 	public void done() {
-		if (delays.size() == 0) {
+		if (delays.getCount() == 0) {
 			write("# no messages delivered in sim time "+format(getSimTime()));
 			super.done();
 			return;
 		}
 		double cumProb = 0; // cumulative probability
 		
-		java.util.Collections.sort(delays);
-		
-		for (int i=0; i < delays.size(); i++) {
-			cumProb += 1.0/nrofCreated;
-			write(format(delays.get(i)) + " " + format(cumProb));
+		if (delays.isExact()) {
+			for (double delay : delays.getSortedValues()) {
+				cumProb += 1.0/nrofCreated;
+				write(format(delay) + " " + format(cumProb));
+			}
+		}
+		else {
+			QuantileSketch sketch = delays.getSketch();
+			for (int i=0, n=sketch.getNrofBuckets(); i < n; i++) {
+				long count = sketch.getBucketCount(i);
+				if (count > 0) {
+					cumProb += (1.0 * count)/nrofCreated;
+					write(format(sketch.getBucketValue(i)) + " " + 
+							format(cumProb));
+				}
+			}
 		}
 		super.done();
 	}
@@ -78,4 +90,12 @@ public class MessageDelayReport extends Report implements MessageListener {
 	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {}
 	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {}
 
+	/**
+	 * Returns true; the delays only depend on the event and creation times
+	 * @return true
+	 */
+	@Override
+	public boolean supportsAsyncEvents() {
+		return true;
+	}
 }
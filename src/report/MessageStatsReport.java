@@ -4,14 +4,10 @@
  */
 package report;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
 import core.DTNHost;
 import core.Message;
 import core.MessageListener;
+import core.SimScenario;
 
 /**
  * Report for generating different kind of total statistics about message
@@ -20,13 +16,18 @@ import core.MessageListener;
  * <P><strong>Note:</strong> if some statistics could not be created (e.g.
  * overhead ratio if no messages were delivered) "NaN" is reported for
  * double values and zero for integer median(s).
+ * <P>The statistics are collected with {@link SampleStats}, so very long
+ * runs only keep a bounded amount of data; see
+ * {@link Report#STATS_EXACT_LIMIT_S} and {@link Report#STATS_ACCURACY_S}.
+ * <P>The report can also stop the run once the chosen metrics have
+ * converged (see {@link StoppingRule}); the time when that happened is
+ * then reported as converged_at.
  */
 public class MessageStatsReport extends Report implements MessageListener {
-	private Map<String, Double> creationTimes;
-	private List<Double> latencies;
-	private List<Integer> hopCounts;
-	private List<Double> msgBufferTime;
-	private List<Double> rtt; // round trip times
+	private SampleStats latencies;
+	private SampleStats hopCounts;
+	private SampleStats msgBufferTime;
+	private SampleStats rtt; // round trip times
 	
 	private int nrofDropped;
 	private int nrofRemoved;
@@ -37,6 +38,8 @@ public class MessageStatsReport extends Report implements MessageListener {
 	private int nrofResponseReqCreated;
 	private int nrofResponseDelivered;
 	private int nrofDelivered;
+	/** the convergence based stopping rule (null if not used) */
+	private StoppingRule stopRule;
 	
 	/**
 	 * Constructor.
@@ -48,11 +51,10 @@ public class MessageStatsReport extends Report implements MessageListener {
 	@Override
 	protected void init() {
 		super.init();
-		this.creationTimes = new HashMap<String, Double>();
-		this.latencies = new ArrayList<Double>();
-		this.msgBufferTime = new ArrayList<Double>();
-		this.hopCounts = new ArrayList<Integer>();
-		this.rtt = new ArrayList<Double>();
+		this.latencies = newSampleStats();
+		this.msgBufferTime = newSampleStats();
+		this.hopCounts = newSampleStats();
+		this.rtt = newSampleStats();
 		
 		this.nrofDropped = 0;
 		this.nrofRemoved = 0;
@@ -63,6 +65,7 @@ public class MessageStatsReport extends Report implements MessageListener {
 		this.nrofResponseReqCreated = 0;
 		this.nrofResponseDelivered = 0;
 		this.nrofDelivered = 0;
+		this.stopRule = StoppingRule.create(getSettings(), warmupTime);
 	}
 
 	
@@ -70,6 +73,7 @@ public class MessageStatsReport extends Report implements MessageListener {
 		if (isWarmupID(m.getId())) {
 			return;
 		}
+		advanceStoppingRule();
 		
 		if (dropped) {
 			this.nrofDropped++;
@@ -79,6 +83,11 @@ public class MessageStatsReport extends Report implements MessageListener {
 		}
 		
 		this.msgBufferTime.add(getSimTime() - m.getReceiveTime());
+		if (stopRule != null) {
+			stopRule.add(StoppingRule.BUFFER_TIME_SUM,
+					getSimTime() - m.getReceiveTime());
+			stopRule.add(StoppingRule.DELETED, 1);
+		}
 	}
 
 	
@@ -97,10 +106,11 @@ public class MessageStatsReport extends Report implements MessageListener {
 			return;
 		}
 
+		advanceStoppingRule();
+
 		this.nrofRelayed++;
 		if (finalTarget) {
-			this.latencies.add(getSimTime() - 
-				this.creationTimes.get(m.getId()) );
+			this.latencies.add(getSimTime() - m.getCreationTime());
 			this.nrofDelivered++;
 			this.hopCounts.add(m.getHops().size() - 1);
 			
@@ -109,6 +119,23 @@ public class MessageStatsReport extends Report implements MessageListener {
 				this.nrofResponseDelivered++;
 			}
 		}
+
+		if (stopRule != null) {
+			if (finalTarget) {
+				stopRule.add(StoppingRule.DELIVERED, 1);
+				stopRule.add(StoppingRule.LATENCY_SUM,
+						getSimTime() - m.getCreationTime());
+				stopRule.add(StoppingRule.HOP_COUNT_SUM,
+						m.getHops().size() - 1);
+				if (m.isResponse()) {
+					stopRule.add(StoppingRule.RESPONSE_DELIVERED, 1);
+					stopRule.add(StoppingRule.RTT_SUM,
+							getSimTime() - m.getRequest().getCreationTime());
+				}
+			} else {
+				stopRule.add(StoppingRule.RELAYED_ONLY, 1);
+			}
+		}
 	}
 
 
@@ -118,11 +145,29 @@ public class MessageStatsReport extends Report implements MessageListener {
 			return;
 		}
 		
-		this.creationTimes.put(m.getId(), getSimTime());
+		advanceStoppingRule();
+		
 		this.nrofCreated++;
 		if (m.getResponseSize() > 0) {
 			this.nrofResponseReqCreated++;
 		}
+
+		if (stopRule != null) {
+			stopRule.add(StoppingRule.CREATED, 1);
+			if (m.getResponseSize() > 0) {
+				stopRule.add(StoppingRule.RESPONSE_REQ_CREATED, 1);
+			}
+		}
+	}
+
+	/**
+	 * Closes the stopping rule's windows that have ended and requests the
+	 * simulation to stop if the rule is met
+	 */
+	private void advanceStoppingRule() {
+		if (stopRule != null && stopRule.advance(getSimTime())) {
+			SimScenario.getInstance().getWorld().requestStop();
+		}
 	}
 	
 	
@@ -167,16 +212,30 @@ public class MessageStatsReport extends Report implements MessageListener {
 			"\noverhead_ratio: " + format(overHead) + 
 			"\nlatency_avg: " + getAverage(this.latencies) +
 			"\nlatency_med: " + getMedian(this.latencies) + 
-			"\nhopcount_avg: " + getIntAverage(this.hopCounts) +
+			"\nhopcount_avg: " + getAverage(this.hopCounts) +
 			"\nhopcount_med: " + getIntMedian(this.hopCounts) + 
 			"\nbuffertime_avg: " + getAverage(this.msgBufferTime) +
 			"\nbuffertime_med: " + getMedian(this.msgBufferTime) +
 			"\nrtt_avg: " + getAverage(this.rtt) +
 			"\nrtt_med: " + getMedian(this.rtt)
 			;
+		if (stopRule != null) {
+			statsText += "\nconverged_at: " + format(stopRule.getMetTime());
+		}
 		
 		write(statsText);
 		super.done();
 	}
-	
+
+	/**
+	 * Returns true if the stopping rule is not used; the statistics only use
+	 * the event times and the messages' immutable properties. The stopping
+	 * rule must see the events while the simulation runs, so that the run
+	 * always stops at the same point.
+	 * @return true if the stopping rule is not used
+	 */
+	@Override
+	public boolean supportsAsyncEvents() {
+		return this.stopRule == null;
+	}
 }
@@ -86,4 +86,14 @@ public class MovementNs2Report extends Report implements MovementListener {
 		val = val == 0 ? EPSILON : val;
 		return String.format(COORD_FORMAT, val);
 	}
+
+	/**
+	 * Returns true; only the event times, host addresses and the given
+	 * coordinates are used
+	 * @return true
+	 */
+	@Override
+	public boolean supportsAsyncEvents() {
+		return true;
+	}
 }
@@ -0,0 +1,113 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.List;
+
+import core.DTNHost;
+import core.Settings;
+import core.SimProfiler;
+import core.UpdateListener;
+
+/**
+ * Reports where the simulator spends its (wall clock) time. Turns on the
+ * {@link SimProfiler} and writes one line every configurable amount of
+ * simulated seconds. Each line has the simulation time, the wall clock
+ * time since the start of the run (milliseconds), the time spent in each
+ * phase since the previous line (microseconds), the change of each
+ * counter since the previous line and the total number of messages in the
+ * hosts' buffers. The first line is a header naming the columns.
+ */
+public class ProfilingReport extends Report implements UpdateListener {
+	/** Reporting granularity -setting id ({@value}).
+	 * Defines the interval how often (simulated seconds) a new line is
+	 * written. Default is {@value #DEF_GRANULARITY}. */
+	public static final String GRANULARITY = "granularity";
+	/** Default value for the granularity */
+	public static final double DEF_GRANULARITY = 60;
+
+	private final double granularity;
+	private double lastUpdate;
+	private long startNanos;
+	private long[] lastPhaseNanos;
+	private long[] lastCounts;
+
+	/**
+	 * Constructor.
+	 */
+	public ProfilingReport() {
+		Settings settings = getSettings();
+		if (settings.contains(GRANULARITY)) {
+			this.granularity = settings.getDouble(GRANULARITY);
+		}
+		else {
+			this.granularity = DEF_GRANULARITY;
+		}
+		SimProfiler.setEnabled(true);
+		init();
+	}
+
+	@Override
+	protected void init() {
+		super.init();
+		this.lastUpdate = 0;
+		this.startNanos = System.nanoTime();
+		this.lastPhaseNanos = new long[SimProfiler.PHASE_NAMES.length];
+		this.lastCounts = new long[SimProfiler.COUNTER_NAMES.length];
+
+		StringBuilder header = new StringBuilder("# simTime wallMs");
+		for (String phase : SimProfiler.PHASE_NAMES) {
+			header.append(' ').append(phase).append("Us");
+		}
+		for (String counter : SimProfiler.COUNTER_NAMES) {
+			header.append(' ').append(counter);
+		}
+		header.append(" bufferedMessages");
+		write(header.toString());
+	}
+
+	public void updated(List<DTNHost> hosts) {
+		double simTime = getSimTime();
+		if (simTime - lastUpdate >= granularity) {
+			createSnapshot(hosts);
+			this.lastUpdate = simTime - simTime % granularity;
+		}
+	}
+
+	/**
+	 * Writes a line of the phase times and counter changes since the
+	 * previous line
+	 * @param hosts All the hosts in the world
+	 */
+	private void createSnapshot(List<DTNHost> hosts) {
+		StringBuilder line = new StringBuilder();
+		line.append(format(getSimTime())).append(' ');
+		line.append((System.nanoTime() - startNanos) / 1000000);
+
+		for (int i = 0; i < lastPhaseNanos.length; i++) {
+			long nanos = SimProfiler.getPhaseNanos(i);
+			line.append(' ').append((nanos - lastPhaseNanos[i]) / 1000);
+			lastPhaseNanos[i] = nanos;
+		}
+		for (int i = 0; i < lastCounts.length; i++) {
+			long count = SimProfiler.getCount(i);
+			line.append(' ').append(count - lastCounts[i]);
+			lastCounts[i] = count;
+		}
+
+		long buffered = 0;
+		for (DTNHost h : hosts) {
+			buffered += h.getNrofMessages();
+		}
+		line.append(' ').append(buffered);
+
+		write(line.toString());
+	}
+
+	@Override
+	public void done() {
+		write("# " + SimProfiler.getSummary());
+		super.done();
+	}
+}
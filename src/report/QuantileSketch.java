@@ -0,0 +1,210 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch with a relative accuracy guarantee. Values are
+ * counted in logarithmically sized buckets, so any quantile returned by
+ * {@link #getQuantile(double)} is within the configured relative error of
+ * the true sample value. The memory use depends only on the range of the
+ * values and the accuracy, not on the number of values added.
+ * Values smaller than {@link #MIN_INDEXABLE} (including zero and negative
+ * values) are counted in a separate zero bucket.
+ */
+public class QuantileSketch {
+	/** Smallest value that gets its own logarithmic bucket */
+	public static final double MIN_INDEXABLE = 1e-9;
+
+	private final double relativeAccuracy;
+	private final double gamma;
+	private final double logGamma;
+
+	/** Bucket counts; counts[i] is the count of bucket index offset+i */
+	private long[] counts;
+	private int offset;
+	private long zeroCount;
+	private long count;
+
+	/**
+	 * Creates a new, empty sketch.
+	 * @param relativeAccuracy Maximum relative error of the returned
+	 * quantiles (e.g. 0.01 for 1%). Must be between 0 and 1.
+	 */
+	public QuantileSketch(double relativeAccuracy) {
+		if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+			throw new IllegalArgumentException("Invalid relative accuracy " +
+					relativeAccuracy);
+		}
+		this.relativeAccuracy = relativeAccuracy;
+		this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+		this.logGamma = Math.log(gamma);
+		this.counts = new long[0];
+		this.offset = 0;
+		this.zeroCount = 0;
+		this.count = 0;
+	}
+
+	/**
+	 * Returns the relative accuracy of this sketch
+	 * @return the relative accuracy of this sketch
+	 */
+	public double getRelativeAccuracy() {
+		return this.relativeAccuracy;
+	}
+
+	private int bucketIndex(double value) {
+		return (int)Math.ceil(Math.log(value) / logGamma);
+	}
+
+	/**
+	 * Returns the value that represents all the values in a bucket
+	 * @param index Index of the bucket
+	 * @return The representative value
+	 */
+	private double bucketValue(int index) {
+		return 2 * Math.pow(gamma, index) / (gamma + 1);
+	}
+
+	/**
+	 * Makes sure that the bucket array covers the given bucket index
+	 * @param index The index to cover
+	 */
+	private void cover(int index) {
+		if (counts.length == 0) {
+			counts = new long[8];
+			offset = index - 4;
+			return;
+		}
+
+		if (index < offset) {
+			int shift = Math.max(offset - index, counts.length / 2);
+			long[] grown = new long[counts.length + shift];
+			System.arraycopy(counts, 0, grown, shift, counts.length);
+			counts = grown;
+			offset -= shift;
+		} else if (index >= offset + counts.length) {
+			int needed = index - offset + 1;
+			counts = Arrays.copyOf(counts,
+					Math.max(needed, counts.length + counts.length / 2));
+		}
+	}
+
+	/**
+	 * Adds a value to the sketch
+	 * @param value The value to add
+	 */
+	public void add(double value) {
+		add(value, 1);
+	}
+
+	/**
+	 * Adds a value to the sketch multiple times
+	 * @param value The value to add
+	 * @param times How many times the value is added
+	 */
+	public void add(double value, long times) {
+		if (value < MIN_INDEXABLE) {
+			zeroCount += times;
+		} else {
+			int index = bucketIndex(value);
+			cover(index);
+			counts[index - offset] += times;
+		}
+		count += times;
+	}
+
+	/**
+	 * Adds all the values of another sketch to this sketch. The other
+	 * sketch must have the same relative accuracy.
+	 * @param other The sketch to merge
+	 */
+	public void merge(QuantileSketch other) {
+		if (other.gamma != this.gamma) {
+			throw new IllegalArgumentException("Can't merge sketches with " +
+					"different accuracies");
+		}
+		for (int i = 0; i < other.counts.length; i++) {
+			if (other.counts[i] > 0) {
+				int index = other.offset + i;
+				cover(index);
+				counts[index - offset] += other.counts[i];
+			}
+		}
+		zeroCount += other.zeroCount;
+		count += other.count;
+	}
+
+	/**
+	 * Returns the number of values added to the sketch
+	 * @return the number of values added to the sketch
+	 */
+	public long getCount() {
+		return this.count;
+	}
+
+	/**
+	 * Returns the (approximate) value at the given rank, i.e., the value
+	 * that would be at the given index if all values were sorted.
+	 * @param rank The rank (0 ... count-1)
+	 * @return The value at the rank or NaN if the sketch is empty
+	 */
+	public double getValueAtRank(long rank) {
+		if (count == 0) {
+			return Double.NaN;
+		}
+		rank = Math.max(0, Math.min(rank, count - 1));
+
+		long seen = zeroCount;
+		if (rank < seen) {
+			return 0;
+		}
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (rank < seen) {
+				return bucketValue(offset + i);
+			}
+		}
+		return bucketValue(offset + counts.length - 1);
+	}
+
+	/**
+	 * Returns the (approximate) q-quantile of the values
+	 * @param q The quantile (0 ... 1)
+	 * @return The quantile or NaN if the sketch is empty
+	 */
+	public double getQuantile(double q) {
+		return getValueAtRank((long)(q * count));
+	}
+
+	/**
+	 * Returns the number of buckets, including the zero bucket, that can
+	 * be accessed with {@link #getBucketValue(int)} and
+	 * {@link #getBucketCount(int)}. The buckets are in ascending order of
+	 * value and may be empty.
+	 * @return The number of buckets
+	 */
+	public int getNrofBuckets() {
+		return counts.length + 1;
+	}
+
+	/**
+	 * Returns the value that represents the values in the given bucket
+	 * @param bucket Index of the bucket (0 is the zero bucket)
+	 * @return The representative value
+	 */
+	public double getBucketValue(int bucket) {
+		return bucket == 0 ? 0 : bucketValue(offset + bucket - 1);
+	}
+
+	/**
+	 * Returns the number of values in the given bucket
+	 * @param bucket Index of the bucket (0 is the zero bucket)
+	 * @return The number of values
+	 */
+	public long getBucketCount(int bucket) {
+		return bucket == 0 ? zeroCount : counts[bucket - 1];
+	}
+}
@@ -4,19 +4,25 @@
  */
 package report;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.zip.GZIPOutputStream;
 
 import core.Settings;
 import core.SimClock;
 import core.SimError;
+import core.SettingsError;
 import core.SimScenario;
 
 /**
@@ -53,6 +59,58 @@ public abstract class Report {
 	public static final String OUT_SUFFIX = ".txt";
 	/** Suffix for reports that are created on n second intervals */
 	public static final String INTERVALLED_FORMAT ="%04d" + OUT_SUFFIX; 
+	/** Asynchronous output -setting id ({@value}). Boolean valued. If true,
+	 * the output is written to the file by a separate writer thread (see
+	 * {@link AsyncReportWriter}). Default is false. */
+	public static final String ASYNC_OUTPUT_S = "asyncOutput";
+	/** Size (characters) of the chunks handed to the asynchronous writer
+	 * thread -setting id ({@value}). Default is
+	 * {@value #DEF_ASYNC_CHUNK_SIZE}. */
+	public static final String ASYNC_CHUNK_SIZE_S = "asyncChunkSize";
+	/** How many chunks may wait for the asynchronous writer thread before
+	 * the simulation has to wait for it -setting id ({@value}). Default is
+	 * {@value #DEF_ASYNC_QUEUE_SIZE}. */
+	public static final String ASYNC_QUEUE_SIZE_S = "asyncQueueSize";
+	/** Asynchronous events -setting id ({@value}). Boolean valued. If true
+	 * and the report supports it ({@link #supportsAsyncEvents()}), the
+	 * report receives its connection, message and movement events on a
+	 * separate thread (see {@link ReportEventBus}). Reports that don't
+	 * support it always receive their events synchronously. Default is
+	 * false. */
+	public static final String ASYNC_EVENTS_S = "asyncEvents";
+	/** How many events may wait for the report event thread before the
+	 * simulation has to wait for it -setting id ({@value}). Default is
+	 * {@value #DEF_ASYNC_EVENTS_BUFFER_SIZE}. */
+	public static final String ASYNC_EVENTS_BUFFER_S = "asyncEventsBufferSize";
+	/** Output compression -setting id ({@value}). Supported values are
+	 * "none" and {@value #GZIP_COMPRESSION}. Compressed output files get
+	 * the {@value #GZIP_SUFFIX} suffix. Default is "none". */
+	public static final String COMPRESSION_S = "compression";
+	/** Value of {@link #COMPRESSION_S} for gzip compression */
+	public static final String GZIP_COMPRESSION = "gzip";
+	/** Suffix of gzip compressed report files */
+	public static final String GZIP_SUFFIX = ".gz";
+	/** Default value for {@link #ASYNC_CHUNK_SIZE_S} */
+	public static final int DEF_ASYNC_CHUNK_SIZE = 65536;
+	/** Default value for {@link #ASYNC_QUEUE_SIZE_S} */
+	public static final int DEF_ASYNC_QUEUE_SIZE = 16;
+	/** Default value for {@link #ASYNC_EVENTS_BUFFER_S} */
+	public static final int DEF_ASYNC_EVENTS_BUFFER_SIZE = 65536;
+	/** How many values statistics keep exactly before switching to an
+	 * approximate quantile sketch -setting id ({@value}). Only affects
+	 * reports that use {@link SampleStats}. Default is
+	 * {@value #DEF_STATS_EXACT_LIMIT}. */
+	public static final String STATS_EXACT_LIMIT_S = "statsExactLimit";
+	/** Relative accuracy of the approximate quantiles (e.g. medians) of
+	 * statistics that have more values than {@link #STATS_EXACT_LIMIT_S}
+	 * -setting id ({@value}). Default is {@value #DEF_STATS_ACCURACY}. */
+	public static final String STATS_ACCURACY_S = "statsAccuracy";
+	/** Default value for {@link #STATS_EXACT_LIMIT_S} */
+	public static final int DEF_STATS_EXACT_LIMIT = 100000;
+	/** Default value for {@link #STATS_ACCURACY_S} */
+	public static final double DEF_STATS_ACCURACY = 0.001;
+	/** Size of the output buffers (bytes) */
+	private static final int OUTPUT_BUFFER_SIZE = 65536;
 	/** The print writer used to write output. See {@link #write(String)} */
 	protected PrintWriter out;
 	/** String value for values that could not be calculated */
@@ -67,6 +125,15 @@ public abstract class Report {
 	private double lastReportTime;
 	private String outFileName;
 	private String scenarioName;
+	private boolean asyncOutput;
+	private int asyncChunkSize;
+	private int asyncQueueSize;
+	private boolean asyncEvents;
+	/** Time of the event that is being delivered asynchronously, or NaN */
+	private double eventTime;
+	private boolean gzipOutput;
+	private int statsExactLimit;
+	private double statsAccuracy;
 	
 	/**
 	 * Constructor.
@@ -78,6 +145,7 @@ public abstract class Report {
 		this.lastOutputSuffix = 0;
 		this.outputInterval = -1;
 		this.warmupIDs = null;
+		this.eventTime = Double.NaN;
 
 		Settings settings = new Settings();
 		scenarioName = settings.valueFillString(settings.getSetting(
@@ -106,6 +174,39 @@ public abstract class Report {
 		else {
 			precision = DEF_PRECISION;
 		}
+
+		this.asyncOutput = settings.contains(ASYNC_OUTPUT_S) &&
+			settings.getBoolean(ASYNC_OUTPUT_S);
+		this.asyncChunkSize = settings.contains(ASYNC_CHUNK_SIZE_S) ?
+			settings.getInt(ASYNC_CHUNK_SIZE_S) : DEF_ASYNC_CHUNK_SIZE;
+		this.asyncQueueSize = settings.contains(ASYNC_QUEUE_SIZE_S) ?
+			settings.getInt(ASYNC_QUEUE_SIZE_S) : DEF_ASYNC_QUEUE_SIZE;
+		if (asyncChunkSize < 1 || asyncQueueSize < 1) {
+			throw new SettingsError("Invalid asynchronous output settings " +
+					"for report " + this.getClass().getSimpleName());
+		}
+
+		this.asyncEvents = settings.contains(ASYNC_EVENTS_S) &&
+			settings.getBoolean(ASYNC_EVENTS_S);
+
+		this.statsExactLimit = settings.contains(STATS_EXACT_LIMIT_S) ?
+			settings.getInt(STATS_EXACT_LIMIT_S) : DEF_STATS_EXACT_LIMIT;
+		this.statsAccuracy = settings.contains(STATS_ACCURACY_S) ?
+			settings.getDouble(STATS_ACCURACY_S) : DEF_STATS_ACCURACY;
+		if (statsExactLimit < 0 || statsAccuracy <= 0 || statsAccuracy >= 1) {
+			throw new SettingsError("Invalid statistics settings for report " +
+					this.getClass().getSimpleName());
+		}
+
+		if (settings.contains(COMPRESSION_S)) {
+			String compression = settings.getSetting(COMPRESSION_S);
+			if (compression.equalsIgnoreCase(GZIP_COMPRESSION)) {
+				this.gzipOutput = true;
+			} else if (!compression.equalsIgnoreCase("none")) {
+				throw new SettingsError("Unsupported report compression '" +
+						compression + "'");
+			}
+		}
 		
 		if (settings.contains(OUTPUT_SETTING)) {
 			outFileName = settings.getSetting(OUTPUT_SETTING);
@@ -191,8 +292,26 @@ public abstract class Report {
 	 * @param outFileName Name (&path) of the file to create
 	 */
 	private void createOutput(String outFileName) {
+		if (gzipOutput) {
+			outFileName += GZIP_SUFFIX;
+		}
+
 		try {
-			this.out = new PrintWriter(new FileWriter(outFileName));
+			OutputStream os = new FileOutputStream(outFileName);
+			if (gzipOutput) {
+				os = new GZIPOutputStream(os, OUTPUT_BUFFER_SIZE);
+			} else {
+				os = new BufferedOutputStream(os, OUTPUT_BUFFER_SIZE);
+			}
+
+			if (asyncOutput) {
+				this.out = new PrintWriter(new AsyncReportWriter(os,
+						new File(outFileName).getName(), asyncChunkSize,
+						asyncQueueSize));
+			} else {
+				this.out = new PrintWriter(new BufferedWriter(
+						new OutputStreamWriter(os)));
+			}
 		} catch (IOException e) {
 			throw new SimError("Couldn't open file '" + outFileName + 
 					"' for report output\n" + e.getMessage(), e);
@@ -265,19 +384,56 @@ public abstract class Report {
 	}
 	
 	/**
-	 * Returns the current simulation time from the SimClock
-	 * @return the current simulation time from the SimClock
+	 * Returns the current simulation time from the SimClock, or the time of
+	 * the event that is being handled if the report receives its events
+	 * asynchronously
+	 * @return the current simulation time
 	 */
 	protected double getSimTime() {
+		if (!Double.isNaN(this.eventTime)) {
+			return this.eventTime;
+		}
 		return SimClock.getTime();
 	}
 	
+	/**
+	 * Sets the time of the event that is delivered to this report
+	 * asynchronously
+	 * @param time The time of the event or NaN when there's no such event
+	 */
+	void setEventTime(double time) {
+		this.eventTime = time;
+	}
+	
+	/**
+	 * Returns true if the report only uses the immutable state of the
+	 * objects its listener methods get: the event time
+	 * ({@link #getSimTime()}), the hosts' addresses and names, and the
+	 * messages' properties other than the (remaining) TTL. Such a report can
+	 * receive its events on a separate thread, where the simulation has
+	 * already moved on. Reports that need the live state of the simulation
+	 * must not override this.
+	 * @return false; reports that support asynchronous events return true
+	 */
+	public boolean supportsAsyncEvents() {
+		return false;
+	}
+	
+	/**
+	 * Returns true if this report should receive its events asynchronously
+	 * (see {@link #ASYNC_EVENTS_S})
+	 * @return true if the report should receive its events asynchronously
+	 */
+	public boolean isAsyncEvents() {
+		return this.asyncEvents && supportsAsyncEvents();
+	}
+	
 	/**
 	 * Returns true if the warm up period is still ongoing (simTime < warmup)
 	 * @return true if the warm up period is still ongoing, false if not
 	 */
 	protected boolean isWarmup() {
-		return this.warmupTime > SimClock.getTime();
+		return this.warmupTime > getSimTime();
 	}
 	
 	/**
@@ -323,6 +479,15 @@ public abstract class Report {
 		s.setSecondaryNamespace(REPORT_NS);
 		return s;
 	}
+
+	/**
+	 * Returns the name (and path) of the report's output file, without the
+	 * interval and compression suffixes
+	 * @return the name of the report's output file
+	 */
+	protected String getOutputFileName() {
+		return this.outFileName;
+	}
 	
 	/**
 	 * Called when the simulation is done, user requested
@@ -335,6 +500,68 @@ public abstract class Report {
 		}
 	}
 	
+	/**
+	 * Creates a new streaming statistics object that uses the accuracy
+	 * settings of this report ({@link #STATS_EXACT_LIMIT_S} and
+	 * {@link #STATS_ACCURACY_S}).
+	 * @return A new, empty statistics object
+	 */
+	protected SampleStats newSampleStats() {
+		return new SampleStats(statsExactLimit, statsAccuracy);
+	}
+
+	/**
+	 * Returns the average of the values in streaming statistics
+	 * @param stats The statistics
+	 * @return average of the values in a formatted String or "NaN" if there
+	 * are no values
+	 */
+	public String getAverage(SampleStats stats) {
+		if (stats.getCount() == 0) {
+			return NAN;
+		}
+		return format(stats.getMean());
+	}
+
+	/**
+	 * Returns the median of the values in streaming statistics
+	 * @param stats The statistics
+	 * @return median of the values in a formatted String or "NaN" if there
+	 * are no values
+	 */
+	public String getMedian(SampleStats stats) {
+		if (stats.getCount() == 0) {
+			return NAN;
+		}
+		return format(stats.getMedian());
+	}
+
+	/**
+	 * Returns the median of integer values in streaming statistics
+	 * @param stats The statistics
+	 * @return median of the values (rounded to the closest integer if the
+	 * median is approximate) or 0 if there are no values
+	 */
+	public int getIntMedian(SampleStats stats) {
+		if (stats.getCount() == 0) {
+			return 0;
+		}
+		return (int)Math.round(stats.getMedian());
+	}
+
+	/**
+	 * Returns the variance of the values in streaming statistics
+	 * @param stats The statistics
+	 * @return variance of the values in a formatted String or "NaN" if there
+	 * are no values
+	 */
+	public String getVariance(SampleStats stats) {
+		if (stats.getCount() == 0) {
+			return NAN;
+		}
+		return format(stats.getVariance());
+	}
+
 	/**
 	 * Returns the average of double values stored in a List or "NaN" for
 	 * empty lists.
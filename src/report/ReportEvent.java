@@ -0,0 +1,113 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.MovementListener;
+
+/**
+ * Immutable record of a connection, message or movement event that is
+ * handed to the reports through a {@link ReportEventBus}. The message and
+ * the location of the event are copies that later changes in the
+ * simulation don't affect; the hosts are referred to as they are, so the
+ * reports may only use their immutable properties (e.g., the address).
+ */
+final class ReportEvent {
+	static final int HOSTS_CONNECTED = 1;
+	static final int HOSTS_DISCONNECTED = 2;
+	static final int NEW_MESSAGE = 3;
+	static final int TRANSFER_STARTED = 4;
+	static final int MESSAGE_DELETED = 5;
+	static final int TRANSFER_ABORTED = 6;
+	static final int MESSAGE_TRANSFERRED = 7;
+	static final int NEW_DESTINATION = 8;
+	static final int INITIAL_LOCATION = 9;
+	/** Type of the event that tells the consumer to stop */
+	static final int CLOSE = 0;
+
+	final int type;
+	/** simulation time of the event */
+	final double time;
+	final DTNHost host1;
+	final DTNHost host2;
+	final Message message;
+	final Coord location;
+	final double speed;
+	/** the dropped or firstDelivery flag of a message event */
+	final boolean flag;
+
+	ReportEvent(int type, double time, DTNHost host1, DTNHost host2,
+			Message message, Coord location, double speed, boolean flag) {
+		this.type = type;
+		this.time = time;
+		this.host1 = host1;
+		this.host2 = host2;
+		this.message = message;
+		this.location = location;
+		this.speed = speed;
+		this.flag = flag;
+	}
+
+	/**
+	 * Delivers this event to a report by calling the listener method that
+	 * matches the event's type
+	 * @param r The report
+	 */
+	void deliverTo(Report r) {
+		switch (type) {
+		case HOSTS_CONNECTED:
+			if (r instanceof ConnectionListener) {
+				((ConnectionListener)r).hostsConnected(host1, host2);
+			}
+			break;
+		case HOSTS_DISCONNECTED:
+			if (r instanceof ConnectionListener) {
+				((ConnectionListener)r).hostsDisconnected(host1, host2);
+			}
+			break;
+		case NEW_MESSAGE:
+			if (r instanceof MessageListener) {
+				((MessageListener)r).newMessage(message);
+			}
+			break;
+		case TRANSFER_STARTED:
+			if (r instanceof MessageListener) {
+				((MessageListener)r).messageTransferStarted(message, host1,
+						host2);
+			}
+			break;
+		case MESSAGE_DELETED:
+			if (r instanceof MessageListener) {
+				((MessageListener)r).messageDeleted(message, host1, flag);
+			}
+			break;
+		case TRANSFER_ABORTED:
+			if (r instanceof MessageListener) {
+				((MessageListener)r).messageTransferAborted(message, host1,
+						host2);
+			}
+			break;
+		case MESSAGE_TRANSFERRED:
+			if (r instanceof MessageListener) {
+				((MessageListener)r).messageTransferred(message, host1, host2,
+						flag);
+			}
+			break;
+		case NEW_DESTINATION:
+			if (r instanceof MovementListener) {
+				((MovementListener)r).newDestination(host1, location, speed);
+			}
+			break;
+		case INITIAL_LOCATION:
+			if (r instanceof MovementListener) {
+				((MovementListener)r).initialLocation(host1, location);
+			}
+			break;
+		}
+	}
+}
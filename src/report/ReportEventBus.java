@@ -0,0 +1,250 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.MovementListener;
+import core.SimClock;
+import core.SimError;
+
+/**
+ * Delivers connection, message and movement events to reports on a
+ * dedicated thread. The bus is registered as a listener of the simulation;
+ * it turns each event into an immutable {@link ReportEvent} and publishes
+ * it into a single-producer, single-consumer ring buffer that the
+ * dispatcher thread consumes. The events are delivered to the reports in
+ * the order they happened, and while a report handles an event,
+ * {@link Report#getSimTime()} returns the time of the event. If the ring
+ * buffer is full, the simulation waits for the dispatcher.
+ * Only reports that declare they support this
+ * ({@link Report#supportsAsyncEvents()}) may be added to the bus.
+ */
+public class ReportEventBus implements ConnectionListener, MessageListener,
+	MovementListener {
+	/** How long (nanoseconds) the threads park when they have to wait */
+	private static final long PARK_NANOS = 20000;
+	/** How many times the dispatcher yields before parking */
+	private static final int YIELDS_BEFORE_PARK = 100;
+
+	private final ReportEvent[] ring;
+	private final int mask;
+	/** sequence number of the next event to consume (dispatcher writes) */
+	private final AtomicLong head;
+	/** sequence number of the next event to publish (simulation writes) */
+	private final AtomicLong tail;
+	/** the last value of head the simulation thread has seen */
+	private long cachedHead;
+
+	private final List<Report> reports;
+	private final Thread dispatcher;
+	private boolean started;
+	private boolean closed;
+	/** Failure of a report on the dispatcher thread */
+	private volatile RuntimeException failure;
+
+	/**
+	 * Creates a new bus. The dispatcher thread is started when the first
+	 * event is published.
+	 * @param capacity Minimum number of events the ring buffer can hold;
+	 * rounded up to a power of two
+	 */
+	public ReportEventBus(int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+		this.ring = new ReportEvent[size];
+		this.mask = size - 1;
+		this.head = new AtomicLong(0);
+		this.tail = new AtomicLong(0);
+		this.cachedHead = 0;
+		this.reports = new ArrayList<Report>();
+		this.started = false;
+		this.closed = false;
+
+		this.dispatcher = new Thread("ReportEvents") {
+			public void run() {
+				dispatch();
+			}
+		};
+		this.dispatcher.setDaemon(true);
+	}
+
+	/**
+	 * Adds a report that receives its events from this bus. Must be called
+	 * before any events are published.
+	 * @param r The report
+	 * @throws SimError if the report doesn't support asynchronous events
+	 */
+	public void addReport(Report r) {
+		if (!r.supportsAsyncEvents()) {
+			throw new SimError("Report " + r.getClass().getSimpleName() +
+					" doesn't support asynchronous events");
+		}
+		if (started) {
+			throw new SimError("Can't add reports after events were " +
+					"published");
+		}
+		reports.add(r);
+	}
+
+	/**
+	 * Returns true if the bus has any reports
+	 * @return true if the bus has any reports
+	 */
+	public boolean hasReports() {
+		return !reports.isEmpty();
+	}
+
+	/**
+	 * Delivers the published events to the reports until the close event
+	 */
+	private void dispatch() {
+		Report[] targets = reports.toArray(new Report[0]);
+
+		long h = head.get();
+		int idle = 0;
+		while (true) {
+			if (h == tail.get()) {
+				if (idle++ < YIELDS_BEFORE_PARK) {
+					Thread.yield();
+				} else {
+					LockSupport.parkNanos(PARK_NANOS);
+				}
+				continue;
+			}
+			idle = 0;
+
+			int slot = (int)(h & mask);
+			ReportEvent e = ring[slot];
+			ring[slot] = null;
+			head.lazySet(++h);
+			if (e.type == ReportEvent.CLOSE) {
+				break;
+			}
+			if (failure != null) {
+				continue; // keep consuming so that the simulation never blocks
+			}
+
+			try {
+				for (Report r : targets) {
+					r.setEventTime(e.time);
+					e.deliverTo(r);
+				}
+			} catch (RuntimeException ex) {
+				failure = ex;
+			}
+		}
+
+		for (Report r : targets) {
+			r.setEventTime(Double.NaN);
+		}
+	}
+
+	/**
+	 * Publishes an event, waiting for space in the ring buffer if necessary
+	 * @param e The event
+	 */
+	private void publish(ReportEvent e) {
+		if (!started) {
+			started = true;
+			dispatcher.start();
+		}
+		checkFailure();
+		long t = tail.get();
+		while (t - cachedHead >= ring.length) {
+			cachedHead = head.get();
+			if (t - cachedHead >= ring.length) {
+				checkFailure();
+				LockSupport.parkNanos(PARK_NANOS);
+			}
+		}
+		ring[(int)(t & mask)] = e;
+		tail.lazySet(t + 1);
+	}
+
+	private void checkFailure() {
+		if (failure != null) {
+			throw new SimError("Report failed to handle an event: " +
+					failure.getMessage(), failure);
+		}
+	}
+
+	private void publish(int type, DTNHost h1, DTNHost h2, Message m,
+			boolean flag) {
+		publish(new ReportEvent(type, SimClock.getTime(), h1, h2,
+				m.snapshot(), null, 0, flag));
+	}
+
+	/**
+	 * Delivers all the published events and stops the dispatcher thread.
+	 * After this, the reports use the simulation clock again.
+	 * @throws SimError if any report failed to handle an event
+	 */
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (!started) {
+			return;
+		}
+		publish(new ReportEvent(ReportEvent.CLOSE, 0, null, null, null, null,
+				0, false));
+		try {
+			dispatcher.join();
+		} catch (InterruptedException e) {
+			throw new SimError("Interrupted while closing report events", e);
+		}
+		checkFailure();
+	}
+
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		publish(new ReportEvent(ReportEvent.HOSTS_CONNECTED,
+				SimClock.getTime(), host1, host2, null, null, 0, false));
+	}
+
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		publish(new ReportEvent(ReportEvent.HOSTS_DISCONNECTED,
+				SimClock.getTime(), host1, host2, null, null, 0, false));
+	}
+
+	public void newMessage(Message m) {
+		publish(ReportEvent.NEW_MESSAGE, null, null, m, false);
+	}
+
+	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
+		publish(ReportEvent.TRANSFER_STARTED, from, to, m, false);
+	}
+
+	public void messageDeleted(Message m, DTNHost where, boolean dropped) {
+		publish(ReportEvent.MESSAGE_DELETED, where, null, m, dropped);
+	}
+
+	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
+		publish(ReportEvent.TRANSFER_ABORTED, from, to, m, false);
+	}
+
+	public void messageTransferred(Message m, DTNHost from, DTNHost to,
+			boolean firstDelivery) {
+		publish(ReportEvent.MESSAGE_TRANSFERRED, from, to, m, firstDelivery);
+	}
+
+	public void newDestination(DTNHost host, Coord destination, double speed) {
+		publish(new ReportEvent(ReportEvent.NEW_DESTINATION, SimClock.getTime(),
+				host, null, null, destination.clone(), speed, false));
+	}
+
+	public void initialLocation(DTNHost host, Coord location) {
+		publish(new ReportEvent(ReportEvent.INITIAL_LOCATION,
+				SimClock.getTime(), host, null, null, location.clone(), 0,
+				false));
+	}
+}
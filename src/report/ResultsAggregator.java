@@ -0,0 +1,515 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+import core.DTNSim;
+import core.RandomStreams;
+import core.Settings;
+import core.SimError;
+import core.SimScenario;
+import movement.MovementModel;
+
+/**
+ * Aggregates the reports of a batch run sweep. The report files of the runs
+ * are found from the same settings files (and run indexes) that the sweep
+ * was run with, and the runs are grouped by the values of their run array
+ * settings (see {@link Settings#setRunIndex(int)}), except the ones that
+ * only vary the replications (by default the random number generator
+ * seeds). The files are parsed in parallel and folded into running
+ * statistics in run order, so the memory use doesn't grow with the number
+ * of runs.
+ * <P>Usage: <code>java report.ResultsAggregator [options] nrofRuns
+ * settingsFiles...</code>, where nrofRuns is given like with the
+ * <code>-b</code> option of the simulator. Options:</P>
+ * <PRE>
+ * -report name     report whose "key: value" lines are aggregated
+ *                  (default MessageStatsReport)
+ * -ignore names    comma separated run array settings that don't define
+ *                  the group (default MovementModel.rngSeed,Scenario.rngSeed)
+ * -ccdf name[:i]   also computes the CCDF of a report with "value count"
+ *                  lines; i is the index of the count field (default 1, 0
+ *                  counts every line once)
+ * -accuracy a      relative accuracy of the CCDF values (default 0.01)
+ * -threads n       number of parser threads (default: number of CPUs)
+ * -out prefix      prefix of the output files (default "aggregate")
+ * </PRE>
+ * <P>The statistics (run count, mean, half-width of the 95% confidence
+ * interval, minimum and maximum of every numeric value of every group) are
+ * written to <code>prefix_stats.txt</code>, and the CCDFs (one gnuplot data
+ * block per group) to <code>prefix_ccdf.txt</code>.</P>
+ */
+public class ResultsAggregator {
+	/** Default report to aggregate */
+	public static final String DEF_REPORT = "MessageStatsReport";
+	/** Default output file prefix */
+	public static final String DEF_OUT = "aggregate";
+	/** Default relative accuracy of the CCDFs */
+	public static final double DEF_ACCURACY = 0.01;
+
+	private String report = DEF_REPORT;
+	private List<String> ignored = new ArrayList<String>(Arrays.asList(
+			MovementModel.MOVEMENT_MODEL_NS + "." + MovementModel.RNG_SEED,
+			SimScenario.SCENARIO_NS + "." + RandomStreams.RNG_SEED_S));
+	private String ccdfReport = null;
+	private int ccdfIndex = 1;
+	private double accuracy = DEF_ACCURACY;
+	private int nrofThreads = Runtime.getRuntime().availableProcessors();
+	private String outPrefix = DEF_OUT;
+
+	/** names of the run array settings that define the groups */
+	private List<String> groupSettings;
+	/** the groups by their setting values */
+	private Map<List<String>, Group> groups;
+	/** the groups in the order of their first runs */
+	private List<Group> groupList;
+	private int nrofMissing;
+
+	/**
+	 * Runs the aggregator
+	 * @param args Options, number of runs and settings files
+	 */
+	public static void main(String[] args) {
+		ResultsAggregator ra = new ResultsAggregator();
+		int i = 0;
+		try {
+			for (; i < args.length && args[i].startsWith("-"); i += 2) {
+				String value = args[i + 1];
+				if (args[i].equals("-report")) {
+					ra.report = value;
+				} else if (args[i].equals("-ignore")) {
+					ra.ignored = new ArrayList<String>();
+					for (String name : value.split(",")) {
+						ra.ignored.add(name.trim());
+					}
+				} else if (args[i].equals("-ccdf")) {
+					String[] parts = value.split(":");
+					ra.ccdfReport = parts[0];
+					if (parts.length > 1) {
+						ra.ccdfIndex = Integer.parseInt(parts[1]);
+					}
+				} else if (args[i].equals("-accuracy")) {
+					ra.accuracy = Double.parseDouble(value);
+				} else if (args[i].equals("-threads")) {
+					ra.nrofThreads = Math.max(1, Integer.parseInt(value));
+				} else if (args[i].equals("-out")) {
+					ra.outPrefix = value;
+				} else {
+					throw new IllegalArgumentException(args[i]);
+				}
+			}
+		} catch (RuntimeException e) {
+			i = args.length; // print the usage
+		}
+		if (i >= args.length) {
+			System.err.println("Usage: java report.ResultsAggregator " +
+					"[-report name] [-ignore settings] [-ccdf name[:index]] " +
+					"[-accuracy a] [-threads n] [-out prefix] nrofRuns " +
+					"[settingsFiles...]");
+			System.exit(1);
+		}
+
+		int[] runs = DTNSim.parseNrofRuns(args[i]);
+		if (i + 1 < args.length) {
+			Settings.init(args[i + 1]);
+			for (int j = i + 2; j < args.length; j++) {
+				Settings.addSettings(args[j]);
+			}
+		} else {
+			Settings.init(null);
+		}
+
+		long start = System.currentTimeMillis();
+		int nrofRuns = ra.aggregate(runs[0], runs[1]);
+		ra.write();
+		System.out.println("Aggregated " + nrofRuns + " runs in " +
+				ra.groupList.size() + " groups to '" + ra.outPrefix +
+				"_*.txt' in " + (System.currentTimeMillis() - start) / 1000.0 +
+				"s" + (ra.nrofMissing > 0 ? " (" + ra.nrofMissing +
+				" report files were missing)" : ""));
+	}
+
+	/**
+	 * Finds and parses the report files of the runs
+	 * @param firstRun Index of the first run
+	 * @param endRun Index of the run after the last run
+	 * @return The number of runs whose reports were found
+	 * @throws SimError if two runs have the same report file or a file
+	 * can't be read
+	 */
+	public int aggregate(int firstRun, int endRun) {
+		groupSettings = new ArrayList<String>();
+		for (String name : Settings.getRunArraySettings()) {
+			if (!ignored.contains(name)) {
+				groupSettings.add(name);
+			}
+		}
+		groups = new HashMap<List<String>, Group>();
+		groupList = new ArrayList<Group>();
+		nrofMissing = 0;
+
+		ExecutorService pool = Executors.newFixedThreadPool(nrofThreads);
+		ArrayDeque<Future<RunResult>> pending =
+			new ArrayDeque<Future<RunResult>>();
+		Map<String, Integer> runOfFile = new HashMap<String, Integer>();
+		int nrofRuns = 0;
+		try {
+			for (int run = firstRun; run < endRun; run++) {
+				Settings.setRunIndex(run);
+				List<String> key = new ArrayList<String>();
+				Settings s = new Settings();
+				for (String name : groupSettings) {
+					key.add(s.getSetting(name));
+				}
+				Group group = groups.get(key);
+				if (group == null) {
+					group = new Group(key);
+					groups.put(key, group);
+					groupList.add(group);
+				}
+
+				File stats = reportFile(report);
+				Integer other = runOfFile.put(stats.getPath(), run);
+				if (other != null) {
+					throw new SimError("Runs " + (other + 1) + " and " +
+							(run + 1) + " have the same report file '" +
+							stats + "'; the scenario name should contain the " +
+							"run array settings");
+				}
+				File ccdf = ccdfReport != null ? reportFile(ccdfReport) : null;
+
+				pending.add(pool.submit(new RunResult(group, stats, ccdf)));
+				/* bounded read ahead; the results are folded in run order */
+				while (pending.size() > nrofThreads * 4) {
+					nrofRuns += fold(pending.removeFirst());
+				}
+			}
+			while (!pending.isEmpty()) {
+				nrofRuns += fold(pending.removeFirst());
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		return nrofRuns;
+	}
+
+	/**
+	 * Returns the output file of a report in the current run, like
+	 * {@link Report} names it
+	 * @param name Name of the report class
+	 * @return The file
+	 */
+	private static File reportFile(String name) {
+		Settings s = new Settings(name);
+		s.setSecondaryNamespace(Report.REPORT_NS);
+		String fileName;
+		if (s.contains(Report.OUTPUT_SETTING)) {
+			fileName = s.valueFillString(s.getSetting(Report.OUTPUT_SETTING));
+		} else {
+			s.setNameSpace(null);
+			String outDir = s.getSetting(Report.REPORTDIR_SETTING);
+			if (!outDir.endsWith("/")) {
+				outDir += "/";
+			}
+			String scenarioName = s.valueFillString(s.getSetting(
+					SimScenario.SCENARIO_NS + "." + SimScenario.NAME_S));
+			fileName = outDir + scenarioName + "_" + name + Report.OUT_SUFFIX;
+		}
+		return new File(fileName);
+	}
+
+	/**
+	 * Waits for a parsed run and adds its values to its group
+	 * @param result The run's result
+	 * @return 1 if the run's report was found, 0 if not
+	 */
+	private int fold(Future<RunResult> result) {
+		RunResult r;
+		try {
+			r = result.get();
+		} catch (InterruptedException e) {
+			throw new SimError("Interrupted while parsing reports", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof SimError) {
+				throw (SimError)e.getCause();
+			}
+			throw new SimError(e);
+		}
+
+		if (r.values == null) {
+			nrofMissing++;
+			System.err.println("Warning: report file '" + r.statsFile +
+					"' not found");
+			return 0;
+		}
+		r.group.add(r);
+		return 1;
+	}
+
+	/**
+	 * Writes the statistics and the CCDFs of the groups
+	 * @throws SimError if the output can't be written
+	 */
+	public void write() {
+		StringBuilder groupHeader = new StringBuilder();
+		for (String name : groupSettings) {
+			groupHeader.append(name).append(' ');
+		}
+
+		PrintWriter out = openOutput(outPrefix + "_stats.txt");
+		out.println("# " + report + " statistics by group (95% confidence " +
+				"intervals)");
+		out.println("# " + groupHeader + "stat runs mean ci95 min max");
+		for (Group g : groupList) {
+			for (Map.Entry<String, RunningStats> e : g.stats.entrySet()) {
+				RunningStats rs = e.getValue();
+				out.println(g.label() + e.getKey() + " " + rs.n + " " +
+						rs.mean + " " + rs.getHalfWidth() + " " + rs.min +
+						" " + rs.max);
+			}
+		}
+		out.close();
+
+		if (ccdfReport == null) {
+			return;
+		}
+		out = openOutput(outPrefix + "_ccdf.txt");
+		out.println("# CCDF of " + ccdfReport + " by group: value 1-P(X<=x)");
+		for (Group g : groupList) {
+			out.println("# " + groupHeader + ": " + g.label());
+			QuantileSketch sketch = g.ccdf;
+			long total = sketch.getCount();
+			long cumulative = 0;
+			for (int i = 0; i < sketch.getNrofBuckets(); i++) {
+				long count = sketch.getBucketCount(i);
+				if (count > 0) {
+					cumulative += count;
+					out.println(sketch.getBucketValue(i) + " " +
+							(1 - (double)cumulative / total));
+				}
+			}
+			out.println();
+			out.println(); // gnuplot data blocks are separated with 2 lines
+		}
+		out.close();
+	}
+
+	/**
+	 * Opens an output file
+	 * @param fileName Path of the file
+	 * @return The writer
+	 */
+	private static PrintWriter openOutput(String fileName) {
+		try {
+			return new PrintWriter(fileName);
+		} catch (IOException e) {
+			throw new SimError("Couldn't create '" + fileName + "'", e);
+		}
+	}
+
+	/**
+	 * Opens a report file for reading (also gzip compressed reports)
+	 * @param file The report file (without the compression suffix)
+	 * @return The reader or null if the file doesn't exist
+	 * @throws IOException if the file can't be opened
+	 */
+	private static BufferedReader openReport(File file) throws IOException {
+		if (file.isFile()) {
+			return new BufferedReader(new InputStreamReader(
+					new FileInputStream(file)), 65536);
+		}
+		File gzip = new File(file.getPath() + Report.GZIP_SUFFIX);
+		if (gzip.isFile()) {
+			InputStream in = new GZIPInputStream(new FileInputStream(gzip),
+					65536);
+			return new BufferedReader(new InputStreamReader(in), 65536);
+		}
+		return null;
+	}
+
+	/**
+	 * Parses the report files of one run (in a parser thread)
+	 */
+	private class RunResult implements Callable<RunResult> {
+		private final Group group;
+		private final File statsFile;
+		private final File ccdfFile;
+		/** the numeric values of the report (null if it was not found) */
+		private Map<String, Double> values;
+		private QuantileSketch ccdf;
+
+		private RunResult(Group group, File statsFile, File ccdfFile) {
+			this.group = group;
+			this.statsFile = statsFile;
+			this.ccdfFile = ccdfFile;
+		}
+
+		public RunResult call() throws IOException {
+			BufferedReader in = openReport(statsFile);
+			if (in == null) {
+				return this;
+			}
+			values = new LinkedHashMap<String, Double>();
+			try {
+				for (String line = in.readLine(); line != null;
+						line = in.readLine()) {
+					int colon = line.indexOf(": ");
+					if (colon <= 0) {
+						continue;
+					}
+					try {
+						double v = Double.parseDouble(
+								line.substring(colon + 2).trim());
+						if (!Double.isNaN(v)) {
+							values.put(line.substring(0, colon).trim(), v);
+						}
+					} catch (NumberFormatException e) {
+						/* not a numeric value */
+					}
+				}
+			} finally {
+				in.close();
+			}
+
+			if (ccdfFile != null) {
+				ccdf = new QuantileSketch(accuracy);
+				in = openReport(ccdfFile);
+				if (in == null) {
+					throw new SimError("Report file '" + ccdfFile +
+							"' not found");
+				}
+				try {
+					addHitCounts(in);
+				} finally {
+					in.close();
+				}
+			}
+			return this;
+		}
+
+		/**
+		 * Adds the values of a "value count" report to the CCDF sketch
+		 * @param in The report
+		 * @throws IOException if the report can't be read
+		 */
+		private void addHitCounts(BufferedReader in) throws IOException {
+			for (String line = in.readLine(); line != null;
+					line = in.readLine()) {
+				String[] fields = line.trim().split("\\s+");
+				if (fields[0].length() == 0 || fields[0].startsWith("#")) {
+					continue;
+				}
+				try {
+					double value = Double.parseDouble(fields[0]);
+					long count = ccdfIndex > 0 ?
+						Math.round(Double.parseDouble(fields[ccdfIndex])) : 1;
+					if (count > 0) {
+						ccdf.add(value, count);
+					}
+				} catch (RuntimeException e) {
+					throw new SimError("Invalid line '" + line + "' in '" +
+							ccdfFile + "'");
+				}
+			}
+		}
+	}
+
+	/**
+	 * The runs that have the same values for the group settings
+	 */
+	private class Group {
+		private final List<String> key;
+		private final Map<String, RunningStats> stats;
+		private final QuantileSketch ccdf;
+
+		private Group(List<String> key) {
+			this.key = key;
+			this.stats = new LinkedHashMap<String, RunningStats>();
+			this.ccdf = new QuantileSketch(accuracy);
+		}
+
+		/**
+		 * Adds the values of a run to the group
+		 * @param r The run's result
+		 */
+		private void add(RunResult r) {
+			for (Map.Entry<String, Double> e : r.values.entrySet()) {
+				RunningStats rs = stats.get(e.getKey());
+				if (rs == null) {
+					rs = new RunningStats();
+					stats.put(e.getKey(), rs);
+				}
+				rs.add(e.getValue());
+			}
+			if (r.ccdf != null) {
+				ccdf.merge(r.ccdf);
+			}
+		}
+
+		/**
+		 * Returns the group setting values separated (and followed) by
+		 * spaces
+		 * @return The label
+		 */
+		private String label() {
+			StringBuilder sb = new StringBuilder();
+			for (String v : key) {
+				sb.append(v.replaceAll("\\s+", "_")).append(' ');
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Running mean and variance (Welford's algorithm), minimum and maximum
+	 */
+	private static class RunningStats {
+		private long n;
+		private double mean;
+		private double m2;
+		private double min = Double.POSITIVE_INFINITY;
+		private double max = Double.NEGATIVE_INFINITY;
+
+		private void add(double value) {
+			n++;
+			double delta = value - mean;
+			mean += delta / n;
+			m2 += delta * (value - mean);
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+
+		/**
+		 * Returns the half-width of the 95% confidence interval of the mean
+		 * @return The half-width or NaN if there are less than two values
+		 */
+		private double getHalfWidth() {
+			if (n < 2) {
+				return Double.NaN;
+			}
+			double t = StoppingRule.tQuantile95((int)(n - 1));
+			return t * Math.sqrt(m2 / (n - 1) / n);
+		}
+	}
+}
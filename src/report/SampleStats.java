@@ -0,0 +1,263 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.Arrays;
+
+/**
+ * Streaming statistics of a series of double values. The mean and variance
+ * are kept with Welford's online algorithm. For quantiles the values are
+ * stored as they are until a configurable number of values has been seen;
+ * after that they are moved to a {@link QuantileSketch} and the memory use
+ * stays bounded regardless of the number of values. As long as the values
+ * are stored exactly, the results are the same as computing them from a
+ * full list of the values.
+ */
+public class SampleStats {
+	private final int exactLimit;
+	private final double relativeAccuracy;
+
+	private long count;
+	private double sum;
+	private double mean;
+	private double m2;
+	private double min;
+	private double max;
+
+	/** Exact values (null after switching to the sketch) */
+	private double[] values;
+	private boolean sorted;
+	private QuantileSketch sketch;
+
+	/**
+	 * Creates a new, empty statistics object.
+	 * @param exactLimit How many values are kept exactly before switching
+	 * to the quantile sketch
+	 * @param relativeAccuracy Relative accuracy of the quantile sketch
+	 */
+	public SampleStats(int exactLimit, double relativeAccuracy) {
+		this.exactLimit = exactLimit;
+		this.relativeAccuracy = relativeAccuracy;
+		this.values = new double[Math.min(16, Math.max(exactLimit, 0))];
+		this.sorted = true;
+		this.sketch = null;
+		this.min = Double.NaN;
+		this.max = Double.NaN;
+	}
+
+	/**
+	 * Adds a new value
+	 * @param value The value to add
+	 */
+	public void add(double value) {
+		count++;
+		sum += value;
+		double delta = value - mean;
+		mean += delta / count;
+		m2 += delta * (value - mean);
+		if (count == 1) {
+			min = max = value;
+		} else {
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+
+		if (sketch != null) {
+			sketch.add(value);
+			return;
+		}
+
+		int n = (int)(count - 1);
+		if (n >= exactLimit) {
+			toSketch(n);
+			sketch.add(value);
+			return;
+		}
+		if (n == values.length) {
+			values = Arrays.copyOf(values,
+					(int)Math.min(exactLimit, 2L * values.length + 1));
+		}
+		values[n] = value;
+		sorted = false;
+	}
+
+	/**
+	 * Moves the exactly stored values to a quantile sketch
+	 * @param n How many values are currently stored
+	 */
+	private void toSketch(int n) {
+		sketch = new QuantileSketch(relativeAccuracy);
+		for (int i = 0; i < n; i++) {
+			sketch.add(values[i]);
+		}
+		values = null;
+	}
+
+	/**
+	 * Adds all values of another statistics object to this object
+	 * @param other The object to merge
+	 */
+	public void merge(SampleStats other) {
+		if (other.count == 0) {
+			return;
+		}
+
+		if (this.count == 0) {
+			this.min = other.min;
+			this.max = other.max;
+		} else {
+			this.min = Math.min(this.min, other.min);
+			this.max = Math.max(this.max, other.max);
+		}
+
+		long n = this.count + other.count;
+		double delta = other.mean - this.mean;
+		this.m2 += other.m2 + delta * delta * this.count * other.count / n;
+		this.mean += delta * other.count / n;
+		this.sum += other.sum;
+		long oldCount = this.count;
+		this.count = n;
+
+		if (this.sketch == null && other.sketch == null && n <= exactLimit) {
+			if (values.length < n) {
+				values = Arrays.copyOf(values, (int)n);
+			}
+			System.arraycopy(other.values, 0, values, (int)oldCount,
+					(int)other.count);
+			sorted = false;
+			return;
+		}
+
+		if (this.sketch == null) {
+			toSketch((int)oldCount);
+		}
+		if (other.sketch != null) {
+			this.sketch.merge(other.sketch);
+		} else {
+			for (int i = 0; i < other.count; i++) {
+				this.sketch.add(other.values[i]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of values added
+	 * @return the number of values added
+	 */
+	public long getCount() {
+		return this.count;
+	}
+
+	/**
+	 * Returns the sum of the values
+	 * @return the sum of the values
+	 */
+	public double getSum() {
+		return this.sum;
+	}
+
+	/**
+	 * Returns the average of the values
+	 * @return the average of the values or NaN if there are no values
+	 */
+	public double getMean() {
+		return count == 0 ? Double.NaN : sum / count;
+	}
+
+	/**
+	 * Returns the (population) variance of the values
+	 * @return the variance of the values or NaN if there are no values
+	 */
+	public double getVariance() {
+		return count == 0 ? Double.NaN : m2 / count;
+	}
+
+	/**
+	 * Returns the smallest value
+	 * @return the smallest value or NaN if there are no values
+	 */
+	public double getMin() {
+		return this.min;
+	}
+
+	/**
+	 * Returns the largest value
+	 * @return the largest value or NaN if there are no values
+	 */
+	public double getMax() {
+		return this.max;
+	}
+
+	/**
+	 * Returns true if all the values are still stored exactly
+	 * @return true if all the values are still stored exactly
+	 */
+	public boolean isExact() {
+		return this.sketch == null;
+	}
+
+	/**
+	 * Returns the value at the given rank, i.e., the value that is at the
+	 * given index when the values are sorted. The value is exact as long as
+	 * {@link #isExact()} returns true.
+	 * @param rank The rank (0 ... count-1)
+	 * @return The value at the rank or NaN if there are no values
+	 */
+	public double getValueAtRank(long rank) {
+		if (count == 0) {
+			return Double.NaN;
+		}
+		if (sketch != null) {
+			return sketch.getValueAtRank(rank);
+		}
+		sortValues();
+		return values[(int)Math.max(0, Math.min(rank, count - 1))];
+	}
+
+	/**
+	 * Returns the median of the values; the upper median for even number
+	 * of values.
+	 * @return The median or NaN if there are no values
+	 */
+	public double getMedian() {
+		return getValueAtRank(count / 2);
+	}
+
+	/**
+	 * Returns the q-quantile of the values
+	 * @param q The quantile (0 ... 1)
+	 * @return The quantile or NaN if there are no values
+	 */
+	public double getQuantile(double q) {
+		return getValueAtRank((long)(q * count));
+	}
+
+	/**
+	 * Returns the exactly stored values in ascending order.
+	 * @return The sorted values
+	 * @throws IllegalStateException if the values are not stored exactly
+	 */
+	public double[] getSortedValues() {
+		if (sketch != null) {
+			throw new IllegalStateException("Values are not stored exactly");
+		}
+		sortValues();
+		return Arrays.copyOf(values, (int)count);
+	}
+
+	/**
+	 * Returns the quantile sketch of the values
+	 * @return The sketch or null if the values are still stored exactly
+	 */
+	public QuantileSketch getSketch() {
+		return this.sketch;
+	}
+
+	private void sortValues() {
+		if (!sorted) {
+			Arrays.sort(values, 0, (int)count);
+			sorted = true;
+		}
+	}
+}
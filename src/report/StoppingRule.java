@@ -0,0 +1,242 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import core.Settings;
+import core.SettingsError;
+
+/**
+ * Convergence based stopping rule for the metrics of
+ * {@link MessageStatsReport}. The simulation time (after the warm up) is
+ * divided into windows of equal length and every metric is computed
+ * separately for each window (batch means). When the confidence intervals
+ * (95 %) of the means of the metrics over the latest windows are narrow
+ * enough, compared to the means, the rule is met and the run can be
+ * stopped.
+ * <P>The rule is configured with the settings of the report
+ * ({@link #STOP_METRICS_S}, {@link #STOP_WINDOW_S},
+ * {@link #STOP_WINDOWS_S} and {@link #STOP_WIDTH_S}) and it's off if
+ * {@link #STOP_METRICS_S} is not defined.</P>
+ */
+public class StoppingRule {
+	/** Metrics whose convergence stops the run -setting id ({@value}).
+	 * Comma separated names of the metrics as they are in the output of
+	 * MessageStatsReport (e.g., "delivery_prob, latency_avg"). Supported
+	 * metrics are delivery_prob, response_prob, overhead_ratio,
+	 * latency_avg, hopcount_avg, buffertime_avg and rtt_avg. */
+	public static final String STOP_METRICS_S = "stopMetrics";
+	/** Length of the windows -setting id ({@value}). Simulated seconds. */
+	public static final String STOP_WINDOW_S = "stopWindow";
+	/** Number of latest windows the confidence intervals are computed from
+	 * -setting id ({@value}). Default is {@value #DEF_WINDOWS}. */
+	public static final String STOP_WINDOWS_S = "stopWindows";
+	/** Maximum relative half-width of the confidence intervals -setting id
+	 * ({@value}). E.g. 0.05 stops the run when the mean of every metric is
+	 * known within +-5 %. */
+	public static final String STOP_WIDTH_S = "stopWidth";
+
+	/** Default value for {@link #STOP_WINDOWS_S} */
+	public static final int DEF_WINDOWS = 10;
+
+	/** Counter of created messages */
+	public static final int CREATED = 0;
+	/** Counter of delivered messages */
+	public static final int DELIVERED = 1;
+	/** Counter of relays that didn't deliver a message */
+	public static final int RELAYED_ONLY = 2;
+	/** Counter of created messages that requested a response */
+	public static final int RESPONSE_REQ_CREATED = 3;
+	/** Counter of delivered responses */
+	public static final int RESPONSE_DELIVERED = 4;
+	/** Sum of the latencies of delivered messages */
+	public static final int LATENCY_SUM = 5;
+	/** Sum of the hop counts of delivered messages */
+	public static final int HOP_COUNT_SUM = 6;
+	/** Sum of the buffer times of deleted messages */
+	public static final int BUFFER_TIME_SUM = 7;
+	/** Counter of deleted messages */
+	public static final int DELETED = 8;
+	/** Sum of the round trip times of delivered responses */
+	public static final int RTT_SUM = 9;
+	private static final int NROF_COUNTERS = 10;
+
+	/** names of the supported metrics */
+	private static final String[] METRIC_NAMES = {"delivery_prob",
+		"response_prob", "overhead_ratio", "latency_avg", "hopcount_avg",
+		"buffertime_avg", "rtt_avg"};
+	/** counters whose ratio the metrics are (numerator, denominator) */
+	private static final int[][] METRIC_COUNTERS = {{DELIVERED, CREATED},
+		{RESPONSE_DELIVERED, RESPONSE_REQ_CREATED}, {RELAYED_ONLY, DELIVERED},
+		{LATENCY_SUM, DELIVERED}, {HOP_COUNT_SUM, DELIVERED},
+		{BUFFER_TIME_SUM, DELETED}, {RTT_SUM, RESPONSE_DELIVERED}};
+
+	/** two-sided 95 % quantiles of Student's t distribution for 1 to 30
+	 * degrees of freedom */
+	private static final double[] T_95 = {12.706, 4.303, 3.182, 2.776,
+		2.571, 2.447, 2.365, 2.306, 2.262, 2.228, 2.201, 2.179, 2.160, 2.145,
+		2.131, 2.120, 2.110, 2.101, 2.093, 2.086, 2.080, 2.074, 2.069, 2.064,
+		2.060, 2.056, 2.052, 2.048, 2.045, 2.042};
+
+	/** indexes of the monitored metrics */
+	private int[] metrics;
+	private double windowLength;
+	private int nrofWindows;
+	private double width;
+	private double tValue;
+
+	/** the counters of the current window */
+	private double[] counters;
+	/** end time of the current window */
+	private double windowEnd;
+	/** metric values of the latest windows; [metric][window % nrofWindows] */
+	private double[][] values;
+	/** number of closed windows */
+	private long closedWindows;
+	/** time when the rule was met (NaN if not yet) */
+	private double metTime;
+
+	/**
+	 * Creates the rule from the settings of a report
+	 * @param s The report's settings
+	 * @param startTime When the first window starts (end of the warm up)
+	 * @return The rule or null if the rule is not configured
+	 */
+	public static StoppingRule create(Settings s, double startTime) {
+		if (!s.contains(STOP_METRICS_S)) {
+			return null;
+		}
+		return new StoppingRule(s, startTime);
+	}
+
+	/**
+	 * Constructor.
+	 * @param s The report's settings
+	 * @param startTime When the first window starts
+	 */
+	private StoppingRule(Settings s, double startTime) {
+		String[] names = s.getCsvSetting(STOP_METRICS_S);
+		this.metrics = new int[names.length];
+		for (int i = 0; i < names.length; i++) {
+			metrics[i] = -1;
+			for (int j = 0; j < METRIC_NAMES.length; j++) {
+				if (METRIC_NAMES[j].equals(names[i].trim())) {
+					metrics[i] = j;
+				}
+			}
+			if (metrics[i] == -1) {
+				throw new SettingsError("Unknown metric '" + names[i] +
+						"' for setting " + s.getFullPropertyName(STOP_METRICS_S));
+			}
+		}
+
+		this.windowLength = s.getDouble(STOP_WINDOW_S);
+		this.nrofWindows = s.contains(STOP_WINDOWS_S) ?
+				s.getInt(STOP_WINDOWS_S) : DEF_WINDOWS;
+		this.width = s.getDouble(STOP_WIDTH_S);
+		if (windowLength <= 0 || nrofWindows < 2 || width <= 0) {
+			throw new SettingsError("Invalid stopping rule settings for " +
+					s.getFullPropertyName(STOP_METRICS_S));
+		}
+		this.tValue = tQuantile95(nrofWindows - 1);
+
+		this.counters = new double[NROF_COUNTERS];
+		this.values = new double[metrics.length][nrofWindows];
+		this.windowEnd = startTime + windowLength;
+		this.closedWindows = 0;
+		this.metTime = Double.NaN;
+	}
+
+	/**
+	 * Returns the two-sided 95 % quantile of Student's t distribution. The
+	 * normal distribution's quantile (1.96) is used for more than 30
+	 * degrees of freedom.
+	 * @param df Degrees of freedom (at least 1)
+	 * @return The quantile
+	 */
+	static double tQuantile95(int df) {
+		return df <= T_95.length ? T_95[df - 1] : 1.96;
+	}
+
+	/**
+	 * Closes the windows that have ended by the given time. Must be called
+	 * before adding the values of an event of that time.
+	 * @param time The current simulation time
+	 * @return True if the rule is met (now or earlier)
+	 */
+	public boolean advance(double time) {
+		while (time >= windowEnd && Double.isNaN(metTime)) {
+			closeWindow();
+			if (isConverged()) {
+				metTime = windowEnd;
+			}
+			windowEnd += windowLength;
+		}
+		return !Double.isNaN(metTime);
+	}
+
+	/**
+	 * Adds a value to a counter of the current window
+	 * @param counter The counter (e.g., {@link #CREATED})
+	 * @param value The value to add
+	 */
+	public void add(int counter, double value) {
+		counters[counter] += value;
+	}
+
+	/**
+	 * Returns the time when the rule was met
+	 * @return The time or NaN if the rule hasn't been met
+	 */
+	public double getMetTime() {
+		return metTime;
+	}
+
+	/**
+	 * Computes the metrics of the current window and starts a new window
+	 */
+	private void closeWindow() {
+		int pos = (int)(closedWindows % nrofWindows);
+		for (int i = 0; i < metrics.length; i++) {
+			int[] c = METRIC_COUNTERS[metrics[i]];
+			double denominator = counters[c[1]];
+			values[i][pos] = denominator > 0 ?
+					counters[c[0]] / denominator : Double.NaN;
+		}
+		closedWindows++;
+		for (int i = 0; i < counters.length; i++) {
+			counters[i] = 0;
+		}
+	}
+
+	/**
+	 * Returns true if the confidence intervals of all the metrics over the
+	 * latest windows are narrow enough
+	 * @return True if the metrics have converged
+	 */
+	private boolean isConverged() {
+		if (closedWindows < nrofWindows) {
+			return false;
+		}
+		for (int i = 0; i < metrics.length; i++) {
+			double sum = 0;
+			for (double v : values[i]) {
+				if (Double.isNaN(v)) {
+					return false; // a window without data for the metric
+				}
+				sum += v;
+			}
+			double mean = sum / nrofWindows;
+			double squares = 0;
+			for (double v : values[i]) {
+				squares += (v - mean) * (v - mean);
+			}
+			double stdDev = Math.sqrt(squares / (nrofWindows - 1));
+			double halfWidth = tValue * stdDev / Math.sqrt(nrofWindows);
+			if (halfWidth > width * Math.abs(mean)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -7,8 +7,9 @@ package routing;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Random;
+import java.util.PriorityQueue;
 
 import core.Connection;
 import core.DTNHost;
@@ -38,12 +39,24 @@ public abstract class ActiveRouter extends MessageRouter {
 
     /** prefix of all response message IDs */
     public static final String RESPONSE_PREFIX = "R_";
-    /** how often TTL check (discarding old messages) is performed */
-    public static int TTL_CHECK_INTERVAL = 60;
+    /** Orders messages by their expiry time (and unique id for ties) */
+    private static final Comparator<Message> EXPIRY_ORDER =
+            new Comparator<Message>() {
+                public int compare(Message m1, Message m2) {
+                    int c = Double.compare(m1.getExpiryTime(),
+                            m2.getExpiryTime());
+                    return c != 0 ? c :
+                            Integer.compare(m1.getUniqueId(), m2.getUniqueId());
+                }
+            };
+
     /** connection(s) that are currently used for sending */
     protected ArrayList<Connection> sendingConnections;
-    /** sim time when the last TTL check was done */
-    private double lastTtlCheck;
+    /**
+     * buffered messages with finite TTL in the order of their expiry times;
+     * may also contain messages that have already left the buffer
+     */
+    private PriorityQueue<Message> expiryQueue;
 
     /**
      * Constructor. Creates a new message router based on the settings in
@@ -75,7 +88,7 @@ public abstract class ActiveRouter extends MessageRouter {
     public void initialize(DTNHost host, List<MessageListener> mListeners) {
         super.initialize(host, mListeners);
         this.sendingConnections = new ArrayList<Connection>(1);
-        this.lastTtlCheck = 0;
+        this.expiryQueue = new PriorityQueue<Message>(11, EXPIRY_ORDER);
     }
 
     /**
@@ -279,18 +292,55 @@ public abstract class ActiveRouter extends MessageRouter {
     }
 
     /**
-     * Drops messages whose TTL is less than zero.
+     * Drops messages whose TTL has run out. Only the expired messages are
+     * looked at.
      */
     protected void dropExpiredMessages() {
-        Message[] messages = getMessageCollection().toArray(new Message[0]);
-        for (int i = 0; i < messages.length; i++) {
-            int ttl = messages[i].getTtl();
-            if (ttl <= 0) {
-                deleteMessage(messages[i].getId(), true);
+        double now = SimClock.getTime();
+        while (!expiryQueue.isEmpty() &&
+                expiryQueue.peek().getExpiryTime() <= now) {
+            Message m = expiryQueue.poll();
+            if (getMessage(m.getId()) == m) { // still in the buffer
+                deleteMessage(m.getId(), true);
             }
         }
     }
 
+    /**
+     * Returns true if some message in the queue of expiring messages has
+     * expired (the message may have already left the buffer)
+     * 
+     * @return True if {@link #dropExpiredMessages()} has something to check
+     */
+    private boolean hasExpiredMessages() {
+        return !expiryQueue.isEmpty() &&
+                expiryQueue.peek().getExpiryTime() <= SimClock.getTime();
+    }
+
+    /**
+     * Adds the message to the buffer and to the queue of expiring
+     * messages (if it has a finite TTL). The messages that have left the
+     * buffer are cleaned from the queue when there are more of them than
+     * buffered messages.
+     */
+    @Override
+    protected void addToMessages(Message m, boolean newMessage) {
+        super.addToMessages(m, newMessage);
+        if (m.getExpiryTime() == Double.MAX_VALUE) {
+            return;
+        }
+        if (expiryQueue.size() > 2 * getNrofMessages() + 16) {
+            expiryQueue.clear();
+            for (Message buffered : getMessageCollection()) {
+                if (buffered != m &&
+                        buffered.getExpiryTime() != Double.MAX_VALUE) {
+                    expiryQueue.add(buffered);
+                }
+            }
+        }
+        expiryQueue.add(m);
+    }
+
     /**
      * Tries to make room for a new message. Current implementation simply
      * calls {@link #makeRoomForMessage(int)} and ignores the return value.
@@ -347,10 +397,14 @@ public abstract class ActiveRouter extends MessageRouter {
         }
 
         List<Tuple<Message, Connection>> forTuples = new ArrayList<Tuple<Message, Connection>>();
+        DTNHost host = getHost();
+        List<Connection> connections = host.getConnections();
         for (Message m : getMessageCollection()) {
-            for (Connection con : getHost().getConnections()) {
-                // for (Connection con : getConnections()) {
-                DTNHost to = con.getOtherNode(getHost());
+            if (!host.isConnectedTo(m.getTo())) {
+                continue;
+            }
+            for (Connection con : connections) {
+                DTNHost to = con.getOtherNode(host);
                 if (m.getTo() == to) {
                     forTuples.add(new Tuple<Message, Connection>(m, con));
                 }
@@ -519,8 +573,7 @@ public abstract class ActiveRouter extends MessageRouter {
             return; // nothing to shuffle
         }
 
-        Random rng = new Random(SimClock.getIntTime());
-        Collections.shuffle(messages, rng);
+        Collections.shuffle(messages, getRandom());
     }
 
     /**
@@ -592,7 +645,7 @@ public abstract class ActiveRouter extends MessageRouter {
     /**
      * Checks out all sending connections to finalize the ready ones
      * and abort those whose connection went down. Also drops messages
-     * whose TTL <= 0 (checking every one simulated minute).
+     * whose TTL has run out (when nothing is being sent).
      * 
      * @see #addToSendingConnections(Connection)
      */
@@ -638,14 +691,25 @@ public abstract class ActiveRouter extends MessageRouter {
             }
         }
 
-        /* time to do a TTL check and drop old messages? Only if not sending */
-        if (SimClock.getTime() - lastTtlCheck >= TTL_CHECK_INTERVAL &&
-                sendingConnections.size() == 0) {
+        /* drop messages whose TTL has run out, but only if not sending */
+        if (sendingConnections.size() == 0 && hasExpiredMessages()) {
             dropExpiredMessages();
-            lastTtlCheck = SimClock.getTime();
         }
     }
 
+    /**
+     * Returns true if the router has no connections, no transfers to
+     * finalize or abort, no expired messages to drop and no scheduled work.
+     * An update of such a router would not do anything since all the
+     * transfers are started only when there are connections. Subclasses
+     * that do any other work in their update must override this.
+     */
+    @Override
+    public boolean isIdle() {
+        return getConnectionCount() == 0 && sendingConnections.size() == 0 &&
+                !hasScheduledWork() && !hasExpiredMessages();
+    }
+
     /**
      * Method is called just before a transfer is aborted at {@link #update()}
      * due connection going down. This happens on the sending host.
@@ -4,6 +4,7 @@
  */
 package routing;
 
+import java.util.List;
 import java.util.Random;
 import core.*;
 
@@ -167,6 +168,24 @@ public class EnergyAwareRouter extends ActiveRouter
 			reduceEnergy(this.scanEnergy);
 			this.lastScanUpdate = simTime;
 		}
+		/* the next scan is at the first update after this */
+		requestUpdateAt(this.lastScanUpdate + this.scanInterval);
+	}
+
+	@Override
+	public void initialize(DTNHost host, List<MessageListener> mListeners) {
+		super.initialize(host, mListeners);
+		/* the first update publishes the energy level on the comBus */
+		requestUpdateAt(SimClock.getTime());
+	}
+
+	/**
+	 * Notes the time of the skipped update so that the sending energy of
+	 * the next update is counted from it, as if the router was updated.
+	 */
+	@Override
+	public void updateSkipped() {
+		this.lastUpdate = SimClock.getTime();
 	}
 
 	@Override
@@ -197,7 +216,12 @@ public class EnergyAwareRouter extends ActiveRouter
 	 * @param newValue The new energy value
 	 */
 	public void moduleValueChanged(String key, Object newValue) {
+		boolean wasDepleted = this.currentEnergy <= 0;
 		this.currentEnergy = (Double)newValue;
+		if (wasDepleted != (this.currentEnergy <= 0)) {
+			/* the radio is turned off (or scanning resumes) on update */
+			requestUpdateAt(SimClock.getTime());
+		}
 	}
 
 
@@ -5,7 +5,11 @@
 package routing;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import core.*;
 
@@ -21,6 +25,20 @@ public class EpidemicOracleRouter extends ActiveRouter {
 
 	/** List of all routers in this node group */
 	private static List<EpidemicOracleRouter> allRouters;
+	/** Routers that have a copy of a message, by message ID */
+	private static Map<String, List<EpidemicOracleRouter>> holders;
+
+	/** Orders routers by their position in the list of all routers */
+	private static final Comparator<EpidemicOracleRouter> CREATION_ORDER =
+		new Comparator<EpidemicOracleRouter>() {
+			public int compare(EpidemicOracleRouter r1,
+					EpidemicOracleRouter r2) {
+				return r1.index - r2.index;
+			}
+		};
+
+	/** Position of this router in the list of all routers */
+	private int index;
 
 	static {
 		DTNSim.registerForReset(EpidemicOracleRouter.class.getCanonicalName());
@@ -42,6 +60,7 @@ public class EpidemicOracleRouter extends ActiveRouter {
 	 */
 	protected EpidemicOracleRouter(EpidemicOracleRouter r) {
 		super(r);
+		this.index = allRouters.size();
 		allRouters.add(this);
 	}
 
@@ -111,11 +130,7 @@ public class EpidemicOracleRouter extends ActiveRouter {
 		Message m = super.messageTransferred(id, from);
 
 		if (m.getTo() == this.getHost()) {
-			for (EpidemicOracleRouter r : allRouters) {
-				if (r != this && r != from.getRouter()) {
-					r.removeDeliveredMessage(id);
-				}
-			}
+			removeFromHolders(id, from);
 		} else {
 			sendMessageToConnected(m);
 		}
@@ -123,6 +138,55 @@ public class EpidemicOracleRouter extends ActiveRouter {
 		return m;
 	}
 
+	/**
+	 * Removes a delivered message from all the other routers that have a
+	 * copy of it. The routers are handled in the order they were created.
+	 * @param id ID of the delivered message
+	 * @param from The host the message was delivered from
+	 */
+	private void removeFromHolders(String id, DTNHost from) {
+		List<EpidemicOracleRouter> list = holders.get(id);
+		if (list == null) {
+			return;
+		}
+		/* copy; removing the messages modifies the holder list */
+		List<EpidemicOracleRouter> copy =
+			new ArrayList<EpidemicOracleRouter>(list);
+		Collections.sort(copy, CREATION_ORDER);
+		for (EpidemicOracleRouter r : copy) {
+			if (r != this && r != from.getRouter()) {
+				r.removeDeliveredMessage(id);
+			}
+		}
+	}
+
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		boolean had = hasMessage(m.getId());
+		super.addToMessages(m, newMessage);
+		if (!had) {
+			List<EpidemicOracleRouter> list = holders.get(m.getId());
+			if (list == null) {
+				list = new ArrayList<EpidemicOracleRouter>(2);
+				holders.put(m.getId(), list);
+			}
+			list.add(this);
+		}
+	}
+
+	@Override
+	protected Message removeFromMessages(String id) {
+		Message m = super.removeFromMessages(id);
+		if (m != null) {
+			List<EpidemicOracleRouter> list = holders.get(id);
+			list.remove(this);
+			if (list.isEmpty()) {
+				holders.remove(id);
+			}
+		}
+		return m;
+	}
+
 	protected int checkReceiving(Message m) {
 		if ( isIncomingMessage(m.getId()) || hasMessage(m.getId()) ||
 				isDeliveredMessage(m) ){
@@ -171,10 +235,11 @@ public class EpidemicOracleRouter extends ActiveRouter {
 	}
 
 	/**
-	 * Resets the static router list
+	 * Resets the static router list and the message holder index
 	 */
 	public static void reset() {
 		allRouters = new ArrayList<EpidemicOracleRouter>();
+		holders = new HashMap<String, List<EpidemicOracleRouter>>();
 	}
 
 }
\ No newline at end of file
@@ -36,6 +36,20 @@ public class GeoRouter extends ActiveRouter
 	public static final String MESSAGE_LOOK_P = "GeoRouter.look";
 	public static final String MESSAGE_LOOK_TIMEOUT_P = "GeoRouter.lookTimeout";
 
+	/** Message attributes of the properties above */
+	protected static final MessageAttribute<Long> CHECKIN_SEQNUM =
+		MessageAttribute.register(MESSAGE_CHECKIN_SEQNUM_P, Long.class);
+	protected static final MessageAttribute<Coord> FOCUS =
+		MessageAttribute.register(MESSAGE_FOCUS_P, Coord.class);
+	protected static final MessageAttribute<Message> IS_CHECKIN =
+		MessageAttribute.register(MESSAGE_IS_CHECKIN_P, Message.class);
+	protected static final MessageAttribute<Coord> HOME_LOC =
+		MessageAttribute.register(MESSAGE_HOME_LOC_P, Coord.class);
+	protected static final MessageAttribute<Boolean> LOOK =
+		MessageAttribute.register(MESSAGE_LOOK_P, Boolean.class);
+	protected static final MessageAttribute<Double> LOOK_TIMEOUT =
+		MessageAttribute.registerDouble(MESSAGE_LOOK_TIMEOUT_P);
+
 	public static final int DENIED_ALREADY_IN_VR = -6;
 	public static final int DENIED_CHECKIN = -7;
 
@@ -233,12 +247,13 @@ public class GeoRouter extends ActiveRouter
 			doLook(m, entry.getLocation(), entry.getLocationTimestamp());
 		}
 		else {
-			m.addProperty(MESSAGE_LOOK_P, false);
-			m.addProperty(MESSAGE_FOCUS_P, hash(to));
-			m.addProperty(MESSAGE_LOOK_TIMEOUT_P, null);
+			m.addAttribute(LOOK, false);
+			m.addAttribute(FOCUS, hash(to));
+			m.addAttribute(LOOK_TIMEOUT, null);
 		}
 
 		addToMessages(m, true);
+		requestPeriodicUpdate();
 
 		return true;
 	}
@@ -257,12 +272,12 @@ public class GeoRouter extends ActiveRouter
 		m.setResponseSize(0);
 //		m.setTtl(checkInTTL);
 
-		m.addProperty(MESSAGE_CHECKIN_SEQNUM_P, checkInSeqNum++);
-		m.addProperty(MESSAGE_LOOK_P, false);
-		m.addProperty(MESSAGE_FOCUS_P, hash(thisHost));
-		m.addProperty(MESSAGE_IS_CHECKIN_P, m);
-		m.addProperty(MESSAGE_HOME_LOC_P, thisHost.getLocation());
-		m.updateProperty(MESSAGE_LOOK_TIMEOUT_P, null);
+		m.addAttribute(CHECKIN_SEQNUM, checkInSeqNum++);
+		m.addAttribute(LOOK, false);
+		m.addAttribute(FOCUS, hash(thisHost));
+		m.addAttribute(IS_CHECKIN, m);
+		m.addAttribute(HOME_LOC, thisHost.getLocation());
+		m.setAttribute(LOOK_TIMEOUT, null);
 
 		removeOldCheckInMsgs(m);
 		addToMessages(m, true);
@@ -382,6 +397,7 @@ public class GeoRouter extends ActiveRouter
 			doLook(vrm, entry.getLocation(), entry.getLocationTimestamp());
 		}
 
+		requestPeriodicUpdate();
 		return vrm;
 	}
 
@@ -439,34 +455,34 @@ public class GeoRouter extends ActiveRouter
 
 	protected Coord getFocus(Message m)
 	{
-		return (Coord) m.getProperty(MESSAGE_FOCUS_P);
+		return m.getAttribute(FOCUS);
 	}
 
 	protected boolean isCheckInMessage(Message m)
 	{
-		return m.getProperty(MESSAGE_IS_CHECKIN_P) != null;
+		return m.getAttribute(IS_CHECKIN) != null;
 	}
 
 	protected Coord getCheckInLocation(Message m)
 	{
-		return (Coord) m.getProperty(MESSAGE_HOME_LOC_P);
+		return m.getAttribute(HOME_LOC);
 	}
 
 	protected boolean isLooking(Message m)
 	{
-		return ((Boolean)m.getProperty(MESSAGE_LOOK_P)).booleanValue();
+		return m.getAttribute(LOOK).booleanValue();
 	}
 
 	protected long getCheckInSequenceNumber(Message m)
 	{
-		return ((Long) m.getProperty(MESSAGE_CHECKIN_SEQNUM_P)).longValue();
+		return m.getAttribute(CHECKIN_SEQNUM).longValue();
 	}
 
 	protected void doLook(Message m, Coord toLoc, double locationTime)
 	{
-		m.updateProperty(MESSAGE_LOOK_P, true);
-		m.updateProperty(MESSAGE_FOCUS_P, toLoc);
-		m.updateProperty(MESSAGE_LOOK_TIMEOUT_P, 2*SimClock.getTime()-locationTime+600);
+		m.setAttribute(LOOK, true);
+		m.setAttribute(FOCUS, toLoc);
+		m.setDouble(LOOK_TIMEOUT, 2*SimClock.getTime()-locationTime+600);
 //		System.out.println("Starting look: " + m.getId() + ' '+toLoc);
 	}
 
@@ -474,12 +490,40 @@ public class GeoRouter extends ActiveRouter
 	{
 		if(!isLooking(m))return;
 
-		double timeout = ((Double)m.getProperty(GeoRouter.MESSAGE_LOOK_TIMEOUT_P)).doubleValue();
+		double timeout = m.getDouble(LOOK_TIMEOUT);
 		if(timeout < timeNow)
 		{
-			m.updateProperty(MESSAGE_LOOK_P, false);
-			m.updateProperty(MESSAGE_FOCUS_P, hash(m.getTo()));
+			m.setAttribute(LOOK, false);
+			m.setAttribute(FOCUS, hash(m.getTo()));
+		}
+	}
+
+	@Override
+	public void initialize(DTNHost host, List<MessageListener> mListeners)
+	{
+		super.initialize(host, mListeners);
+		requestPeriodicUpdate();
+	}
+
+	/**
+	 * Requests an update of this router for the next time its periodic work
+	 * (check-in, expiration of a neighborhood entry or of a look) is due, so
+	 * that the updates can be skipped while the router is otherwise idle.
+	 */
+	private void requestPeriodicUpdate()
+	{
+		double next = nextCheckInTime;
+		for(NeighborEntry e : neighborhood.values())
+		{
+			next = Math.min(next, e.expirationTime);
+		}
+		for(Message m : getMessageCollection())
+		{
+			if(isLooking(m)) {
+				next = Math.min(next, m.getDouble(LOOK_TIMEOUT));
+			}
 		}
+		requestUpdateAt(next);
 	}
 
 	@Override
@@ -501,6 +545,7 @@ public class GeoRouter extends ActiveRouter
 
 			updateNeighborhood(time);
 			updateMessageCollection(time);
+			requestPeriodicUpdate();
 		}
 
 		if(!this.canStartTransfer() || this.isTransferring())
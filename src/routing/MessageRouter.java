@@ -17,10 +17,12 @@ import core.Connection;
 import core.DTNHost;
 import core.Message;
 import core.MessageListener;
+import core.RandomStreams;
 import core.Settings;
 import core.SettingsError;
 import core.SimClock;
 import core.SimError;
+import core.SimProfiler;
 import core.Tuple;
 
 /**
@@ -87,6 +89,11 @@ public abstract class MessageRouter {
 
     /** applications attached to the host */
     private HashMap<String, Collection<Application>> applications = null;
+    /** sim time of the earliest requested wake up update */
+    private double wakeUpTime;
+    /** random stream of this router (null if the old generators seeded
+     * with the simulation time are used) */
+    private Random rng;
 
     /**
      * Constructor. Creates a new message router based on the settings in
@@ -132,6 +139,11 @@ public abstract class MessageRouter {
         this.deliveredMessages = new HashMap<String, Message>();
         this.mListeners = mListeners;
         this.host = host;
+        this.wakeUpTime = Double.MAX_VALUE;
+        if (RandomStreams.isEnabled()) {
+            this.rng = RandomStreams.newStream(RandomStreams.ROUTING,
+                    host.getAddress());
+        }
     }
 
     /**
@@ -158,6 +170,9 @@ public abstract class MessageRouter {
      * interval to update the status of transfer(s).
      */
     public void update() {
+        if (this.wakeUpTime <= SimClock.getTime()) {
+            this.wakeUpTime = Double.MAX_VALUE;
+        }
         for (Collection<Application> apps : this.applications.values()) {
             for (Application app : apps) {
                 app.update(this.host);
@@ -165,6 +180,54 @@ public abstract class MessageRouter {
         }
     }
 
+    /**
+     * Returns true if updating this router at the current simulation time
+     * would not do anything, so the update can be skipped (see
+     * {@link core.World#SKIP_IDLE_ROUTERS_S}). Routers that are idle
+     * without connections but have periodic work to do must request
+     * updates for that work with {@link #requestUpdateAt(double)}.
+     * The default implementation returns false (i.e. the router is always
+     * updated); routers that know when their updates have no effect
+     * should override this.
+     * 
+     * @return True if the router's update can be skipped
+     */
+    public boolean isIdle() {
+        return false;
+    }
+
+    /**
+     * Called instead of {@link #update()} when the update is skipped
+     * because the router is idle. Routers that account for the time
+     * between their updates can note the time of the skipped update here.
+     * The default implementation does nothing.
+     */
+    public void updateSkipped() {
+    }
+
+    /**
+     * Requests that this router is updated at (or soon after) the given
+     * simulation time even if it is otherwise idle.
+     * 
+     * @param time The simulation time of the update
+     */
+    protected void requestUpdateAt(double time) {
+        if (time < this.wakeUpTime) {
+            this.wakeUpTime = time;
+        }
+    }
+
+    /**
+     * Returns true if a requested wake up update is due or the router has
+     * applications (that may have work to do on every update).
+     * 
+     * @return True if this router must be updated now
+     */
+    protected boolean hasScheduledWork() {
+        return this.wakeUpTime <= SimClock.getTime() ||
+                !this.applications.isEmpty();
+    }
+
     /**
      * Informs the router about change in connections state.
      * 
@@ -267,6 +330,22 @@ public abstract class MessageRouter {
         return this.host;
     }
 
+    /**
+     * Returns the random number generator that the router should use for
+     * e.g. shuffling messages. With the per host random streams (see
+     * {@link RandomStreams}) this is the router's own stream; otherwise
+     * it is a new generator seeded with the current simulation time (so
+     * all the routers get the same numbers during the same second).
+     * 
+     * @return The random number generator
+     */
+    protected Random getRandom() {
+        if (this.rng != null) {
+            return this.rng;
+        }
+        return new Random(SimClock.getIntTime());
+    }
+
     /**
      * Start sending a message to another host.
      * 
@@ -310,6 +389,7 @@ public abstract class MessageRouter {
 
         this.putToIncomingBuffer(newMessage, from);
         newMessage.addNodeOnPath(this.host);
+        SimProfiler.count(SimProfiler.TRANSFERS_STARTED);
 
         for (MessageListener ml : this.mListeners) {
             ml.messageTransferStarted(newMessage, from, getHost());
@@ -336,6 +416,7 @@ public abstract class MessageRouter {
             throw new SimError("No message with ID " + id + " in the incoming " +
                     "buffer of " + this.host);
         }
+        SimProfiler.count(SimProfiler.TRANSFERS_DONE);
 
         incoming.setReceiveTime(SimClock.getTime());
 
@@ -451,6 +532,7 @@ public abstract class MessageRouter {
             throw new SimError("No incoming message for id " + id +
                     " to abort in " + this.host);
         }
+        SimProfiler.count(SimProfiler.TRANSFERS_ABORTED);
 
         for (MessageListener ml : this.mListeners) {
             ml.messageTransferAborted(incoming, from, this.host);
@@ -503,7 +585,7 @@ public abstract class MessageRouter {
     protected List sortByQueueMode(List list) {
         switch (sendQueueMode) {
             case Q_MODE_RANDOM:
-                Collections.shuffle(list, new Random(SimClock.getIntTime()));
+                Collections.shuffle(list, getRandom());
                 break;
             case Q_MODE_FIFO:
                 Collections.sort(list,
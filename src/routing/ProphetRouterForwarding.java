@@ -16,6 +16,7 @@ import java.util.Random;
 import core.Connection;
 import core.DTNHost;
 import core.Message;
+import core.MessageListener;
 import core.Settings;
 import core.SimClock;
 import core.SimError;
@@ -160,7 +161,12 @@ public class ProphetRouterForwarding extends ActiveRouter {
 	private void initPreds() {
 		this.preds = new HashMap<DTNHost, Double>();
 		this.lastAgeUpdate = SimClock.getTime(); // Initialize lastAgeUpdate
-		this.coinRandom = new Random(SimClock.getIntTime()); // Initialize random for COIN
+	}
+
+	@Override
+	public void initialize(DTNHost host, List<MessageListener> mListeners) {
+		super.initialize(host, mListeners);
+		this.coinRandom = getRandom(); // Initialize random for COIN
 	}
 
 	/**
@@ -347,7 +353,7 @@ public class ProphetRouterForwarding extends ActiveRouter {
 					case COIN:
 						// Ensure coinRandom is initialized before use (belt-and-suspenders)
 						if (this.coinRandom == null) {
-							this.coinRandom = new Random(SimClock.getIntTime());
+							this.coinRandom = getRandom();
 						}
 						if (this.coinRandom.nextDouble() > 0.5) { // X > 0.5
 							shouldConsider = true;
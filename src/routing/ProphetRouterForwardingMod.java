@@ -346,8 +346,7 @@ public class ProphetRouterForwardingMod extends ActiveRouter {
 							// "WARNING: coinRandom was NULL for COIN strategy! Re-initializing in
 							// tryOtherMessages for router "
 							// + getHost() + "."); // Add host info
-							this.coinRandom = new Random(SimClock.getIntTime()); // Re-initialize with SimClock
-																		// time
+							this.coinRandom = getRandom(); // Re-initialize with the router's random
 						}
 						if (this.coinRandom.nextDouble() > 0.5) { // X > 0.5
 							shouldConsider = true;
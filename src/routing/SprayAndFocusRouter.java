@@ -34,6 +34,10 @@ public class SprayAndFocusRouter extends ActiveRouter {
 	 * peers
 	 */
 	public static final String SUMMARY_XCHG_PROP = "SprayAndFocus.protoXchg";
+	/** Message attribute of the summary vectors */
+	@SuppressWarnings("rawtypes")
+	protected static final MessageAttribute<Map> SUMMARY_XCHG =
+		MessageAttribute.register(SUMMARY_XCHG_PROP, Map.class);
 
 	protected static final String SUMMARY_XCHG_IDPREFIX = "summary";
 	protected static final double defaultTransitivityThreshold = 60.0;
@@ -119,7 +123,7 @@ public class SprayAndFocusRouter extends ActiveRouter {
 		 */
 		int msgSize = recentEncounters.size() * 64 + getMessageCollection().size() * 8;
 		Message newMsg = new Message(thisHost, peer, SUMMARY_XCHG_IDPREFIX + protocolMsgIdx++, msgSize);
-		newMsg.addProperty(SUMMARY_XCHG_PROP, /* new HashMap<DTNHost, EncounterInfo>( */recentEncounters);
+		newMsg.addAttribute(SUMMARY_XCHG, /* new HashMap<DTNHost, EncounterInfo>( */recentEncounters);
 
 		createNewMessage(newMsg);
 	}
@@ -142,7 +146,7 @@ public class SprayAndFocusRouter extends ActiveRouter {
 		 * from our peer.
 		 */
 		@SuppressWarnings("unchecked")
-		Map<DTNHost, EncounterInfo> peerEncounters = (Map<DTNHost, EncounterInfo>) m.getProperty(SUMMARY_XCHG_PROP);
+		Map<DTNHost, EncounterInfo> peerEncounters = (Map<DTNHost, EncounterInfo>) m.getAttribute(SUMMARY_XCHG);
 		if (isDeliveredMessage(m) && peerEncounters != null) {
 			double distTo = getHost().getLocation().distance(from.getLocation());
 			double speed = from.getPath() == null ? 0 : from.getPath().getSpeed();
@@ -210,7 +214,7 @@ public class SprayAndFocusRouter extends ActiveRouter {
 			return; // ..start of transfer -> no need to reduce amount of copies
 		}
 
-		if (msg.getProperty(SUMMARY_XCHG_PROP) != null) {
+		if (msg.getAttribute(SUMMARY_XCHG) != null) {
 			deleteMessage(msgId, false);
 			return;
 		}
@@ -245,7 +249,7 @@ public class SprayAndFocusRouter extends ActiveRouter {
 		List<Tuple<Message, Connection>> focuslist = new LinkedList<Tuple<Message, Connection>>();
 
 		for (Message m : getMessageCollection()) {
-			if (m.getProperty(SUMMARY_XCHG_PROP) != null)
+			if (m.getAttribute(SUMMARY_XCHG) != null)
 				continue;
 
 			Integer nrofCopies = (Integer) m.getProperty(MSG_COUNT_PROP);
@@ -10,6 +10,7 @@ import java.util.List;
 import core.Connection;
 import core.DTNHost;
 import core.Message;
+import core.MessageAttribute;
 import core.Settings;
 
 /**
@@ -28,6 +29,9 @@ public class SprayAndWaitRouter extends ActiveRouter {
 	/** Message property key */
 	public static final String MSG_COUNT_PROPERTY = SPRAYANDWAIT_NS + "." +
 			"copies";
+	/** Message attribute of the number of copies */
+	protected static final MessageAttribute<Integer> MSG_COUNT =
+		MessageAttribute.registerInt(MSG_COUNT_PROPERTY);
 
 	protected int initialNrofCopies;
 	protected boolean isBinary;
@@ -59,9 +63,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 	@Override
 	public Message messageTransferred(String id, DTNHost from) {
 		Message msg = super.messageTransferred(id, from);
-		Integer nrofCopies = (Integer) msg.getProperty(MSG_COUNT_PROPERTY);
-
-		assert nrofCopies != null : "Not a SnW message: " + msg;
+		int nrofCopies = msg.getInt(MSG_COUNT);
 
 		if (isBinary) {
 			/* in binary S'n'W the receiving node gets ceil(n/2) copies */
@@ -71,7 +73,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 			nrofCopies = 1;
 		}
 
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+		msg.setInt(MSG_COUNT, nrofCopies);
 		return msg;
 	}
 
@@ -80,7 +82,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		makeRoomForNewMessage(msg.getSize());
 
 		msg.setTtl(this.msgTtl);
-		msg.addProperty(MSG_COUNT_PROPERTY, Integer.valueOf(initialNrofCopies));
+		msg.setInt(MSG_COUNT, initialNrofCopies);
 		addToMessages(msg, true);
 		return true;
 	}
@@ -118,10 +120,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		List<Message> list = new ArrayList<Message>();
 
 		for (Message m : getMessageCollection()) {
-			Integer nrofCopies = (Integer) m.getProperty(MSG_COUNT_PROPERTY);
-			assert nrofCopies != null : "SnW message " + m + " didn't have " +
-					"nrof copies property!";
-			if (nrofCopies > 1) {
+			if (m.getInt(MSG_COUNT) > 1) {
 				list.add(m);
 			}
 		}
@@ -138,7 +137,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 	 */
 	@Override
 	protected void transferDone(Connection con) {
-		Integer nrofCopies;
+		int nrofCopies;
 		String msgId = con.getMessage().getId();
 		/* get this router's copy of the message */
 		Message msg = getMessage(msgId);
@@ -148,13 +147,13 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		}
 
 		/* reduce the amount of copies left */
-		nrofCopies = (Integer) msg.getProperty(MSG_COUNT_PROPERTY);
+		nrofCopies = msg.getInt(MSG_COUNT);
 		if (isBinary) {
 			nrofCopies /= 2;
 		} else {
 			nrofCopies--;
 		}
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+		msg.setInt(MSG_COUNT, nrofCopies);
 	}
 
 	@Override
@@ -0,0 +1,219 @@
+/*
+ * @(#)HostBitSet.java
+ *
+ * Released under GPLv3. See LICENSE.txt for details.
+ *
+ */
+package routing.community;
+
+import java.util.*;
+
+import core.*;
+
+/**
+ * <p>A dense set of hosts backed by a <code>long[]</code> bitset indexed by
+ * host address. Membership tests are a single bit test and the intersection
+ * and union sizes needed by the community detection algorithms are computed
+ * word-by-word with {@link Long#bitCount(long)} instead of hashing every
+ * member.</p>
+ *
+ * <p>The class still implements <code>Set&lt;DTNHost&gt;</code> so the
+ * communities can be handed to reports and centrality computations as
+ * before. Iteration maps set bits back to hosts through a table of every host
+ * ever added to any HostBitSet, which is cleared between batch runs.</p>
+ */
+public class HostBitSet extends AbstractSet<DTNHost>
+{
+	private static final int ADDRESS_BITS_PER_WORD = 6;
+
+	/** Hosts indexed by their address, used to map bits back to hosts */
+	private static DTNHost[] hostsByAddress;
+
+	static {
+		DTNSim.registerForReset(HostBitSet.class.getCanonicalName());
+		reset();
+	}
+
+	private long[] words;
+	private int size;
+
+	/**
+	 * Creates a new, empty set
+	 */
+	public HostBitSet()
+	{
+		this.words = new long[1];
+		this.size = 0;
+	}
+
+	/**
+	 * Clears the address-to-host table. Called between batch runs.
+	 */
+	public static void reset()
+	{
+		hostsByAddress = new DTNHost[64];
+	}
+
+	private static int wordIndex(int address)
+	{
+		return address >> ADDRESS_BITS_PER_WORD;
+	}
+
+	private static void registerHost(DTNHost h)
+	{
+		int address = h.getAddress();
+		if(address >= hostsByAddress.length)
+			hostsByAddress = Arrays.copyOf(hostsByAddress,
+					Math.max(hostsByAddress.length * 2, address + 1));
+		hostsByAddress[address] = h;
+	}
+
+	private void ensureCapacity(int wordsRequired)
+	{
+		if(words.length < wordsRequired)
+			words = Arrays.copyOf(words, Math.max(2 * words.length, wordsRequired));
+	}
+
+	/**
+	 * Returns true if the host with the given address is in this set.
+	 *
+	 * @param address Address of the host to look for
+	 * @return true if the bit for address is set
+	 */
+	public boolean contains(int address)
+	{
+		int w = wordIndex(address);
+		return w < words.length && (words[w] & (1L << address)) != 0;
+	}
+
+	@Override
+	public boolean contains(Object o)
+	{
+		return o instanceof DTNHost && contains(((DTNHost)o).getAddress());
+	}
+
+	@Override
+	public boolean add(DTNHost h)
+	{
+		int address = h.getAddress();
+		int w = wordIndex(address);
+		ensureCapacity(w + 1);
+
+		long mask = 1L << address;
+		if((words[w] & mask) != 0) return false;
+
+		registerHost(h);
+		words[w] |= mask;
+		size++;
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object o)
+	{
+		if(!(o instanceof DTNHost)) return false;
+		int address = ((DTNHost)o).getAddress();
+		if(!contains(address)) return false;
+
+		words[wordIndex(address)] &= ~(1L << address);
+		size--;
+		return true;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends DTNHost> c)
+	{
+		if(!(c instanceof HostBitSet))
+			return super.addAll(c);
+
+		HostBitSet other = (HostBitSet)c;
+		ensureCapacity(other.words.length);
+
+		int newSize = 0;
+		for(int i = 0; i < words.length; i++)
+		{
+			if(i < other.words.length)
+				words[i] |= other.words[i];
+			newSize += Long.bitCount(words[i]);
+		}
+
+		boolean changed = newSize != size;
+		size = newSize;
+		return changed;
+	}
+
+	@Override
+	public void clear()
+	{
+		Arrays.fill(words, 0L);
+		size = 0;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the number of hosts that are members of both this set and the
+	 * given set.
+	 *
+	 * @param other Set to intersect with
+	 * @return Size of the intersection of the two sets
+	 */
+	public int intersectionSize(HostBitSet other)
+	{
+		int n = Math.min(words.length, other.words.length);
+		int count = 0;
+		for(int i = 0; i < n; i++)
+			count += Long.bitCount(words[i] & other.words[i]);
+		return count;
+	}
+
+	@Override
+	public Iterator<DTNHost> iterator()
+	{
+		return new Iterator<DTNHost>()
+		{
+			private int next = nextSetBit(0);
+			private int last = -1;
+
+			public boolean hasNext()
+			{
+				return next >= 0;
+			}
+
+			public DTNHost next()
+			{
+				if(next < 0) throw new NoSuchElementException();
+				last = next;
+				next = nextSetBit(next + 1);
+				return hostsByAddress[last];
+			}
+
+			public void remove()
+			{
+				if(last < 0) throw new IllegalStateException();
+				HostBitSet.this.remove(hostsByAddress[last]);
+				last = -1;
+			}
+		};
+	}
+
+	private int nextSetBit(int from)
+	{
+		int w = wordIndex(from);
+		if(w >= words.length) return -1;
+
+		long word = words[w] & (-1L << from);
+		while(true)
+		{
+			if(word != 0)
+				return (w << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(word);
+			if(++w == words.length)
+				return -1;
+			word = words[w];
+		}
+	}
+}
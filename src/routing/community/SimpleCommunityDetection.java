@@ -61,8 +61,8 @@ public class SimpleCommunityDetection implements CommunityDetection
 	 */
 	public static final String FAMILIAR_SETTING = "familiarThreshold";
 	
-	protected Set<DTNHost> familiarSet;
-	protected Set<DTNHost> localCommunity;
+	protected HostBitSet familiarSet;
+	protected HostBitSet localCommunity;
 	
 	protected double lambda;
 	protected double gamma;
@@ -86,8 +86,8 @@ public class SimpleCommunityDetection implements CommunityDetection
 		this.lambda = proto.lambda;
 		this.gamma = proto.gamma;
 		this.familiarThreshold = proto.familiarThreshold;
-		familiarSet = new HashSet<DTNHost>();
-		localCommunity = new HashSet<DTNHost>();
+		familiarSet = new HostBitSet();
+		localCommunity = new HostBitSet();
 	}
 	
 	public void newConnection(DTNHost myHost, DTNHost peer, 
@@ -109,10 +109,8 @@ public class SimpleCommunityDetection implements CommunityDetection
 			 */
 			
 			// compute set intersection
-			int count=0, peerFsize = scd.familiarSet.size();
-			for(DTNHost h : scd.familiarSet)
-				if(this.localCommunity.contains(h))
-					count++;
+			int peerFsize = scd.familiarSet.size();
+			int count = scd.familiarSet.intersectionSize(this.localCommunity);
 			
 			// add peer to local community if enough nodes in common
 			if(addPeerToMyLocal = ((double)count)/peerFsize > this.lambda)
@@ -127,10 +125,8 @@ public class SimpleCommunityDetection implements CommunityDetection
 		if(!scd.localCommunity.contains(myHost))
 		{
 			// compute set intersection
-			int count = 0, myFsize = this.familiarSet.size();
-			for(DTNHost h : this.familiarSet)
-				if(scd.localCommunity.contains(h))
-					count++;
+			int myFsize = this.familiarSet.size();
+			int count = this.familiarSet.intersectionSize(scd.localCommunity);
 			
 			// add this host to local community of peer if enough nodes in common
 			if(addMeToPeerLocal = ((double)count)/myFsize > scd.lambda)
@@ -142,25 +138,18 @@ public class SimpleCommunityDetection implements CommunityDetection
 		// Test for conditions when the local communities should be merged
 		if(addPeerToMyLocal || addMeToPeerLocal)
 		{
-			// Compute set union
-			Set<DTNHost> commUnion = new HashSet<DTNHost>(this.localCommunity.size() +
-					scd.localCommunity.size() + 2);
-			commUnion.addAll(this.localCommunity);
-			commUnion.addAll(scd.localCommunity);
-			
-			// compute intersection of the two local communities
+			// compute intersection and union sizes of the two local communities
 			// (the result is the same from both node's perspective)
-			int count = 0;
-			for(DTNHost h : this.localCommunity)
-				if(scd.localCommunity.contains(h))
-					count++;
+			int count = this.localCommunity.intersectionSize(scd.localCommunity);
+			int unionSize = this.localCommunity.size() + 
+					scd.localCommunity.size() - count;
 			
 			// merge communities if enough nodes are common
-			if(addPeerToMyLocal && count > this.gamma * commUnion.size())
+			if(addPeerToMyLocal && count > this.gamma * unionSize)
 			{
 				this.localCommunity.addAll(scd.localCommunity);
 			}
-			if(addMeToPeerLocal && count > scd.gamma * commUnion.size())
+			if(addMeToPeerLocal && count > scd.gamma * unionSize)
 			{
 				scd.localCommunity.addAll(this.localCommunity);
 			}
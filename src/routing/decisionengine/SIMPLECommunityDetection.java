@@ -7,6 +7,7 @@ import routing.DecisionEngineRouter;
 import routing.MessageRouter;
 import routing.RoutingDecisionEngine;
 import routing.community.CommunityDetectionEngine;
+import routing.community.HostBitSet;
 
 /**
  * Implements the SIMPLE Community Detection Algorithm from Yoneki et al. 2007
@@ -41,8 +42,8 @@ public class SIMPLECommunityDetection implements RoutingDecisionEngine, Communit
 	public static final String GAMMA_SETTING = "gamma";
 	public static final String FAMILIAR_SETTING = "familiarThreshold";
 
-	protected Set<DTNHost> familiarSet;
-	protected Set<DTNHost> localCommunity;
+	protected HostBitSet familiarSet;
+	protected HostBitSet localCommunity;
 
 	protected Map<DTNHost, Double> startTimestamps;
 	protected Map<DTNHost, List<Duration>> connHistory;
@@ -64,8 +65,8 @@ public class SIMPLECommunityDetection implements RoutingDecisionEngine, Communit
 		this.gamma = proto.gamma;
 		this.familiarThreshold = proto.familiarThreshold;
 
-		familiarSet = new HashSet<DTNHost>();
-		localCommunity = new HashSet<DTNHost>();
+		familiarSet = new HostBitSet();
+		localCommunity = new HostBitSet();
 		startTimestamps = new HashMap<DTNHost, Double>();
 		connHistory = new HashMap<DTNHost, List<Duration>>();
 	}
@@ -126,10 +127,8 @@ public class SIMPLECommunityDetection implements RoutingDecisionEngine, Communit
 			 * the size of the peer's familiar set
 			 */
 
-			int count = 0, peerFsize = de.familiarSet.size();
-			for (DTNHost h : de.familiarSet)
-				if (this.localCommunity.contains(h))
-					count++;
+			int peerFsize = de.familiarSet.size();
+			int count = de.familiarSet.intersectionSize(this.localCommunity);
 			// if(count > 0)
 			// System.out.println(myHost.toString() + " count: " + count + " peerSize: " +
 			// peerFsize);
@@ -141,10 +140,8 @@ public class SIMPLECommunityDetection implements RoutingDecisionEngine, Communit
 		}
 
 		if (!de.localCommunity.contains(myHost)) {
-			int count = 0, myFsize = this.familiarSet.size();
-			for (DTNHost h : this.familiarSet)
-				if (de.localCommunity.contains(h))
-					count++;
+			int myFsize = this.familiarSet.size();
+			int count = this.familiarSet.intersectionSize(de.localCommunity);
 			if (addMeToPeerLocal = ((double) count) / myFsize > de.lambda) {
 				// System.out.println(peer.toString() + " adding " + myHost + " to Local
 				// Community");
@@ -153,25 +150,22 @@ public class SIMPLECommunityDetection implements RoutingDecisionEngine, Communit
 		}
 
 		if (addPeerToMyLocal || addMeToPeerLocal) {
-			Set<DTNHost> commUnion = new HashSet<DTNHost>(this.localCommunity.size() +
-					de.localCommunity.size() + 2);
-			commUnion.addAll(this.localCommunity);
-			commUnion.addAll(de.localCommunity);
-			commUnion.add(peer); // Just to make sure
-			commUnion.add(myHost);
-
 			// boolean mergedMine = false, mergedPeer = false;
-			int count = 0;
-			for (DTNHost h : this.localCommunity)
-				if (de.localCommunity.contains(h))
-					count++;
+			int count = this.localCommunity.intersectionSize(de.localCommunity);
+
+			int unionSize = this.localCommunity.size() + de.localCommunity.size() - count;
+			// Just to make sure peer and myHost are counted in the union
+			if (!this.localCommunity.contains(peer) && !de.localCommunity.contains(peer))
+				unionSize++;
+			if (!this.localCommunity.contains(myHost) && !de.localCommunity.contains(myHost))
+				unionSize++;
 
-			if (addPeerToMyLocal && count > this.gamma * commUnion.size()) {
+			if (addPeerToMyLocal && count > this.gamma * unionSize) {
 				// System.out.println(myHost.toString() + " merging community with " + peer);
 				this.localCommunity.addAll(de.localCommunity);
 				// mergedMine = true;
 			}
-			if (addMeToPeerLocal && count > de.gamma * commUnion.size()) {
+			if (addMeToPeerLocal && count > de.gamma * unionSize) {
 				// System.out.println(peer.toString() + " merging community with " + myHost);
 				de.localCommunity.addAll(this.localCommunity);
 				// mergedPeer = true;
@@ -5,6 +5,7 @@
 package ui;
 
 import core.SimClock;
+import core.SimProfiler;
 
 /**
  * Simple text-based user interface.
@@ -24,7 +25,8 @@ public class DTNSimTextUI extends DTNSimUI {
 		startTime = System.currentTimeMillis();
 		lastUpdateRt = startTime;
 		
-		while (simTime < endTime && !simCancelled){
+		while (simTime < endTime && !simCancelled &&
+				!world.isStopRequested()){
 			try {
 				world.update();
 			} catch (AssertionError e) {
@@ -42,7 +44,14 @@ public class DTNSimTextUI extends DTNSimUI {
 		done();
 		this.update(true); // force final UI update
 		
+		if (world.isStopRequested()) {
+			print("Simulation stopped by a report at " +
+					String.format("%.2f", simTime));
+		}
 		print("Simulation done in " + String.format("%.2f", duration) + "s");
+		if (SimProfiler.isEnabled()) {
+			print(SimProfiler.getSummary());
+		}
 	
 	}
 	
@@ -7,6 +7,7 @@ package ui;
 import java.util.Vector;
 
 import report.Report;
+import report.ReportEventBus;
 import core.ApplicationListener;
 import core.ConnectionListener;
 import core.MessageListener;
@@ -50,6 +51,9 @@ public abstract class DTNSimUI {
 	protected World world;
 	/** Reports that are loaded for this simulation */
 	protected Vector<Report> reports;
+	/** Bus for the reports that receive their events asynchronously
+	 * (null if there are no such reports) */
+	protected ReportEventBus eventBus;
 	/** has simulation terminated normally */
 	protected boolean simDone;
 	/** is simulation termination requested */
@@ -127,6 +131,9 @@ public abstract class DTNSimUI {
 	 * Runs maintenance jobs that are needed before exiting.
 	 */
 	public void done() {
+		if (this.eventBus != null) {
+			this.eventBus.close(); // deliver the pending events first
+		}
 		for (Report r : this.reports) {
 			r.done();
 		}
@@ -137,14 +144,18 @@ public abstract class DTNSimUI {
 	 * @param r Report to add
 	 */
 	protected void addReport(Report r) {
-		if (r instanceof MessageListener) {
-			scen.addMessageListener((MessageListener)r);
-		}
-		if (r instanceof ConnectionListener) {
-			scen.addConnectionListener((ConnectionListener)r);
-		}
-		if (r instanceof MovementListener) {
-			scen.addMovementListener((MovementListener)r);
+		if (r.isAsyncEvents()) {
+			getEventBus().addReport(r);
+		} else {
+			if (r instanceof MessageListener) {
+				scen.addMessageListener((MessageListener)r);
+			}
+			if (r instanceof ConnectionListener) {
+				scen.addConnectionListener((ConnectionListener)r);
+			}
+			if (r instanceof MovementListener) {
+				scen.addMovementListener((MovementListener)r);
+			}
 		}
 		if (r instanceof UpdateListener) {
 			scen.addUpdateListener((UpdateListener)r);
@@ -155,4 +166,29 @@ public abstract class DTNSimUI {
 
 		this.reports.add(r);
 	}
+
+	/**
+	 * Returns the report event bus, creating it and registering it as a
+	 * listener on the first call
+	 * @return The report event bus
+	 */
+	private ReportEventBus getEventBus() {
+		if (this.eventBus == null) {
+			Settings s = new Settings(Report.REPORT_NS);
+			int size = Report.DEF_ASYNC_EVENTS_BUFFER_SIZE;
+			if (s.contains(Report.ASYNC_EVENTS_BUFFER_S)) {
+				size = s.getInt(Report.ASYNC_EVENTS_BUFFER_S);
+				if (size < 1) {
+					throw new SettingsError("Invalid value for " +
+							s.getFullPropertyName(Report.ASYNC_EVENTS_BUFFER_S) +
+							": " + size);
+				}
+			}
+			this.eventBus = new ReportEventBus(size);
+			scen.addMessageListener(eventBus);
+			scen.addConnectionListener(eventBus);
+			scen.addMovementListener(eventBus);
+		}
+		return this.eventBus;
+	}
 }